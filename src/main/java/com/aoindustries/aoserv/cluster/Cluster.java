@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -34,11 +34,15 @@ import java.util.Map;
  * 
  * A cluster is immutable.  All setters return a new instance of a cluster.
  *
+ * Each Dom0, Dom0Disk, PhysicalVolume, DomU and DomUDisk is assigned a dense index
+ * within the cluster as it is added, so analysis may use arrays and bit sets
+ * indexed by these ids instead of comparing names or looking up maps.
+ *
  * @author  AO Industries, Inc.
  */
 public class Cluster implements Comparable<Cluster>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	// These are here just for generic-type-specific versions
 	private static final Map<String, Dom0> emptyDom0Map = Collections.emptyMap();
@@ -78,6 +82,17 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 	final Map<String, Dom0> unmodifiableDom0s;
 	final Map<String, DomU> unmodifiableDomUs;
 	//final Map<String, SortedSet<DomU>> unmodifiableDomUGroups = Collections.unmodifiableMap(domUGroups);
+	final int dom0DiskCount;
+	final int physicalVolumeCount;
+	final int domUDiskCount;
+
+	/**
+	 * When <code>true</code>, moving a secondary also allocates from the free extents of
+	 * partly allocated physical volumes.
+	 *
+	 * @see  #withAllocatePartialPhysicalVolumes(boolean)
+	 */
+	final boolean allocatePartialPhysicalVolumes;
 
 	/**
 	 * Creates a new, empty cluster.
@@ -86,7 +101,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 		this(
 			name,
 			emptyDom0Map,
-			emptyDomUMap
+			emptyDomUMap,
+			0,
+			0,
+			0,
+			false
 		);
 	}
 
@@ -94,16 +113,58 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 	 * Creates a cluster with the provided details.  No defensive copy of the provided objects
 	 * is created, and they MUST BE UNMODIFIABLE!
 	 */
-	private Cluster(String name, Map<String, Dom0> unmodifiableDom0s, Map<String, DomU> unmodifiableDomUs) {
+	private Cluster(
+		String name,
+		Map<String, Dom0> unmodifiableDom0s,
+		Map<String, DomU> unmodifiableDomUs,
+		int dom0DiskCount,
+		int physicalVolumeCount,
+		int domUDiskCount,
+		boolean allocatePartialPhysicalVolumes
+	) {
 		this.name = name;
 		this.unmodifiableDom0s = unmodifiableDom0s;
 		this.unmodifiableDomUs = unmodifiableDomUs;
+		this.dom0DiskCount = dom0DiskCount;
+		this.physicalVolumeCount = physicalVolumeCount;
+		this.domUDiskCount = domUDiskCount;
+		this.allocatePartialPhysicalVolumes = allocatePartialPhysicalVolumes;
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	/**
+	 * @see  #withAllocatePartialPhysicalVolumes(boolean)
+	 */
+	public boolean getAllocatePartialPhysicalVolumes() {
+		return allocatePartialPhysicalVolumes;
+	}
+
+	/**
+	 * When <code>true</code>, {@link ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}
+	 * also allocates from the free extents of partly allocated physical volumes, instead of only
+	 * from wholly unallocated physical volumes.  This finds fits on nearly full Dom0s at the
+	 * expense of more children per transition.  Defaults to <code>false</code>.
+	 *
+	 * Configurations must be created for the returned cluster to use this option.
+	 *
+	 * @return  a new cluster with the option set
+	 */
+	public Cluster withAllocatePartialPhysicalVolumes(boolean allocatePartialPhysicalVolumes) {
+		if(allocatePartialPhysicalVolumes==this.allocatePartialPhysicalVolumes) return this;
+		return new Cluster(
+			name,
+			unmodifiableDom0s,
+			unmodifiableDomUs,
+			dom0DiskCount,
+			physicalVolumeCount,
+			domUDiskCount,
+			allocatePartialPhysicalVolumes
+		);
+	}
+
 	/**
 	 * Sorted ascending by:
 	 * <ol>
@@ -157,6 +218,27 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 		return unmodifiableDom0s.get(hostname);
 	}
 
+	/**
+	 * Gets the number of Dom0s, one more than the highest {@link Dom0#getId()}.
+	 */
+	public int getDom0Count() {
+		return unmodifiableDom0s.size();
+	}
+
+	/**
+	 * Gets the number of disks of all Dom0s, one more than the highest {@link Dom0Disk#getId()}.
+	 */
+	public int getDom0DiskCount() {
+		return dom0DiskCount;
+	}
+
+	/**
+	 * Gets the number of physical volumes of all Dom0s, one more than the highest {@link PhysicalVolume#getId()}.
+	 */
+	public int getPhysicalVolumeCount() {
+		return physicalVolumeCount;
+	}
+
 	/**
 	 * Adds a Dom0 to the cluster returning the reference to the new cluster object.
 	 */
@@ -177,6 +259,7 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 				hostname,
 				new Dom0(
 					name,
+					unmodifiableDom0s.size(),
 					hostname,
 					/*rack,*/
 					ram,
@@ -188,7 +271,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 					emptyDom0DiskMap
 				)
 			),
-			unmodifiableDomUs
+			unmodifiableDomUs,
+			dom0DiskCount,
+			physicalVolumeCount,
+			domUDiskCount,
+			allocatePartialPhysicalVolumes
 		);
 	}
 
@@ -207,6 +294,20 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 		return unmodifiableDomUs.get(hostname);
 	}
 
+	/**
+	 * Gets the number of DomUs, one more than the highest {@link DomU#getId()}.
+	 */
+	public int getDomUCount() {
+		return unmodifiableDomUs.size();
+	}
+
+	/**
+	 * Gets the number of disks of all DomUs, one more than the highest {@link DomUDisk#getId()}.
+	 */
+	public int getDomUDiskCount() {
+		return domUDiskCount;
+	}
+
 	/**
 	 * Adds a DomU to the cluster returning the reference to new cluster.
 	 */
@@ -231,6 +332,7 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 				hostname,
 				new DomU(
 					name,
+					unmodifiableDomUs.size(),
 					hostname,
 					primaryRam,
 					secondaryRam,
@@ -244,7 +346,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 					secondaryDom0Locked,
 					emptyDomUDiskMap
 				)
-			)
+			),
+			dom0DiskCount,
+			physicalVolumeCount,
+			domUDiskCount,
+			allocatePartialPhysicalVolumes
 		);
 	}
 
@@ -261,6 +367,7 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 				hostname,
 				new Dom0(
 					name,
+					dom0.id,
 					hostname,
 					/*rack,*/
 					dom0.ram,
@@ -274,7 +381,9 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 						device,
 						new Dom0Disk(
 							name,
+							dom0.id,
 							hostname,
+							dom0DiskCount,
 							device,
 							diskSpeed,
 							emptyPhysicalVolumeMap
@@ -282,7 +391,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 					)
 				)
 			),
-			unmodifiableDomUs
+			unmodifiableDomUs,
+			dom0DiskCount + 1,
+			physicalVolumeCount,
+			domUDiskCount,
+			allocatePartialPhysicalVolumes
 		);
 	}
 
@@ -303,6 +416,7 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 				hostname,
 				new Dom0(
 					name,
+					dom0.id,
 					hostname,
 					/*rack,*/
 					dom0.ram,
@@ -316,7 +430,9 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 						device,
 						new Dom0Disk(
 							name,
+							dom0.id,
 							hostname,
+							dom0Disk.id,
 							device,
 							dom0Disk.diskSpeed,
 							addToUnmodifiableMap(
@@ -324,8 +440,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 								partition,
 								new PhysicalVolume(
 									name,
+									dom0.id,
 									hostname,
+									dom0Disk.id,
 									device,
+									physicalVolumeCount,
 									partition,
 									extents
 								)
@@ -334,7 +453,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 					)
 				)
 			),
-			unmodifiableDomUs
+			unmodifiableDomUs,
+			dom0DiskCount,
+			physicalVolumeCount + 1,
+			domUDiskCount,
+			allocatePartialPhysicalVolumes
 		);
 	}
 
@@ -358,6 +481,7 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 				hostname,
 				new DomU(
 					name,
+					domU.id,
 					hostname,
 					domU.primaryRam,
 					domU.secondaryRam,
@@ -374,7 +498,9 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 						device,
 						new DomUDisk(
 							name,
+							domU.id,
 							hostname,
+							domUDiskCount,
 							device,
 							minimumDiskSpeed,
 							extents,
@@ -382,7 +508,11 @@ public class Cluster implements Comparable<Cluster>, Serializable {
 						)
 					)
 				)
-			)
+			),
+			dom0DiskCount,
+			physicalVolumeCount,
+			domUDiskCount + 1,
+			allocatePartialPhysicalVolumes
 		);
 	}
 
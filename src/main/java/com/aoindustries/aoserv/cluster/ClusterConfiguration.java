@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,6 +22,9 @@
  */
 package com.aoindustries.aoserv.cluster;
 
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -29,11 +32,12 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * A ClusterConfiguration contains one possible configuration of a cluster.  The configuration
@@ -47,8 +51,23 @@ import java.util.TreeMap;
  * The heap space used should be as small as possible to allow the maximum number of possible configurations
  * to be explored.
  *
- * Everything in ClusterConfiguration is not thread-safe, if using from multiple
- * threads, external synchronization is required.
+ * The configuration itself is never modified once created, so the searches call
+ * {@link #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.MoveSecondaryCache) moveSecondary}
+ * and {@link #liveMigrate(com.aoindustries.aoserv.cluster.DomU) liveMigrate} on one
+ * configuration from many threads at once without synchronization.  This relies on two things:
+ * <ol>
+ *   <li>
+ *     The hash code and fingerprint are not <code>final</code>, as they are restored after
+ *     deserialization, so a configuration must be safely published to other threads.  The
+ *     concurrent queues and fork/join tasks used by the searches do this.
+ *   </li>
+ *   <li>
+ *     The score and the allocated physical volumes and extents are computed on first use
+ *     into <code>volatile</code> fields without locking.  Threads that race compute equal
+ *     values from the same configuration and the last write wins, so the race is benign
+ *     and only costs repeated work.
+ *   </li>
+ * </ol>
  *
  * DomU VMs may only be allocated to Dom0 machines in the same cluster.
  *
@@ -56,9 +75,13 @@ import java.util.TreeMap;
  */
 public class ClusterConfiguration implements Comparable<ClusterConfiguration>, Serializable {
 
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
-	private static final boolean USE_ALREADY_CONTAINS = false;
+	/**
+	 * When <code>true</code>, {@link #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}
+	 * does not return more than one mapping onto equivalent Dom0Disks.
+	 */
+	private static final boolean SKIP_EQUIVALENT_DOM0_DISKS = true;
 
 	/**
 	 * Gets an unmodifiable list that combines the existing list with the new object
@@ -76,26 +99,6 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		return new UnmodifiableArrayList<>(newArray);
 	}
 
-	/**
-	 * Replaces an existing entry in an unmodifiable list.  If the list only has a single
-	 * entry, will use Collections.singletonList, otherwise creates a new UnmodifiableArrayList.
-	 */
-	@SuppressWarnings({"unchecked"})
-	static <V extends Comparable<V>> List<V> replaceInUnmodifiableList(Class<V> clazz, List<V> existingList, int index, V newValue) {
-		int size = existingList.size();
-		assert size!=0 : "List is empty";
-		if(size==1) {
-			assert index==0 : "List size is 1 but index!=0: "+index;
-			return Collections.singletonList(newValue);
-		}
-		assert index>=0 && index<size : "Index out of range: "+index;
-		V[] newArray = (V[])Array.newInstance(clazz, size);
-		newArray = existingList.toArray(newArray);
-		newArray[index] = newValue;
-		//Arrays.sort(newArray);
-		return new UnmodifiableArrayList<>(newArray);
-	}
-
 	/**
 	 * Gets the smallest possible List container to hold the provided collection.
 	 * It sorts the list and ensures it is unmodifiable.
@@ -125,8 +128,28 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		return new UnmodifiableArrayList<>(newArray);
 	}
 
-	private static int computeHashCode(Cluster cluster, List<DomUConfiguration> unmodifiableDomUConfigurations) {
-		return 31*cluster.hashCode() + unmodifiableDomUConfigurations.hashCode();
+	static int computeHashCode(Cluster cluster, long fingerprintHigh) {
+		return 31*cluster.hashCode() + (int)(fingerprintHigh ^ (fingerprintHigh >>> 32));
+	}
+
+	/**
+	 * The fingerprint is the exclusive-or of the fingerprints of each DomU configuration.
+	 * Each transition changes a single DomU configuration, so the fingerprint of the
+	 * new configuration is found in O(1) by removing the old and adding the new.
+	 */
+	private static long computeFingerprintHigh(List<DomUConfiguration> unmodifiableDomUConfigurations) {
+		long high = Fingerprint.HIGH_SEED;
+		for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) high ^= unmodifiableDomUConfigurations.get(i).fingerprintHigh;
+		return high;
+	}
+
+	/**
+	 * @see  #computeFingerprintHigh(java.util.List)
+	 */
+	private static long computeFingerprintLow(List<DomUConfiguration> unmodifiableDomUConfigurations) {
+		long low = Fingerprint.LOW_SEED;
+		for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) low ^= unmodifiableDomUConfigurations.get(i).fingerprintLow;
+		return low;
 	}
 
 	// These are here just for generic-type-specific versions
@@ -134,25 +157,101 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 	private static final List<DomUDiskConfiguration> emptyDomUDiskConfigurationList = Collections.emptyList();
 
 	final Cluster cluster;
-	final List<DomUConfiguration> unmodifiableDomUConfigurations;
+
+	/**
+	 * A persistent list, so each transition copies only the path to the DomU configuration
+	 * it replaces, sharing all other chunks of the list with the configuration it came from.
+	 */
+	final PersistentList<DomUConfiguration> unmodifiableDomUConfigurations;
 	transient private int hashCode;
+	transient private long fingerprintHigh;
+	transient private long fingerprintLow;
+	transient private volatile ClusterScore clusterScore;
+
+	/**
+	 * The physical volumes allocated to any DomU, as a bitmap by {@link PhysicalVolume#getId() id}.
+	 * This is built on first use, which is typically when children are generated, so all
+	 * calls to {@link #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}
+	 * on one configuration share a single scan of the DomUs.  A live migration allocates
+	 * the same physical volumes, so its result shares this bitmap.
+	 *
+	 * @see  #getAllocatedPhysicalVolumes()
+	 */
+	transient private volatile long[] allocatedPhysicalVolumes;
+
+	/**
+	 * The physical extents allocated on each physical volume by {@link PhysicalVolume#getId() id},
+	 * as pairs of first physical extent and extents, or <code>null</code> for an unallocated
+	 * physical volume.  This is only used when {@link Cluster#getAllocatePartialPhysicalVolumes()}, and is
+	 * built on first use and shared like {@link #allocatedPhysicalVolumes}.
+	 *
+	 * @see  #getAllocatedPhysicalExtents()
+	 */
+	transient private volatile long[][] allocatedPhysicalExtents;
 
 	public ClusterConfiguration(Cluster cluster) {
-		this(cluster, emptyDomUConfigurationList);
+		this(cluster, PersistentList.empty(), Fingerprint.HIGH_SEED, Fingerprint.LOW_SEED);
+	}
+
+	/**
+	 * Creates a configuration with a copy of the provided DomU configurations.
+	 *
+	 * @see  PackedClusterConfiguration#toClusterConfiguration()
+	 */
+	ClusterConfiguration(Cluster cluster, List<DomUConfiguration> domUConfigurations) {
+		this(
+			cluster,
+			PersistentList.copyOf(domUConfigurations),
+			computeFingerprintHigh(domUConfigurations),
+			computeFingerprintLow(domUConfigurations)
+		);
 	}
 
 	/**
-	 * unmodifiableDomUConfigurations must be unmodifiable.
+	 * The fingerprint must match the DomU configurations, as already updated incrementally by the caller.
 	 */
-	private ClusterConfiguration(Cluster cluster, List<DomUConfiguration> unmodifiableDomUConfigurations) {
+	private ClusterConfiguration(Cluster cluster, PersistentList<DomUConfiguration> unmodifiableDomUConfigurations, long fingerprintHigh, long fingerprintLow) {
+		assert fingerprintHigh==computeFingerprintHigh(unmodifiableDomUConfigurations) : "fingerprintHigh mismatch";
+		assert fingerprintLow==computeFingerprintLow(unmodifiableDomUConfigurations) : "fingerprintLow mismatch";
 		this.cluster = cluster;
 		this.unmodifiableDomUConfigurations = unmodifiableDomUConfigurations;
-		this.hashCode = computeHashCode(cluster, unmodifiableDomUConfigurations);
+		this.hashCode = computeHashCode(cluster, fingerprintHigh);
+		this.fingerprintHigh = fingerprintHigh;
+		this.fingerprintLow = fingerprintLow;
 	}
 
 	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
 		ois.defaultReadObject();
-		this.hashCode = computeHashCode(cluster, unmodifiableDomUConfigurations);
+		this.fingerprintHigh = computeFingerprintHigh(unmodifiableDomUConfigurations);
+		this.fingerprintLow = computeFingerprintLow(unmodifiableDomUConfigurations);
+		this.hashCode = computeHashCode(cluster, fingerprintHigh);
+	}
+
+	/**
+	 * Creates a new configuration with one more DomU configuration, updating the
+	 * hash code and fingerprint in O(1).
+	 */
+	private ClusterConfiguration newClusterConfigurationAdding(DomUConfiguration added) {
+		return new ClusterConfiguration(
+			cluster,
+			unmodifiableDomUConfigurations.plus(added),
+			fingerprintHigh ^ added.fingerprintHigh,
+			fingerprintLow ^ added.fingerprintLow
+		);
+	}
+
+	/**
+	 * Creates a new configuration with one DomU configuration replaced, updating the
+	 * hash code and fingerprint in O(1).
+	 */
+	private ClusterConfiguration newClusterConfigurationReplacing(int index, DomUConfiguration replaced, DomUConfiguration replacement) {
+		assert unmodifiableDomUConfigurations.get(index)==replaced : "replaced is not at index "+index;
+		return new ClusterConfiguration(
+			cluster,
+			unmodifiableDomUConfigurations.with(index, replacement),
+			fingerprintHigh ^ replaced.fingerprintHigh ^ replacement.fingerprintHigh,
+			fingerprintLow ^ replaced.fingerprintLow ^ replacement.fingerprintLow
+		);
 	}
 
 	@Override
@@ -185,6 +284,59 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		return null;
 	}
 
+	/**
+	 * Gets the DomUs on each Dom0 along with the resources they allocate, keyed by
+	 * Dom0 hostname.  This is built on each call in O(n) of the number of DomUs and Dom0s,
+	 * instead of being kept with every configuration, since searches create configurations
+	 * far more often than they analyze them and may keep millions of them on an open list.
+	 */
+	public Map<String, Dom0Configuration> getDom0Configurations() {
+		Map<String, Dom0> dom0s = cluster.unmodifiableDom0s;
+		int dom0Count = dom0s.size();
+		Map<String, List<DomUConfiguration>> domUConfigurationsByHostname = new HashMap<>(dom0Count*4/3+1);
+		for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) {
+			DomUConfiguration domUConfiguration = unmodifiableDomUConfigurations.get(i);
+			domUConfigurationsByHostname.computeIfAbsent(domUConfiguration.primaryDom0.hostname, hostname -> new ArrayList<>()).add(domUConfiguration);
+			if(domUConfiguration.secondaryDom0!=domUConfiguration.primaryDom0) {
+				domUConfigurationsByHostname.computeIfAbsent(domUConfiguration.secondaryDom0.hostname, hostname -> new ArrayList<>()).add(domUConfiguration);
+			}
+		}
+		Map<String, Dom0Configuration> dom0Configurations = new HashMap<>(dom0Count*4/3+1);
+		for(Dom0 dom0 : dom0s.values()) {
+			List<DomUConfiguration> domUConfigurations = domUConfigurationsByHostname.get(dom0.hostname);
+			dom0Configurations.put(
+				dom0.hostname,
+				new Dom0Configuration(
+					dom0,
+					domUConfigurations==null
+						? emptyDomUConfigurationList
+						: Collections.unmodifiableList(domUConfigurations)
+				)
+			);
+		}
+		return Collections.unmodifiableMap(dom0Configurations);
+	}
+
+	/**
+	 * Gets the DomUs on one Dom0 along with the resources they allocate.  To conserve
+	 * heap space at the expense of more time, this runs in O(n).  When analyzing every
+	 * Dom0, use {@link #getDom0Configurations()} instead.
+	 */
+	public Dom0Configuration getDom0Configuration(Dom0 dom0) {
+		assert dom0.clusterName.equals(cluster.name) : this+": dom0 is not part of this cluster: "+dom0;
+		List<DomUConfiguration> domUConfigurations = new ArrayList<>();
+		for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) {
+			DomUConfiguration domUConfiguration = unmodifiableDomUConfigurations.get(i);
+			if(domUConfiguration.primaryDom0==dom0 || domUConfiguration.secondaryDom0==dom0) domUConfigurations.add(domUConfiguration);
+		}
+		return new Dom0Configuration(
+			dom0,
+			domUConfigurations.isEmpty()
+				? emptyDomUConfigurationList
+				: Collections.unmodifiableList(domUConfigurations)
+		);
+	}
+
 	private static boolean contains(List<DomUConfiguration> domUConfigurations, DomU domU) {
 		for(DomUConfiguration domUConfiguration : domUConfigurations) {
 			if(domUConfiguration.domU==domU) return true;
@@ -199,19 +351,18 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		assert domU.clusterName.equals(cluster.name) : this+": DomU is not part of this cluster: "+domU;
 		assert primaryDom0.clusterName.equals(cluster.name) : this+": primaryDom0 is not part of this cluster: "+primaryDom0;
 		assert secondaryDom0.clusterName.equals(cluster.name) : this+": secondaryDom0 is not part of this cluster: "+secondaryDom0;
-		return new ClusterConfiguration(
-			cluster,
-			addToUnmodifiableList(
-				DomUConfiguration.class,
-				unmodifiableDomUConfigurations,
-				new DomUConfiguration(
-					domU,
-					primaryDom0,
-					secondaryDom0,
-					emptyDomUDiskConfigurationList
-				)
+		ClusterConfiguration added = newClusterConfigurationAdding(
+			DomUConfiguration.newInstance(
+				domU,
+				primaryDom0,
+				secondaryDom0,
+				emptyDomUDiskConfigurationList
 			)
 		);
+		// A DomU without disks allocates no physical volumes
+		added.allocatedPhysicalVolumes = allocatedPhysicalVolumes;
+		added.allocatedPhysicalExtents = allocatedPhysicalExtents;
+		return added;
 	}
 
 	private static boolean contains(List<DomUDiskConfiguration> domUDiskConfigurations, DomUDisk domUDisk) {
@@ -262,24 +413,20 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		assert allDom0Match(primaryPVCopy, domUConfiguration.primaryDom0);
 		assert allDom0Match(secondaryPVCopy, domUConfiguration.secondaryDom0);
 
-		return new ClusterConfiguration(
-			cluster,
-			replaceInUnmodifiableList(
-				DomUConfiguration.class,
-				unmodifiableDomUConfigurations,
-				unmodifiableDomUConfigurationsIndex,
-				new DomUConfiguration(
-					domUConfiguration.domU,
-					domUConfiguration.primaryDom0,
-					domUConfiguration.secondaryDom0,
-					addToUnmodifiableList(
-						DomUDiskConfiguration.class,
-						domUConfiguration.unmodifiableDomUDiskConfigurations,
-						new DomUDiskConfiguration(
-							domUDisk,
-							primaryPVCopy,
-							secondaryPVCopy
-						)
+		return newClusterConfigurationReplacing(
+			unmodifiableDomUConfigurationsIndex,
+			domUConfiguration,
+			DomUConfiguration.newInstance(
+				domUConfiguration.domU,
+				domUConfiguration.primaryDom0,
+				domUConfiguration.secondaryDom0,
+				addToUnmodifiableList(
+					DomUDiskConfiguration.class,
+					domUConfiguration.unmodifiableDomUDiskConfigurations,
+					DomUDiskConfiguration.newInstance(
+						domUDisk,
+						primaryPVCopy,
+						secondaryPVCopy
 					)
 				)
 			)
@@ -308,41 +455,56 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		if(size==0) newDomUDiskConfigurations = oldDomUDiskConfigurations;
 		else if(size==1) {
 			// Swap single
-			DomUDiskConfiguration oldDomUDiskConfiguration = oldDomUDiskConfigurations.get(0);
-			newDomUDiskConfigurations = Collections.singletonList(
-				new DomUDiskConfiguration(
-					oldDomUDiskConfiguration.domUDisk,
-					oldDomUDiskConfiguration.secondaryPhysicalVolumeConfigurations,
-					oldDomUDiskConfiguration.primaryPhysicalVolumeConfigurations
-				)
-			);
+			newDomUDiskConfigurations = Collections.singletonList(oldDomUDiskConfigurations.get(0).swap());
 		} else {
 			// Build new ArrayList
 			DomUDiskConfiguration[] array = new DomUDiskConfiguration[size];
 			for(int c=0;c<size;c++) {
-				DomUDiskConfiguration oldDomUDiskConfiguration = oldDomUDiskConfigurations.get(c);
-				array[c] = new DomUDiskConfiguration(
-					oldDomUDiskConfiguration.domUDisk,
-					oldDomUDiskConfiguration.secondaryPhysicalVolumeConfigurations,
-					oldDomUDiskConfiguration.primaryPhysicalVolumeConfigurations
-				);
+				array[c] = oldDomUDiskConfigurations.get(c).swap();
 			}
 			newDomUDiskConfigurations = new UnmodifiableArrayList<>(array);
 		}
-		return new ClusterConfiguration(
-			cluster,
-			replaceInUnmodifiableList(
-				DomUConfiguration.class,
-				unmodifiableDomUConfigurations,
-				unmodifiableDomUConfigurationsIndex,
-				new DomUConfiguration(
-					domU,
-					domUConfiguration.secondaryDom0,
-					domUConfiguration.primaryDom0,
-					newDomUDiskConfigurations
-				)
+		ClusterConfiguration migrated = newClusterConfigurationReplacing(
+			unmodifiableDomUConfigurationsIndex,
+			domUConfiguration,
+			DomUConfiguration.newInstance(
+				domU,
+				domUConfiguration.secondaryDom0,
+				domUConfiguration.primaryDom0,
+				newDomUDiskConfigurations
 			)
 		);
+		// Only the roles of the physical volumes are swapped
+		migrated.allocatedPhysicalVolumes = allocatedPhysicalVolumes;
+		migrated.allocatedPhysicalExtents = allocatedPhysicalExtents;
+		assert PackedClusterConfiguration.matchesLiveMigrate(this, domU, migrated) : this+": packed liveMigrate mismatch: "+domU;
+		return migrated;
+	}
+
+	/**
+	 * Replaces the configuration of one DomU with one taken from another configuration of
+	 * the same cluster, such as from a result of {@link #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}.
+	 * This allows a transition to be replayed without searching for a physical volume mapping again.
+	 * The caller must ensure the physical volumes are not allocated to any other DomU in this configuration.
+	 */
+	public ClusterConfiguration replaceDomUConfiguration(DomUConfiguration domUConfiguration) {
+		DomU domU = domUConfiguration.domU;
+		DomUConfiguration existing = null;
+		int unmodifiableDomUConfigurationsIndex = 0;
+		for(int len=unmodifiableDomUConfigurations.size(); unmodifiableDomUConfigurationsIndex<len; unmodifiableDomUConfigurationsIndex++) {
+			DomUConfiguration tDomUConfiguration = unmodifiableDomUConfigurations.get(unmodifiableDomUConfigurationsIndex);
+			if(tDomUConfiguration.domU==domU) {
+				existing = tDomUConfiguration;
+				break;
+			}
+		}
+		assert existing!=null : this+": DomUConfiguration not found: "+domU;
+		if(existing.equals(domUConfiguration)) return this;
+		return newClusterConfigurationReplacing(
+			unmodifiableDomUConfigurationsIndex,
+			existing,
+			domUConfiguration
+		);
 	}
 
 	/**
@@ -367,19 +529,33 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 	 *   </li>
 	 * </ol>
 	 * 
-	 * In the future, a more advanced configuration could try to reduce the combinations while (hopefully) not losing any possible solution by:
-	 * <ol>
-	 *   <li>Always allocating DomUDisks of the same min speed, extents, and weight in order by device</li>
-	 *   <li>Always allocating to the physical volumes in order by speed, device, partition</li>
-	 *   <li>Always allocating from the first unused physical volumes on a single Dom0Disk</li>
-	 *   <li>Always consuming as many of the physical volumes in a single Dom0Disk as possible</li>
-	 *   <li>Not returning multiple results onto different Dom0Disk that have the same speed, size, and overall allocation</li>
-	 * </ol>
+	 * This already allocates DomUDisks in order by device, to the physical volumes in order by speed, device,
+	 * partition, from the first unused physical volumes on a Dom0Disk, consuming as many of them as possible.
+	 * The remaining choice is the starting Dom0Disk.  Each Dom0Disk without any allocation is given an
+	 * equivalence class from a fingerprint of its speed and the sizes of its physical volumes, while each
+	 * Dom0Disk with an allocation is in a class of its own.  A mapping onto the same sequence of classes as
+	 * an earlier mapping is the same placement on interchangeable Dom0Disks, so it is not returned.  No
+	 * distinct solution is lost, only mirror images of one.
 	 *
 	 * @return  the new configuration(s)
+	 *
+	 * @see  #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.MoveSecondaryCache)
 	 */
-	@SuppressWarnings("UseOfSystemOutOrSystemErr")
 	public Iterable<ClusterConfiguration> moveSecondary(DomU domU, Dom0 newSecondaryDom0) {
+		return moveSecondary(domU, newSecondaryDom0, null);
+	}
+
+	/**
+	 * Moves the secondary to another machine, reusing the mappings found for any other configuration
+	 * with the same free physical volumes on the new secondary.
+	 *
+	 * @param  cache  the cache of mappings, or <code>null</code> to always find the mappings
+	 *
+	 * @return  the new configuration(s)
+	 *
+	 * @see  #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)
+	 */
+	public Iterable<ClusterConfiguration> moveSecondary(DomU domU, Dom0 newSecondaryDom0, MoveSecondaryCache cache) {
 		// Find existing configuration
 		DomUConfiguration domUConfiguration = null;
 		int unmodifiableDomUConfigurationsIndex = 0;
@@ -392,25 +568,268 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 		}
 		assert domUConfiguration!=null : this+": DomUConfiguration not found: "+domU;
 
+		long[] allocated = getAllocatedPhysicalVolumes();
+		long[][] allocatedExtents = cluster.allocatePartialPhysicalVolumes ? getAllocatedPhysicalExtents() : null;
+		List<DomUConfiguration> mappedDomUConfigurations;
+		if(cache==null) {
+			mappedDomUConfigurations = moveSecondary(
+				domUConfiguration,
+				newSecondaryDom0,
+				physicalVolume -> isAllocated(allocated, physicalVolume),
+				allocatedExtents==null ? null : physicalVolume -> allocatedExtents[physicalVolume.id]
+			);
+		} else {
+			// Fingerprint the allocations on the new secondary
+			long freeHigh = Fingerprint.HIGH_SEED;
+			long freeLow = Fingerprint.LOW_SEED;
+			for(Dom0Disk dom0Disk : newSecondaryDom0.sortedDom0Disks) {
+				for(PhysicalVolume physicalVolume : dom0Disk.sortedPhysicalVolumes) {
+					if(isAllocated(allocated, physicalVolume)) {
+						long[] extents = allocatedExtents==null ? null : allocatedExtents[physicalVolume.id];
+						int len = extents==null ? 0 : extents.length;
+						freeHigh = Fingerprint.high(freeHigh, len + 1);
+						freeLow = Fingerprint.low(freeLow, len + 1);
+						for(int i=0; i<len; i++) {
+							freeHigh = Fingerprint.high(freeHigh, extents[i]);
+							freeLow = Fingerprint.low(freeLow, extents[i]);
+						}
+					} else {
+						freeHigh = Fingerprint.high(freeHigh, 0);
+						freeLow = Fingerprint.low(freeLow, 0);
+					}
+				}
+			}
+			mappedDomUConfigurations = cache.get(domU, newSecondaryDom0, freeHigh, freeLow);
+			if(mappedDomUConfigurations==null) {
+				mappedDomUConfigurations = moveSecondary(
+					domUConfiguration,
+					newSecondaryDom0,
+					physicalVolume -> isAllocated(allocated, physicalVolume),
+					allocatedExtents==null ? null : physicalVolume -> allocatedExtents[physicalVolume.id]
+				);
+				cache.put(domU, newSecondaryDom0, freeHigh, freeLow, mappedDomUConfigurations);
+			} else {
+				mappedDomUConfigurations = withPrimary(mappedDomUConfigurations, domUConfiguration);
+			}
+		}
+		int size = mappedDomUConfigurations.size();
+		List<ClusterConfiguration> mappedConfigurations;
+		if(size==0) {
+			mappedConfigurations = Collections.emptyList();
+		} else if(size==1) {
+			mappedConfigurations = Collections.singletonList(
+				newClusterConfigurationReplacing(
+					unmodifiableDomUConfigurationsIndex,
+					domUConfiguration,
+					mappedDomUConfigurations.get(0)
+				)
+			);
+		} else {
+			mappedConfigurations = new ArrayList<>(size);
+			for(int i=0; i<size; i++) {
+				mappedConfigurations.add(
+					newClusterConfigurationReplacing(
+						unmodifiableDomUConfigurationsIndex,
+						domUConfiguration,
+						mappedDomUConfigurations.get(i)
+					)
+				);
+			}
+		}
+		assert PackedClusterConfiguration.matchesMoveSecondary(this, domU, newSecondaryDom0, mappedConfigurations) : this+": packed moveSecondary mismatch: "+domU+" to "+newSecondaryDom0;
+		return mappedConfigurations;
+	}
+
+	/**
+	 * Gets mappings found for another configuration of the same DomU with the primary of the
+	 * provided configuration, which may differ.  All of the mappings share the primary they
+	 * were found with.
+	 */
+	private static List<DomUConfiguration> withPrimary(List<DomUConfiguration> mappedDomUConfigurations, DomUConfiguration domUConfiguration) {
+		int size = mappedDomUConfigurations.size();
+		if(size==0 || hasPrimary(mappedDomUConfigurations.get(0), domUConfiguration)) return mappedDomUConfigurations;
+		List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.unmodifiableDomUDiskConfigurations;
+		int disks = domUDiskConfigurations.size();
+		DomUConfiguration[] array = new DomUConfiguration[size];
+		for(int i=0; i<size; i++) {
+			DomUConfiguration mapped = mappedDomUConfigurations.get(i);
+			List<DomUDiskConfiguration> mappedDomUDiskConfigurations = mapped.unmodifiableDomUDiskConfigurations;
+			DomUDiskConfiguration[] newDomUDiskConfigurations = new DomUDiskConfiguration[disks];
+			for(int j=0; j<disks; j++) {
+				DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(j);
+				assert mappedDomUDiskConfigurations.get(j).domUDisk==domUDiskConfiguration.domUDisk : "DomUDisk mismatch";
+				newDomUDiskConfigurations[j] = DomUDiskConfiguration.newInstance(
+					domUDiskConfiguration.domUDisk,
+					domUDiskConfiguration.primaryPhysicalVolumeConfigurations,
+					mappedDomUDiskConfigurations.get(j).secondaryPhysicalVolumeConfigurations
+				);
+			}
+			array[i] = DomUConfiguration.newInstance(
+				domUConfiguration.domU,
+				domUConfiguration.primaryDom0,
+				mapped.secondaryDom0,
+				disks==0 ? emptyDomUDiskConfigurationList
+				: disks==1 ? Collections.singletonList(newDomUDiskConfigurations[0])
+				: new UnmodifiableArrayList<>(newDomUDiskConfigurations)
+			);
+		}
+		return new UnmodifiableArrayList<>(array);
+	}
+
+	/**
+	 * Determines if a mapping has the same primary as the provided configuration.
+	 */
+	private static boolean hasPrimary(DomUConfiguration mapped, DomUConfiguration domUConfiguration) {
+		if(mapped.primaryDom0!=domUConfiguration.primaryDom0) return false;
+		List<DomUDiskConfiguration> mappedDomUDiskConfigurations = mapped.unmodifiableDomUDiskConfigurations;
+		List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.unmodifiableDomUDiskConfigurations;
+		for(int i=0, size=domUDiskConfigurations.size(); i<size; i++) {
+			if(
+				!mappedDomUDiskConfigurations.get(i).primaryPhysicalVolumeConfigurations.equals(
+					domUDiskConfigurations.get(i).primaryPhysicalVolumeConfigurations
+				)
+			) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the bitmap of the physical volumes allocated to any DomU in this configuration,
+	 * building it in O(n) of the physical volume configurations on first use.
+	 *
+	 * @see  #allocatedPhysicalVolumes
+	 */
+	private long[] getAllocatedPhysicalVolumes() {
+		long[] allocated = allocatedPhysicalVolumes;
+		if(allocated==null) {
+			allocated = new long[(cluster.physicalVolumeCount + 63) >>> 6];
+			for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) {
+				List<DomUDiskConfiguration> domUDiskConfigurations = unmodifiableDomUConfigurations.get(i).unmodifiableDomUDiskConfigurations;
+				for(int j=0, disks=domUDiskConfigurations.size(); j<disks; j++) {
+					DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(j);
+					setAllocated(allocated, domUDiskConfiguration.primaryPhysicalVolumeConfigurations);
+					setAllocated(allocated, domUDiskConfiguration.secondaryPhysicalVolumeConfigurations);
+				}
+			}
+			allocatedPhysicalVolumes = allocated;
+		}
+		return allocated;
+	}
+
+	private static void setAllocated(long[] allocated, List<PhysicalVolumeConfiguration> physicalVolumeConfigurations) {
+		for(int i=0, size=physicalVolumeConfigurations.size(); i<size; i++) {
+			int id = physicalVolumeConfigurations.get(i).physicalVolume.id;
+			allocated[id >>> 6] |= 1L << id;
+		}
+	}
+
+	private static boolean isAllocated(long[] allocated, PhysicalVolume physicalVolume) {
+		int id = physicalVolume.id;
+		return (allocated[id >>> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Gets the physical extents allocated on each physical volume, building them in O(n) of the
+	 * physical volume configurations on first use.
+	 *
+	 * @see  #allocatedPhysicalExtents
+	 */
+	private long[][] getAllocatedPhysicalExtents() {
+		long[][] allocatedExtents = allocatedPhysicalExtents;
+		if(allocatedExtents==null) {
+			allocatedExtents = new long[cluster.physicalVolumeCount][];
+			for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) {
+				List<DomUDiskConfiguration> domUDiskConfigurations = unmodifiableDomUConfigurations.get(i).unmodifiableDomUDiskConfigurations;
+				for(int j=0, disks=domUDiskConfigurations.size(); j<disks; j++) {
+					DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(j);
+					addAllocatedExtents(allocatedExtents, domUDiskConfiguration.primaryPhysicalVolumeConfigurations);
+					addAllocatedExtents(allocatedExtents, domUDiskConfiguration.secondaryPhysicalVolumeConfigurations);
+				}
+			}
+			allocatedPhysicalExtents = allocatedExtents;
+		}
+		return allocatedExtents;
+	}
+
+	private static void addAllocatedExtents(long[][] allocatedExtents, List<PhysicalVolumeConfiguration> physicalVolumeConfigurations) {
+		for(int i=0, size=physicalVolumeConfigurations.size(); i<size; i++) {
+			PhysicalVolumeConfiguration physicalVolumeConfiguration = physicalVolumeConfigurations.get(i);
+			allocatedExtents[physicalVolumeConfiguration.physicalVolume.id] = addAllocatedExtents(
+				allocatedExtents[physicalVolumeConfiguration.physicalVolume.id],
+				physicalVolumeConfiguration.getFirstPhysicalExtent(),
+				physicalVolumeConfiguration.getExtents()
+			);
+		}
+	}
+
+	/**
+	 * Adds one pair of first physical extent and extents, growing the array by one pair.
+	 */
+	static long[] addAllocatedExtents(long[] allocatedExtents, long firstPhysicalExtent, long extents) {
+		int len;
+		if(allocatedExtents==null) {
+			len = 0;
+			allocatedExtents = new long[2];
+		} else {
+			len = allocatedExtents.length;
+			allocatedExtents = Arrays.copyOf(allocatedExtents, len + 2);
+		}
+		allocatedExtents[len] = firstPhysicalExtent;
+		allocatedExtents[len + 1] = extents;
+		return allocatedExtents;
+	}
+
+	/**
+	 * Determines if a list of free extents is in its natural order.
+	 */
+	private static boolean isSorted(List<FreeExtents> freeExtents) {
+		for(int i=1, size=freeExtents.size(); i<size; i++) {
+			if(freeExtents.get(i - 1).compareTo(freeExtents.get(i))>0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if none of the physical volumes of a Dom0Disk are allocated.
+	 */
+	private static boolean isUnallocated(Dom0Disk dom0Disk, Predicate<PhysicalVolume> allocated) {
+		for(PhysicalVolume physicalVolume : dom0Disk.sortedPhysicalVolumes) {
+			if(allocated.test(physicalVolume)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the new configurations of a DomU with its secondary moved to another Dom0, as described
+	 * by {@link #moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}.
+	 * This is shared with {@link PackedClusterConfiguration}, which finds the allocated physical volumes
+	 * from its own representation.
+	 *
+	 * @param  allocated  determines if a physical volume of the new secondary Dom0 is allocated to any DomU
+	 * @param  allocatedExtents  gets the physical extents of an allocated physical volume, as pairs of first
+	 *                           physical extent and extents, or <code>null</code> to only allocate wholly unallocated
+	 *                           physical volumes
+	 *
+	 * @return  the new configuration(s) of the DomU
+	 */
+	static List<DomUConfiguration> moveSecondary(
+		DomUConfiguration domUConfiguration,
+		Dom0 newSecondaryDom0,
+		Predicate<PhysicalVolume> allocated,
+		Function<PhysicalVolume, long[]> allocatedExtents
+	) {
+		DomU domU = domUConfiguration.domU;
 		Map<String, DomUDisk> domUDisks = domU.getDomUDisks();
 		Iterator<Map.Entry<String, DomUDisk>> domUDisksIter = domUDisks.entrySet().iterator();
 		if(!domUDisksIter.hasNext()) {
 			// Short-cut if domU has no disks
 			List<DomUDiskConfiguration> newDomUDiskConfigurations = Collections.emptyList();
 			return Collections.singletonList(
-				new ClusterConfiguration(
-					cluster,
-					replaceInUnmodifiableList(
-						DomUConfiguration.class,
-						unmodifiableDomUConfigurations,
-						unmodifiableDomUConfigurationsIndex,
-						new DomUConfiguration(
-							domU,
-							domUConfiguration.primaryDom0,
-							newSecondaryDom0,
-							newDomUDiskConfigurations
-						)
-					)
+				DomUConfiguration.newInstance(
+					domU,
+					domUConfiguration.primaryDom0,
+					newSecondaryDom0,
+					newDomUDiskConfigurations
 				)
 			);
 		}
@@ -424,70 +843,91 @@ public class ClusterConfiguration implements Comparable<ClusterConfiguration>, S
 			if(nextMinSpeed!=firstMinSpeed) throw new AssertionError("DomUDisks have different minimum speeds: "+firstDomUDisk+"="+firstMinSpeed+" while "+nextDomUDisk+"="+nextMinSpeed);
 		}
 
-		// Find all unallocated physical volumes
-		SortedMap<Dom0Disk, List<PhysicalVolume>> unallocatedDom0Disks = new TreeMap<>(); // Natural sort of Dom0Disk is by speed then device
-		for(Dom0Disk dom0Disk : newSecondaryDom0.unmodifiableDom0Disks.values()) {
-			for(PhysicalVolume physicalVolume : dom0Disk.unmodifiablePhysicalVolumes.values()) {
-				// Find if allocated
-				boolean allocated = false;
-	 ALLOCATED: for(DomUConfiguration duc : unmodifiableDomUConfigurations) {
-					if(duc.primaryDom0==newSecondaryDom0) {
-						// Primary matches
-						for(DomUDiskConfiguration dudc : duc.unmodifiableDomUDiskConfigurations) {
-							for(PhysicalVolumeConfiguration pvc : dudc.primaryPhysicalVolumeConfigurations) {
-								if(pvc.physicalVolume==physicalVolume) {
-									allocated = true;
-									break ALLOCATED;
-								}
-							}
-						}
-					} else if(duc.secondaryDom0==newSecondaryDom0) {
-						// Secondary matches
-						for(DomUDiskConfiguration dudc : duc.unmodifiableDomUDiskConfigurations) {
-							for(PhysicalVolumeConfiguration pvc : dudc.secondaryPhysicalVolumeConfigurations) {
-								if(pvc.physicalVolume==physicalVolume) {
-									allocated = true;
-									break ALLOCATED;
-								}
-							}
-						}
-					}
-				}
-				if(!allocated) {
-					//SortedMap<Dom0Disk, SortedSet<PhysicalVolume>> unallocatedPhysicalVolumes = new TreeMap<Dom0Disk, SortedSet<PhysicalVolume>>(); // Natural sort of Dom0Disk is by speed then device
-					List<PhysicalVolume> unallocatedPhysicalVolumes = unallocatedDom0Disks.get(dom0Disk);
-					if(unallocatedPhysicalVolumes==null) unallocatedDom0Disks.put(dom0Disk, unallocatedPhysicalVolumes = new ArrayList<>());
-					unallocatedPhysicalVolumes.add(physicalVolume);
+		// Find all free extents, which are whole unallocated physical volumes unless allocating partial physical volumes
+		// Walks the Dom0Disks in their natural order, which is by speed then device, and the physical volumes of each in partition order
+		List<Dom0Disk> unallocatedDom0DisksList = new ArrayList<>();
+		List<List<FreeExtents>> unallocatedPhysicalVolumesList = new ArrayList<>();
+		for(Dom0Disk dom0Disk : newSecondaryDom0.sortedDom0Disks) {
+			List<FreeExtents> unallocatedPhysicalVolumes = null;
+			for(PhysicalVolume physicalVolume : dom0Disk.sortedPhysicalVolumes) {
+				if(!allocated.test(physicalVolume)) {
+					if(unallocatedPhysicalVolumes==null) unallocatedPhysicalVolumes = new ArrayList<>();
+					unallocatedPhysicalVolumes.add(new FreeExtents(physicalVolume, 0, physicalVolume.extents));
+				} else if(allocatedExtents!=null) {
+					if(unallocatedPhysicalVolumes==null) unallocatedPhysicalVolumes = new ArrayList<>();
+					FreeExtents.addFreeExtents(physicalVolume, allocatedExtents.apply(physicalVolume), unallocatedPhysicalVolumes);
 				}
 			}
-		}
-		// Sort by partition number
-		for(List<PhysicalVolume> sortMe : unallocatedDom0Disks.values()) {
-			Collections.sort(sortMe);
+			if(unallocatedPhysicalVolumes!=null && !unallocatedPhysicalVolumes.isEmpty()) {
+				// Already by partition number, then by first physical extent
+				assert isSorted(unallocatedPhysicalVolumes) : "free extents not in order";
+				unallocatedDom0DisksList.add(dom0Disk);
+				unallocatedPhysicalVolumesList.add(unallocatedPhysicalVolumes);
+			}
 		}
 
-		int size = unallocatedDom0Disks.size();
+		int size = unallocatedDom0DisksList.size();
 		if(size==0) {
 			// No free physical volumes
 			return Collections.emptyList();
 		}
-		List<ClusterConfiguration> mappedConfigurations = new ArrayList<>();
-		int alreadyContainsCount = 0;
+		List<DomUConfiguration> mappedDomUConfigurations = new ArrayList<>();
 		// Reused on inner loop
 		List<DomUDiskConfiguration> newDomUDiskConfigurations = new ArrayList<>();
 		List<PhysicalVolumeConfiguration> secondaryPhysicalVolumeConfigurations = new ArrayList<>();
 		// Work through each Dom0Disk as a starting point
-		List<Dom0Disk> unallocatedDom0DisksList = new ArrayList<>(unallocatedDom0Disks.keySet());
+		// The equivalence class of each Dom0Disk and of each mapping returned
+		long[] dom0DiskClassHighs;
+		long[] dom0DiskClassLows;
+		long[] mappedClassHighs;
+		long[] mappedClassLows;
+		int mappedClassCount = 0;
+		if(SKIP_EQUIVALENT_DOM0_DISKS && size>1) {
+			dom0DiskClassHighs = new long[size];
+			dom0DiskClassLows = new long[size];
+			for(int i=0; i<size; i++) {
+				Dom0Disk dom0Disk = unallocatedDom0DisksList.get(i);
+				long high;
+				long low;
+				if(isUnallocated(dom0Disk, allocated)) {
+					// Unallocated Dom0Disks of the same speed and physical volume sizes are interchangeable
+					high = Fingerprint.high(Fingerprint.HIGH_SEED, dom0Disk.diskSpeed);
+					low = Fingerprint.low(Fingerprint.LOW_SEED, dom0Disk.diskSpeed);
+					List<FreeExtents> freeExtents = unallocatedPhysicalVolumesList.get(i);
+					int freeSize = freeExtents.size();
+					high = Fingerprint.high(high, freeSize);
+					low = Fingerprint.low(low, freeSize);
+					for(int j=0; j<freeSize; j++) {
+						long extents = freeExtents.get(j).extents;
+						high = Fingerprint.high(high, extents);
+						low = Fingerprint.low(low, extents);
+					}
+				} else {
+					// Any Dom0Disk with DomUs is distinct, since its DomUs may be moved by later transitions
+					high = Fingerprint.high(Fingerprint.DOM0_SEED, dom0Disk.id);
+					low = Fingerprint.low(Fingerprint.DOM0_SEED, dom0Disk.id);
+				}
+				dom0DiskClassHighs[i] = high;
+				dom0DiskClassLows[i] = low;
+			}
+			mappedClassHighs = new long[size];
+			mappedClassLows = new long[size];
+		} else {
+			dom0DiskClassHighs = null;
+			dom0DiskClassLows = null;
+			mappedClassHighs = null;
+			mappedClassLows = null;
+		}
 START_DISK:
 		for(int startDiskIndex = 0; startDiskIndex<size; startDiskIndex++) {
 			// These are all used to iterate through the physical volumes during allocation
 			int currentDiskIndex = startDiskIndex;
 			Dom0Disk currentDom0Disk = unallocatedDom0DisksList.get(currentDiskIndex);
 			assert currentDom0Disk!=null : "dom0Disk is null";
-			List<PhysicalVolume> currentPhysicalVolumes = unallocatedDom0Disks.get(currentDom0Disk);
+			List<FreeExtents> currentPhysicalVolumes = unallocatedPhysicalVolumesList.get(currentDiskIndex);
 			assert currentPhysicalVolumes!=null : "physicalVolumes is null";
 			int currentPhysicalVolumeIndex = 0;
-			PhysicalVolume currentPhysicalVolume = currentPhysicalVolumes.get(currentPhysicalVolumeIndex);
+			FreeExtents currentPhysicalVolume = currentPhysicalVolumes.get(currentPhysicalVolumeIndex);
 			long currentPhysicalVolumeExtentsRemaing = currentPhysicalVolume.extents;
 
 			// Allocate all the extents of the free physical volumes in order on each Dom0Disk in order until VM mapped
@@ -509,9 +949,9 @@ DOMU_DISK:
 					long allocatingExtents = currentPhysicalVolumeExtentsRemaing<domUDiskAllocationRemaining ? currentPhysicalVolumeExtentsRemaing : domUDiskAllocationRemaining;
 					secondaryPhysicalVolumeConfigurations.add(
 						PhysicalVolumeConfiguration.newInstance(
-							currentPhysicalVolume,
+							currentPhysicalVolume.physicalVolume,
 							domUDisk.extents - domUDiskAllocationRemaining,
-							currentPhysicalVolume.extents - currentPhysicalVolumeExtentsRemaing,
+							currentPhysicalVolume.firstPhysicalExtent + currentPhysicalVolume.extents - currentPhysicalVolumeExtentsRemaing,
 							allocatingExtents
 						)
 					);
@@ -534,7 +974,7 @@ DOMU_DISK:
 							if(currentDiskIndex<unallocatedDom0DisksList.size()) {
 								currentDom0Disk = unallocatedDom0DisksList.get(currentDiskIndex);
 								assert currentDom0Disk!=null : "dom0Disk is null";
-								currentPhysicalVolumes = unallocatedDom0Disks.get(currentDom0Disk);
+								currentPhysicalVolumes = unallocatedPhysicalVolumesList.get(currentDiskIndex);
 								assert currentPhysicalVolumes!=null : "physicalVolumes is null";
 								currentPhysicalVolumeIndex = 0;
 								currentPhysicalVolume = currentPhysicalVolumes.get(currentPhysicalVolumeIndex);
@@ -553,7 +993,7 @@ DOMU_DISK:
 						// This must be the last DomUDisk to be accepted
 						if(!hasMorePhysicalExtents && domUDiskConfigurationsIndex<(domUDiskConfigurationsSize-1)) break START_DISK; // More disks but no room left, can't allocate any more
 						newDomUDiskConfigurations.add(
-							new DomUDiskConfiguration(
+							DomUDiskConfiguration.newInstance(
 								domUDisk,
 								domUDiskConfiguration.primaryPhysicalVolumeConfigurations,
 								getSortedUnmodifiableCopy(PhysicalVolumeConfiguration.class, secondaryPhysicalVolumeConfigurations)
@@ -567,101 +1007,35 @@ DOMU_DISK:
 				}
 			}
 			// avoid allocation to exactly equal resources in exactly equal ways
-			boolean alreadyContains = false;
-			if(USE_ALREADY_CONTAINS) {
-				for(ClusterConfiguration alreadyMappedConfig : mappedConfigurations) {
-					DomUConfiguration alreadyMappedDomUConfig = alreadyMappedConfig.getDomUConfigurations().get(unmodifiableDomUConfigurationsIndex);
-					assert alreadyMappedDomUConfig.getDomU()==domU : "alreadyMappedDomUConfig.domU!=domU";
-					List<DomUDiskConfiguration> alreadyMappedDiskConfigs = alreadyMappedDomUConfig.getDomUDiskConfigurations();
-					int mappedSize = alreadyMappedDiskConfigs.size();
-					if(mappedSize==newDomUDiskConfigurations.size()) {
-						alreadyContains = true;
-						for(int c=0; c<mappedSize; c++) {
-							DomUDiskConfiguration alreadyMappedDiskConfig = alreadyMappedDiskConfigs.get(c);
-							DomUDiskConfiguration newDiskConfig = newDomUDiskConfigurations.get(c);
-							assert alreadyMappedDiskConfig.domUDisk == newDiskConfig.domUDisk : "alreadyMappedDiskConfig.domUDisk!=newDiskConfig.domUDisk";
-							List<PhysicalVolumeConfiguration> alreadyMappedPVConfigs = alreadyMappedDiskConfig.secondaryPhysicalVolumeConfigurations;
-							List<PhysicalVolumeConfiguration> newPVConfigs = newDiskConfig.secondaryPhysicalVolumeConfigurations;
-							int pvSize = alreadyMappedPVConfigs.size();
-							if(pvSize==newPVConfigs.size()) {
-								for(int pvIndex=0; pvIndex<pvSize; pvIndex++) {
-									// TODO: Also consider total extents mapped (interaction with other VMs)?
-									// TODO: Consider match by total extents and those of other VMs?
-									// TODO: Or, just randomize the order???
-									PhysicalVolumeConfiguration alreadyMappedPVConfig = alreadyMappedPVConfigs.get(pvIndex);
-									PhysicalVolumeConfiguration newPVConfig = newPVConfigs.get(pvIndex);
-									if(
-										alreadyMappedPVConfig.getFirstLogicalExtent()!=newPVConfig.getFirstLogicalExtent()
-										|| alreadyMappedPVConfig.getFirstPhysicalExtent()!=newPVConfig.getFirstPhysicalExtent()
-										|| alreadyMappedPVConfig.getExtents()!=newPVConfig.getExtents()
-									) {
-										alreadyContains = false;
-										break;
-									}
-								}
-							} else {
-								alreadyContains = false;
-								break;
-							}
-						}
-						if(alreadyContains) break;
-					}
+			if(dom0DiskClassHighs!=null) {
+				// The mapping is determined by the classes of the Dom0Disks from the start through the current
+				int touched = currentDiskIndex - startDiskIndex + 1;
+				long high = Fingerprint.high(Fingerprint.HIGH_SEED, touched);
+				long low = Fingerprint.low(Fingerprint.LOW_SEED, touched);
+				for(int i=startDiskIndex, end=Math.min(currentDiskIndex, size - 1); i<=end; i++) {
+					high = Fingerprint.high(high, dom0DiskClassHighs[i]);
+					low = Fingerprint.low(low, dom0DiskClassLows[i]);
 				}
-			}
-			// If mapping complete add to results
-			if(alreadyContains) {
-				alreadyContainsCount++;
-			} else {
-				mappedConfigurations.add(
-					new ClusterConfiguration(
-						cluster,
-						replaceInUnmodifiableList(
-							DomUConfiguration.class,
-							unmodifiableDomUConfigurations,
-							unmodifiableDomUConfigurationsIndex,
-							new DomUConfiguration(
-								domU,
-								domUConfiguration.primaryDom0,
-								newSecondaryDom0,
-								getUnmodifiableCopy(DomUDiskConfiguration.class, newDomUDiskConfigurations)
-							)
-						)
-					)
-				);
-			}
-		}
-
-		if(USE_ALREADY_CONTAINS) {
-			synchronized(mappedConfigurationsStatsLock) {
-				totalMapped += mappedConfigurations.size();
-				totalAlreadyContains += alreadyContainsCount;
-				mappedCount++;
-				long currentTime = System.currentTimeMillis();
-				long timeSince = currentTime - lastDisplayTime;
-				if(timeSince<0 || timeSince>=60000) {
-					System.out.println(
-						"        totalMapped:"+totalMapped
-						+ " totalAlreadyContains:"+totalAlreadyContains
-						+ " mappedCount:"+mappedCount
-						+ " averageMapped:"+((float)totalMapped/(float)mappedCount)
-						+ " averageAlreadyContains:"+((float)totalAlreadyContains/(float)mappedCount)
-					);
-					//mappedCount = 0;
-					//totalMapped = 0;
-					//totalAlreadyContains = 0;
-					lastDisplayTime = currentTime;
+				for(int i=0; i<mappedClassCount; i++) {
+					if(mappedClassHighs[i]==high && mappedClassLows[i]==low) continue START_DISK;
 				}
+				mappedClassHighs[mappedClassCount] = high;
+				mappedClassLows[mappedClassCount] = low;
+				mappedClassCount++;
 			}
+			// If mapping complete add to results
+			mappedDomUConfigurations.add(
+				DomUConfiguration.newInstance(
+					domU,
+					domUConfiguration.primaryDom0,
+					newSecondaryDom0,
+					getUnmodifiableCopy(DomUDiskConfiguration.class, newDomUDiskConfigurations)
+				)
+			);
 		}
-		return mappedConfigurations;
+		return mappedDomUConfigurations;
 	}
 
-	private static final Object mappedConfigurationsStatsLock = new Object();
-	private static long mappedCount = 0;
-	private static long totalMapped = 0;
-	private static long totalAlreadyContains = 0;
-	private static long lastDisplayTime = System.currentTimeMillis();
-
 	/**
 	 * Performs a deep field-by-field comparison to see if two configurations are identical in every way.
 	 * 
@@ -681,17 +1055,10 @@ DOMU_DISK:
 		if(this==other) return true;
 		if(other==null) return false;
 		if(hashCode!=other.hashCode) return false; // hashCode is precomputed so this is a quick check
+		if(fingerprintHigh!=other.fingerprintHigh || fingerprintLow!=other.fingerprintLow) return false; // As is the fingerprint
 		if(cluster!=other.cluster) return false;
-		{
-			int size = unmodifiableDomUConfigurations.size();
-			if(size!=other.unmodifiableDomUConfigurations.size()) return false;
-			Iterator<DomUConfiguration> myIter = unmodifiableDomUConfigurations.iterator();
-			Iterator<DomUConfiguration> otherIter = other.unmodifiableDomUConfigurations.iterator();
-			while(myIter.hasNext()) {
-				if(!myIter.next().equals(otherIter.next())) return false;
-			}
-		}
-		return true;
+		// Skips chunks shared by the persistent lists, and interned DomU configurations are usually equal by identity
+		return unmodifiableDomUConfigurations.equals(other.unmodifiableDomUConfigurations);
 	}
 
 	@Override
@@ -699,6 +1066,58 @@ DOMU_DISK:
 		return hashCode;
 	}
 
+	/**
+	 * Gets the high 64 bits of the 128-bit fingerprint of this configuration.
+	 * Configurations of the same cluster that are {@link #equals(ClusterConfiguration) equal}
+	 * have the same fingerprint, and different configurations have the same fingerprint
+	 * with a probability low enough that a search may identify a configuration by its
+	 * fingerprint alone.
+	 * This is precomputed.
+	 *
+	 * @see  #getFingerprintLow()
+	 */
+	public long getFingerprintHigh() {
+		return fingerprintHigh;
+	}
+
+	/**
+	 * Gets the low 64 bits of the 128-bit fingerprint of this configuration.
+	 * This is precomputed.
+	 *
+	 * @see  #getFingerprintHigh()
+	 */
+	public long getFingerprintLow() {
+		return fingerprintLow;
+	}
+
+	/**
+	 * Gets the score of this configuration, with all results of AlertLevel LOW and
+	 * above, analyzing it on first use.  Since the score is immutable, concurrent first
+	 * calls may each analyze the configuration, but will get equal scores.
+	 *
+	 * @see  #getClusterScore(boolean)
+	 */
+	public ClusterScore getClusterScore() {
+		return getClusterScore(true);
+	}
+
+	/**
+	 * Gets the score of this configuration, analyzing it when not already kept.
+	 *
+	 * @param  keep  when <code>true</code>, a new score is kept for later calls.  Searches
+	 *               use <code>false</code> for configurations kept in large numbers, such
+	 *               as on an open list, where the score would use more heap than analyzing
+	 *               again when needed.
+	 */
+	public ClusterScore getClusterScore(boolean keep) {
+		ClusterScore score = clusterScore;
+		if(score==null) {
+			score = new ClusterScore(new AnalyzedClusterConfiguration(this), AlertLevel.LOW);
+			if(keep) clusterScore = score;
+		}
+		return score;
+	}
+
 	/**
 	 * Sorted ascending by:
 	 * <ol>
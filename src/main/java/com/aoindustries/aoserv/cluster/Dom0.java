@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,6 +23,7 @@
 package com.aoindustries.aoserv.cluster;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
@@ -33,9 +34,10 @@ import java.util.Map;
  */
 public class Dom0 implements Comparable<Dom0>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	final String clusterName;
+	final int id;
 	final String hostname;
 	//final Rack rack;
 	final int ram;
@@ -46,6 +48,17 @@ public class Dom0 implements Comparable<Dom0>, Serializable {
 	final boolean supportsHvm;
 	final Map<String, Dom0Disk> unmodifiableDom0Disks;
 
+	/**
+	 * The disks in their natural order, which is by speed then device.  This
+	 * MUST NOT BE MODIFIED.
+	 */
+	final Dom0Disk[] sortedDom0Disks;
+
+	/**
+	 * The key of this resource within fingerprints, derived from its identifying fields.
+	 */
+	final long fingerprintKey;
+
 	private static boolean hasNull(Collection<?> C) {
 		for(Object O : C) {
 			if(O == null) return true;
@@ -60,6 +73,7 @@ public class Dom0 implements Comparable<Dom0>, Serializable {
 	 */
 	Dom0(
 		String clusterName,
+		int id,
 		String hostname,
 		/*Rack rack,*/
 		int ram,
@@ -74,6 +88,7 @@ public class Dom0 implements Comparable<Dom0>, Serializable {
 		assert hostname!=null : "hostname is null";
 		assert !hasNull(unmodifiableDom0Disks.values()) : "null value in unmodifiableDom0Disks";
 		this.clusterName = clusterName;
+		this.id = id;
 		this.hostname = hostname;
 		//if(rack.getCluster()!=cluster) throw new IllegalArgumentException(this+": cluster!=rack.cluster");
 		//this.rack = rack;
@@ -84,12 +99,24 @@ public class Dom0 implements Comparable<Dom0>, Serializable {
 		this.processorCores = processorCores;
 		this.supportsHvm = supportsHvm;
 		this.unmodifiableDom0Disks = unmodifiableDom0Disks;
+		this.sortedDom0Disks = unmodifiableDom0Disks.values().toArray(new Dom0Disk[unmodifiableDom0Disks.size()]);
+		Arrays.sort(sortedDom0Disks);
+		this.fingerprintKey = Fingerprint.key(Fingerprint.key(Fingerprint.DOM0_SEED, clusterName), hostname);
 	}
 
 	public String getClusterName() {
 		return clusterName;
 	}
 
+	/**
+	 * Gets the index of this Dom0 within its cluster, from zero to one less than
+	 * {@link Cluster#getDom0Count()}.  It is assigned when the Dom0 is added and is not
+	 * changed as the cluster is built further.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	public String getHostname() {
 		return hostname;
 	}
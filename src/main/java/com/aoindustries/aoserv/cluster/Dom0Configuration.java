@@ -0,0 +1,220 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The DomUs that are primary or secondary on one Dom0 in a cluster configuration,
+ * along with the resources they allocate.  This allows a Dom0 to be analyzed in time
+ * proportional to the number of DomUs on it instead of the number of DomUs in the cluster.
+ *
+ * This is immutable and thread safe.
+ *
+ * @see  ClusterConfiguration#getDom0Configurations()
+ *
+ * @author  AO Industries, Inc.
+ */
+public class Dom0Configuration {
+
+	private static final Dom0[] emptyFailedDom0s = {};
+	private static final int[] emptyAllocatedSecondaryRams = {};
+
+	final Dom0 dom0;
+	final List<DomUConfiguration> unmodifiableDomUConfigurations;
+
+	/**
+	 * The total amount of primary RAM allocated to this Dom0, this cannot be overcommitted.
+	 */
+	private final int allocatedPrimaryRam;
+
+	/**
+	 * The total amount of primary processor weight allocated to this Dom0, this can be overcommitted in
+	 * a non-optimal state.
+	 */
+	private final int allocatedPrimaryProcessorWeight;
+
+	/**
+	 * The total amount of secondary RAM allocated per primary Dom0, this can be overcommitted in
+	 * a non-optimal state.  The primary Dom0s are in the order first found in the DomUs.
+	 */
+	private final Dom0[] failedDom0s;
+	private final int[] allocatedSecondaryRams;
+
+	private final long fingerprintHigh;
+	private final long fingerprintLow;
+
+	/**
+	 * unmodifiableDomUConfigurations must be unmodifiable and contain only the DomUs that are primary or secondary
+	 * on this Dom0.
+	 */
+	Dom0Configuration(Dom0 dom0, List<DomUConfiguration> unmodifiableDomUConfigurations) {
+		this.dom0 = dom0;
+		this.unmodifiableDomUConfigurations = unmodifiableDomUConfigurations;
+		int primaryRam = 0;
+		int primaryProcessorWeight = 0;
+		Dom0[] failedDom0s = emptyFailedDom0s;
+		int[] allocatedSecondaryRams = emptyAllocatedSecondaryRams;
+		int failedDom0Count = 0;
+		long high = Fingerprint.high(Fingerprint.HIGH_SEED, dom0.fingerprintKey);
+		long low = Fingerprint.low(Fingerprint.LOW_SEED, dom0.fingerprintKey);
+		for(int i=0, size=unmodifiableDomUConfigurations.size(); i<size; i++) {
+			DomUConfiguration domUConfiguration = unmodifiableDomUConfigurations.get(i);
+			high = Fingerprint.high(high, domUConfiguration.fingerprintHigh);
+			low = Fingerprint.low(low, domUConfiguration.fingerprintLow);
+			DomU domU = domUConfiguration.domU;
+			if(domUConfiguration.primaryDom0==dom0) {
+				primaryRam += domU.primaryRam;
+				primaryProcessorWeight += (int)domU.processorCores * (int)domU.processorWeight;
+			} else {
+				assert domUConfiguration.secondaryDom0==dom0 : "DomU is neither primary nor secondary on "+dom0+": "+domU;
+				int secondaryRam = domU.secondaryRam;
+				if(secondaryRam!=-1) {
+					// Few primary Dom0s per secondary, found by id instead of hashing hostnames
+					int failedDom0Id = domUConfiguration.primaryDom0.id;
+					int index = 0;
+					while(index<failedDom0Count && failedDom0s[index].id!=failedDom0Id) index++;
+					if(index==failedDom0Count) {
+						if(failedDom0Count==failedDom0s.length) {
+							int newLength = Math.max(4, failedDom0Count << 1);
+							failedDom0s = Arrays.copyOf(failedDom0s, newLength);
+							allocatedSecondaryRams = Arrays.copyOf(allocatedSecondaryRams, newLength);
+						}
+						failedDom0s[index] = domUConfiguration.primaryDom0;
+						failedDom0Count++;
+					}
+					allocatedSecondaryRams[index] += secondaryRam;
+				}
+			}
+		}
+		this.fingerprintHigh = high;
+		this.fingerprintLow = low;
+		this.allocatedPrimaryRam = primaryRam;
+		this.allocatedPrimaryProcessorWeight = primaryProcessorWeight;
+		if(failedDom0Count==failedDom0s.length) {
+			this.failedDom0s = failedDom0s;
+			this.allocatedSecondaryRams = allocatedSecondaryRams;
+		} else {
+			this.failedDom0s = Arrays.copyOf(failedDom0s, failedDom0Count);
+			this.allocatedSecondaryRams = Arrays.copyOf(allocatedSecondaryRams, failedDom0Count);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return dom0.toString();
+	}
+
+	public Dom0 getDom0() {
+		return dom0;
+	}
+
+	/**
+	 * Gets the unmodifiable list of DomUs that are primary or secondary on this Dom0,
+	 * in the same order as {@link ClusterConfiguration#getDomUConfigurations()}.
+	 */
+	@SuppressWarnings("ReturnOfCollectionOrArrayField") // Returning unmodifiable
+	public List<DomUConfiguration> getDomUConfigurations() {
+		return unmodifiableDomUConfigurations;
+	}
+
+	public int getAllocatedPrimaryRam() {
+		return allocatedPrimaryRam;
+	}
+
+	public int getAllocatedPrimaryProcessorWeight() {
+		return allocatedPrimaryProcessorWeight;
+	}
+
+	/**
+	 * Gets an unmodifiable map of secondary RAM allocated to this Dom0, keyed by the hostname
+	 * of the primary Dom0 that would have failed.  DomUs without secondary RAM are not included.
+	 * The map is created on each call, use {@link #getFailedDom0(int)} and {@link #getAllocatedSecondaryRam(int)}
+	 * to avoid allocation.
+	 */
+	public Map<String, Integer> getAllocatedSecondaryRams() {
+		int size = failedDom0s.length;
+		if(size==0) return Collections.emptyMap();
+		Map<String, Integer> map = new LinkedHashMap<>(size*4/3+1);
+		for(int i=0; i<size; i++) map.put(failedDom0s[i].hostname, allocatedSecondaryRams[i]);
+		return Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Gets the number of primary Dom0s with secondary RAM allocated to this Dom0.
+	 *
+	 * @see  #getAllocatedSecondaryRams()
+	 */
+	public int getFailedHostnameCount() {
+		return failedDom0s.length;
+	}
+
+	/**
+	 * Gets one primary Dom0 with secondary RAM allocated to this Dom0,
+	 * in the iteration order of {@link #getAllocatedSecondaryRams()}.
+	 */
+	public Dom0 getFailedDom0(int index) {
+		return failedDom0s[index];
+	}
+
+	/**
+	 * Gets the hostname of one primary Dom0 with secondary RAM allocated to this Dom0,
+	 * in the iteration order of {@link #getAllocatedSecondaryRams()}.
+	 */
+	public String getFailedHostname(int index) {
+		return failedDom0s[index].hostname;
+	}
+
+	/**
+	 * Gets the secondary RAM allocated to this Dom0 for one primary Dom0, without the
+	 * boxing of {@link #getAllocatedSecondaryRams()}.
+	 *
+	 * @see  #getFailedDom0(int)
+	 */
+	public int getAllocatedSecondaryRam(int index) {
+		return allocatedSecondaryRams[index];
+	}
+
+	/**
+	 * Gets the high 64 bits of the 128-bit fingerprint of this Dom0 and the configuration
+	 * of each DomU on it, in order.  Every result of analyzing a Dom0 depends only on these,
+	 * so two Dom0 configurations with the same fingerprint have the same results, even
+	 * when the rest of their clusters differ.
+	 */
+	public long getFingerprintHigh() {
+		return fingerprintHigh;
+	}
+
+	/**
+	 * Gets the low 64 bits of the 128-bit fingerprint.
+	 *
+	 * @see  #getFingerprintHigh()
+	 */
+	public long getFingerprintLow() {
+		return fingerprintLow;
+	}
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,6 +23,7 @@
 package com.aoindustries.aoserv.cluster;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -33,14 +34,22 @@ import java.util.Map;
  */
 public class Dom0Disk implements Comparable<Dom0Disk>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	final String clusterName;
+	final int dom0Id;
 	final String dom0Hostname;
+	final int id;
 	final String device;
 	final int diskSpeed;
 	final Map<Short, PhysicalVolume> unmodifiablePhysicalVolumes;
 
+	/**
+	 * The physical volumes in their natural order, which is by partition.  This
+	 * MUST NOT BE MODIFIED.
+	 */
+	final PhysicalVolume[] sortedPhysicalVolumes;
+
 	/**
 	 * unmodifiablePhysicalVolumes MUST BE UNMODIFIABLE
 	 *
@@ -48,26 +57,48 @@ public class Dom0Disk implements Comparable<Dom0Disk>, Serializable {
 	 */
 	Dom0Disk(
 		String clusterName,
+		int dom0Id,
 		String dom0Hostname,
+		int id,
 		String device,
 		int diskSpeed,
 		Map<Short, PhysicalVolume> unmodifiablePhysicalVolumes
 	) {
 		this.clusterName = clusterName;
+		this.dom0Id = dom0Id;
 		this.dom0Hostname = dom0Hostname;
+		this.id = id;
 		this.device = device;
 		this.diskSpeed = diskSpeed;
 		this.unmodifiablePhysicalVolumes = unmodifiablePhysicalVolumes;
+		this.sortedPhysicalVolumes = unmodifiablePhysicalVolumes.values().toArray(new PhysicalVolume[unmodifiablePhysicalVolumes.size()]);
+		Arrays.sort(sortedPhysicalVolumes);
 	}
 
 	public String getClusterName() {
 		return clusterName;
 	}
 
+	/**
+	 * @see  Dom0#getId()
+	 */
+	public int getDom0Id() {
+		return dom0Id;
+	}
+
 	public String getDom0Hostname() {
 		return dom0Hostname;
 	}
 
+	/**
+	 * Gets the index of this disk among all disks of all Dom0s in its cluster, from zero
+	 * to one less than {@link Cluster#getDom0DiskCount()}.  It is assigned when the disk
+	 * is added and is not changed as the cluster is built further.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	/**
 	 * Gets the per-Dom0 unique device name.
 	 */
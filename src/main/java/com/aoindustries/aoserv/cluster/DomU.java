@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -32,9 +32,10 @@ import java.util.Map;
  */
 public class DomU implements Comparable<DomU>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	final String clusterName;
+	final int id;
 	final String hostname;
 	final int primaryRam;
 	final int secondaryRam;
@@ -45,6 +46,11 @@ public class DomU implements Comparable<DomU>, Serializable {
 	final short processorWeight;
 	final boolean requiresHvm;
 	final Map<String, DomUDisk> unmodifiableDomUDisks;
+
+	/**
+	 * The key of this resource within fingerprints, derived from its identifying fields.
+	 */
+	final long fingerprintKey;
 	final boolean primaryDom0Locked;
 	final boolean secondaryDom0Locked;
 
@@ -55,6 +61,7 @@ public class DomU implements Comparable<DomU>, Serializable {
 	 */
 	DomU(
 		String clusterName,
+		int id,
 		String hostname,
 		int primaryRam,
 		int secondaryRam,
@@ -76,6 +83,7 @@ public class DomU implements Comparable<DomU>, Serializable {
 		if(processorWeight<1 || processorWeight>1024) throw new IllegalArgumentException(this+": Invalid value for processorWeight, should be in range 1-1024: "+processorWeight);
 
 		this.clusterName = clusterName;
+		this.id = id;
 		this.hostname = hostname;
 		this.primaryRam = primaryRam;
 		this.secondaryRam = secondaryRam;
@@ -88,12 +96,22 @@ public class DomU implements Comparable<DomU>, Serializable {
 		this.primaryDom0Locked = primaryDom0Locked;
 		this.secondaryDom0Locked = secondaryDom0Locked;
 		this.unmodifiableDomUDisks = unmodifiableDomUDisks;
+		this.fingerprintKey = Fingerprint.key(Fingerprint.key(Fingerprint.DOMU_SEED, clusterName), hostname);
 	}
 
 	public String getClusterName() {
 		return clusterName;
 	}
 
+	/**
+	 * Gets the index of this DomU within its cluster, from zero to one less than
+	 * {@link Cluster#getDomUCount()}.  It is assigned when the DomU is added and is not
+	 * changed as the cluster is built further.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	/**
 	 * Gets the cluster-wide unique name.
 	 */
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -35,15 +35,47 @@ public class DomUConfiguration implements Comparable<DomUConfiguration>, Seriali
 
 	private static final long serialVersionUID = 1L;
 
+	private static final Interner<DomUConfiguration> interner = new Interner<>(14);
+
 	final DomU domU;
 	final Dom0 primaryDom0;
 	final Dom0 secondaryDom0;
 	final List<DomUDiskConfiguration> unmodifiableDomUDiskConfigurations;
 
+	/**
+	 * The fingerprint of this placement of the DomU, computed once from the precomputed
+	 * resource keys.  The fingerprint of a {@link ClusterConfiguration} is the exclusive-or
+	 * of these, so it may be updated incrementally.
+	 */
+	final long fingerprintHigh;
+	final long fingerprintLow;
+
+	/**
+	 * Gets a configuration, sharing an equal instance through a lossy {@link Interner}
+	 * when one has already been created.
+	 *
+	 * @see  #DomUConfiguration(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.Dom0, java.util.List)
+	 */
+	static DomUConfiguration newInstance(
+		DomU domU,
+		Dom0 primaryDom0,
+		Dom0 secondaryDom0,
+		List<DomUDiskConfiguration> unmodifiableDomUDiskConfigurations
+	) {
+		return interner.intern(
+			new DomUConfiguration(
+				domU,
+				primaryDom0,
+				secondaryDom0,
+				unmodifiableDomUDiskConfigurations
+			)
+		);
+	}
+
 	/**
 	 * unmodifiableDomUDiskConfigurations MUST BE UNMODIFIABLE
 	 */
-	DomUConfiguration(
+	private DomUConfiguration(
 		DomU domU,
 		Dom0 primaryDom0,
 		Dom0 secondaryDom0,
@@ -61,6 +93,23 @@ public class DomUConfiguration implements Comparable<DomUConfiguration>, Seriali
 		this.secondaryDom0 = secondaryDom0;
 
 		this.unmodifiableDomUDiskConfigurations = unmodifiableDomUDiskConfigurations;
+
+		int size = unmodifiableDomUDiskConfigurations.size();
+		long high = Fingerprint.high(Fingerprint.HIGH_SEED, domU.fingerprintKey);
+		long low = Fingerprint.low(Fingerprint.LOW_SEED, domU.fingerprintKey);
+		high = Fingerprint.high(high, primaryDom0.fingerprintKey);
+		low = Fingerprint.low(low, primaryDom0.fingerprintKey);
+		high = Fingerprint.high(high, secondaryDom0.fingerprintKey);
+		low = Fingerprint.low(low, secondaryDom0.fingerprintKey);
+		high = Fingerprint.high(high, size);
+		low = Fingerprint.low(low, size);
+		for(int i=0; i<size; i++) {
+			DomUDiskConfiguration domUDiskConfiguration = unmodifiableDomUDiskConfigurations.get(i);
+			high = Fingerprint.high(high, domUDiskConfiguration.fingerprintHigh);
+			low = Fingerprint.low(low, domUDiskConfiguration.fingerprintLow);
+		}
+		this.fingerprintHigh = high;
+		this.fingerprintLow = low;
 	}
 
 	@Override
@@ -113,6 +162,7 @@ public class DomUConfiguration implements Comparable<DomUConfiguration>, Seriali
 		if(this==other) return true;
 		if(other==null) return false;
 		if(domU!=other.domU) return false;
+		if(fingerprintHigh!=other.fingerprintHigh || fingerprintLow!=other.fingerprintLow) return false; // fingerprint is precomputed so this is a quick check
 		if(primaryDom0!=other.primaryDom0) return false;
 		if(secondaryDom0!=other.secondaryDom0) return false;
 		{
@@ -127,14 +177,12 @@ public class DomUConfiguration implements Comparable<DomUConfiguration>, Seriali
 		return true;
 	}
 
+	/**
+	 * Derived from the precomputed fingerprint.
+	 */
 	@Override
 	public int hashCode() {
-		return
-			73*domU.hashCode()
-			+ 37*primaryDom0.hashCode()
-			+ 31*secondaryDom0.hashCode()
-			+ unmodifiableDomUDiskConfigurations.hashCode()
-		;
+		return (int)(fingerprintHigh ^ (fingerprintHigh >>> 32));
 	}
 
 	@Override
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -31,7 +31,7 @@ import java.io.Serializable;
  */
 public class DomUDisk implements Comparable<DomUDisk>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	/**
 	 * This is the standard size of the extents in bytes.
@@ -39,15 +39,24 @@ public class DomUDisk implements Comparable<DomUDisk>, Serializable {
 	public static final int EXTENTS_SIZE = 33554432;
 
 	final String clusterName;
+	final int domUId;
 	final String domUHostname;
+	final int id;
 	final String device;
 	final int minimumDiskSpeed;
 	final long extents;
 	final short weight;
 
+	/**
+	 * The key of this resource within fingerprints, derived from its identifying fields.
+	 */
+	final long fingerprintKey;
+
 	DomUDisk(
 		String clusterName,
+		int domUId,
 		String domUHostname,
+		int id,
 		String device,
 		int minimumDiskSpeed,
 		long extents,
@@ -58,21 +67,40 @@ public class DomUDisk implements Comparable<DomUDisk>, Serializable {
 		if(weight<1 || weight>1024) throw new IllegalArgumentException(this+": Invalid value for weight, should be in range 1-1024: "+weight);
 
 		this.clusterName = clusterName;
+		this.domUId = domUId;
 		this.domUHostname = domUHostname;
+		this.id = id;
 		this.device = device;
 		this.minimumDiskSpeed = minimumDiskSpeed;
 		this.extents = extents;
 		this.weight = weight;
+		this.fingerprintKey = Fingerprint.key(Fingerprint.key(Fingerprint.key(Fingerprint.DOMU_DISK_SEED, clusterName), domUHostname), device);
 	}
 
 	public String getClusterName() {
 		return clusterName;
 	}
 
+	/**
+	 * @see  DomU#getId()
+	 */
+	public int getDomUId() {
+		return domUId;
+	}
+
 	public String getDomUHostname() {
 		return domUHostname;
 	}
 
+	/**
+	 * Gets the index of this disk among all disks of all DomUs in its cluster, from zero
+	 * to one less than {@link Cluster#getDomUDiskCount()}.  It is assigned when the disk
+	 * is added and is not changed as the cluster is built further.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	/**
 	 * Gets the per-DomU unique device ID (usually /dev/xvd[a-z]).
 	 */
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -38,9 +38,21 @@ public class DomUDiskConfiguration implements Comparable<DomUDiskConfiguration>,
 
 	private static final Logger logger = Logger.getLogger(DomUDiskConfiguration.class.getName());
 
+	private static final Interner<DomUDiskConfiguration> interner = new Interner<>(14);
+
 	final DomUDisk domUDisk;
 	final List<PhysicalVolumeConfiguration> primaryPhysicalVolumeConfigurations;
 	final List<PhysicalVolumeConfiguration> secondaryPhysicalVolumeConfigurations;
+	final long fingerprintHigh;
+	final long fingerprintLow;
+
+	/**
+	 * The configuration with the primary and secondary physical volumes swapped, created
+	 * on first use.  This is a benign race, like <code>String.hash</code>.
+	 *
+	 * @see  #swap()
+	 */
+	private transient DomUDiskConfiguration swapped;
 
 	/**
 	 * Used by assertions.
@@ -102,11 +114,31 @@ public class DomUDiskConfiguration implements Comparable<DomUDiskConfiguration>,
 		return true;
 	}
 
+	/**
+	 * Gets a configuration, sharing an equal instance through a lossy {@link Interner}
+	 * when one has already been created.
+	 *
+	 * @see  #DomUDiskConfiguration(com.aoindustries.aoserv.cluster.DomUDisk, java.util.List, java.util.List)
+	 */
+	static DomUDiskConfiguration newInstance(
+		DomUDisk domUDisk,
+		List<PhysicalVolumeConfiguration> primaryPhysicalVolumeConfigurations,
+		List<PhysicalVolumeConfiguration> secondaryPhysicalVolumeConfigurations
+	) {
+		return interner.intern(
+			new DomUDiskConfiguration(
+				domUDisk,
+				primaryPhysicalVolumeConfigurations,
+				secondaryPhysicalVolumeConfigurations
+			)
+		);
+	}
+
 	/**
 	 * unmodifiablePrimaryPhysicalVolumes and unmodifiableSecondaryPhysicalVolumes MUST BE UNMODIFIABLE.
 	 * They must also both be sorted to ensure proper results from hashCode and equals.
 	 */
-	DomUDiskConfiguration(
+	private DomUDiskConfiguration(
 		DomUDisk domUDisk,
 		List<PhysicalVolumeConfiguration> primaryPhysicalVolumeConfigurations,
 		List<PhysicalVolumeConfiguration> secondaryPhysicalVolumeConfigurations
@@ -122,6 +154,34 @@ public class DomUDiskConfiguration implements Comparable<DomUDiskConfiguration>,
 		this.domUDisk = domUDisk;
 		this.primaryPhysicalVolumeConfigurations = primaryPhysicalVolumeConfigurations;
 		this.secondaryPhysicalVolumeConfigurations = secondaryPhysicalVolumeConfigurations;
+		this.fingerprintHigh = Fingerprint.high(
+			Fingerprint.high(
+				Fingerprint.high(Fingerprint.HIGH_SEED, domUDisk.fingerprintKey),
+				primaryPhysicalVolumeConfigurations
+			),
+			secondaryPhysicalVolumeConfigurations
+		);
+		this.fingerprintLow = Fingerprint.low(
+			Fingerprint.low(
+				Fingerprint.low(Fingerprint.LOW_SEED, domUDisk.fingerprintKey),
+				primaryPhysicalVolumeConfigurations
+			),
+			secondaryPhysicalVolumeConfigurations
+		);
+	}
+
+	/**
+	 * Gets the configuration with the primary and secondary physical volumes swapped,
+	 * as after a live migration.  Repeated migrations of the same disk share the result.
+	 */
+	DomUDiskConfiguration swap() {
+		DomUDiskConfiguration s = swapped;
+		if(s==null) {
+			s = newInstance(domUDisk, secondaryPhysicalVolumeConfigurations, primaryPhysicalVolumeConfigurations);
+			if(s.swapped==null) s.swapped = this;
+			swapped = s;
+		}
+		return s;
 	}
 
 	@Override
@@ -170,19 +230,21 @@ public class DomUDiskConfiguration implements Comparable<DomUDiskConfiguration>,
 			|| (
 				other!=null
 				&& domUDisk==other.domUDisk
+				// fingerprint is precomputed so this is a quick check
+				&& fingerprintHigh==other.fingerprintHigh
+				&& fingerprintLow==other.fingerprintLow
 				&& primaryPhysicalVolumeConfigurations.equals(other.primaryPhysicalVolumeConfigurations)
 				&& secondaryPhysicalVolumeConfigurations.equals(other.secondaryPhysicalVolumeConfigurations)
 			)
 		;
 	}
 
+	/**
+	 * Derived from the precomputed fingerprint.
+	 */
 	@Override
 	public int hashCode() {
-		return
-			+ 127*domUDisk.hashCode()
-			+ 31*primaryPhysicalVolumeConfigurations.hashCode()
-			+ secondaryPhysicalVolumeConfigurations.hashCode()
-		;
+		return (int)(fingerprintHigh ^ (fingerprintHigh >>> 32));
 	}
 
 	/**
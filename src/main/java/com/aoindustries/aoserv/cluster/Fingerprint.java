@@ -0,0 +1,163 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.util.List;
+
+/**
+ * Computes the 128-bit fingerprints used to identify a configuration without
+ * keeping the configuration itself.  The fingerprint is two independently mixed
+ * 64-bit halves, so two different configurations have the same fingerprint with
+ * a probability around 2<sup>-128</sup>.
+ *
+ * Each resource has a key derived from its identifying strings, computed once
+ * when the resource is created.  Unlike the identity-based <code>hashCode</code>
+ * of the resources, keys are full 64-bit values and stable between runs.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Fingerprint {
+
+	private Fingerprint() {
+	}
+
+	/**
+	 * The initial values of the two halves, also used to separate the types of resources.
+	 */
+	static final long
+		HIGH_SEED = 0x6a09e667f3bcc908L,
+		LOW_SEED = 0xbb67ae8584caa73bL,
+		DOM0_SEED = 0x3c6ef372fe94f82bL,
+		DOMU_SEED = 0xa54ff53a5f1d36f1L,
+		DOMU_DISK_SEED = 0x510e527fade682d1L,
+		PHYSICAL_VOLUME_SEED = 0x9b05688c2b3e6c1fL;
+
+	private static final long
+		HIGH_MULTIPLIER = 0x9e3779b97f4a7c15L,
+		LOW_MULTIPLIER = 0xc2b2ae3d27d4eb4fL;
+
+	/**
+	 * The MurmurHash3 64-bit finalizer, a bijection that spreads every input bit
+	 * across the whole result.
+	 */
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Adds one value to the high half.
+	 */
+	static long high(long h, long value) {
+		return mix(h * HIGH_MULTIPLIER + value);
+	}
+
+	/**
+	 * Adds one value to the low half.
+	 */
+	static long low(long h, long value) {
+		return mix((h ^ value) * LOW_MULTIPLIER);
+	}
+
+	/**
+	 * Adds a string to a key, including its length so that adjacent strings
+	 * cannot run together.
+	 */
+	static long key(long h, String value) {
+		int len = value.length();
+		h = mix(h * HIGH_MULTIPLIER + len);
+		for(int i=0; i<len; i++) {
+			h = (h ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Adds a list of physical volume configurations to the high half.
+	 */
+	static long high(long h, List<PhysicalVolumeConfiguration> physicalVolumeConfigurations) {
+		int size = physicalVolumeConfigurations.size();
+		h = high(h, size);
+		for(int i=0; i<size; i++) {
+			PhysicalVolumeConfiguration pvc = physicalVolumeConfigurations.get(i);
+			h = high(h, pvc.physicalVolume.fingerprintKey);
+			h = high(h, pvc.getFirstLogicalExtent());
+			h = high(h, pvc.getFirstPhysicalExtent());
+			h = high(h, pvc.getExtents());
+		}
+		return h;
+	}
+
+	/**
+	 * Adds a list of physical volume configurations to the low half.
+	 */
+	static long low(long h, List<PhysicalVolumeConfiguration> physicalVolumeConfigurations) {
+		int size = physicalVolumeConfigurations.size();
+		h = low(h, size);
+		for(int i=0; i<size; i++) {
+			PhysicalVolumeConfiguration pvc = physicalVolumeConfigurations.get(i);
+			h = low(h, pvc.physicalVolume.fingerprintKey);
+			h = low(h, pvc.getFirstLogicalExtent());
+			h = low(h, pvc.getFirstPhysicalExtent());
+			h = low(h, pvc.getExtents());
+		}
+		return h;
+	}
+
+	/**
+	 * Adds packed physical volume segments to the high half, the same as the list of
+	 * physical volume configurations they were packed from.
+	 *
+	 * @see  PackedClusterConfiguration
+	 */
+	static long high(long h, long[] segments, PhysicalVolume[] physicalVolumes) {
+		h = high(h, segments.length >>> 1);
+		for(int i=0; i<segments.length; i+=2) {
+			h = high(h, physicalVolumes[PackedClusterConfiguration.getPhysicalVolumeId(segments, i)].fingerprintKey);
+			h = high(h, PackedClusterConfiguration.getFirstLogicalExtent(segments, i));
+			h = high(h, PackedClusterConfiguration.getFirstPhysicalExtent(segments, i));
+			h = high(h, PackedClusterConfiguration.getExtents(segments, i));
+		}
+		return h;
+	}
+
+	/**
+	 * Adds packed physical volume segments to the low half.
+	 *
+	 * @see  #high(long, long[], com.aoindustries.aoserv.cluster.PhysicalVolume[])
+	 */
+	static long low(long h, long[] segments, PhysicalVolume[] physicalVolumes) {
+		h = low(h, segments.length >>> 1);
+		for(int i=0; i<segments.length; i+=2) {
+			h = low(h, physicalVolumes[PackedClusterConfiguration.getPhysicalVolumeId(segments, i)].fingerprintKey);
+			h = low(h, PackedClusterConfiguration.getFirstLogicalExtent(segments, i));
+			h = low(h, PackedClusterConfiguration.getFirstPhysicalExtent(segments, i));
+			h = low(h, PackedClusterConfiguration.getExtents(segments, i));
+		}
+		return h;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.util.List;
+
+/**
+ * A run of consecutive free physical extents on one physical volume, from which
+ * {@link ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)}
+ * allocates.  A wholly free physical volume is a single run of all of its extents.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class FreeExtents implements Comparable<FreeExtents> {
+
+	/**
+	 * Adds the runs of free extents of a partly allocated physical volume.
+	 *
+	 * @param  allocatedExtents  the allocated physical extents, as pairs of first physical extent
+	 *                           and extents, in any order and possibly overlapping
+	 */
+	static void addFreeExtents(PhysicalVolume physicalVolume, long[] allocatedExtents, List<FreeExtents> freeExtents) {
+		assert (allocatedExtents.length & 1)==0 : "allocatedExtents not in pairs";
+		long[] sorted = allocatedExtents.clone();
+		// Insertion sort by first physical extent, there are typically only a few pairs
+		for(int i=2; i<sorted.length; i+=2) {
+			long first = sorted[i];
+			long extents = sorted[i + 1];
+			int j = i;
+			while(j>0 && sorted[j - 2]>first) {
+				sorted[j] = sorted[j - 2];
+				sorted[j + 1] = sorted[j - 1];
+				j -= 2;
+			}
+			sorted[j] = first;
+			sorted[j + 1] = extents;
+		}
+		long next = 0;
+		for(int i=0; i<sorted.length; i+=2) {
+			long first = sorted[i];
+			if(first>next) freeExtents.add(new FreeExtents(physicalVolume, next, first - next));
+			// Allocations may overlap when a physical volume is shared by more than one DomU
+			next = Math.max(next, first + sorted[i + 1]);
+		}
+		if(next<physicalVolume.extents) freeExtents.add(new FreeExtents(physicalVolume, next, physicalVolume.extents - next));
+	}
+
+	final PhysicalVolume physicalVolume;
+	final long firstPhysicalExtent;
+	final long extents;
+
+	FreeExtents(PhysicalVolume physicalVolume, long firstPhysicalExtent, long extents) {
+		assert firstPhysicalExtent>=0 : "firstPhysicalExtent<0: "+firstPhysicalExtent;
+		assert extents>0 : "extents<=0: "+extents;
+		assert firstPhysicalExtent+extents<=physicalVolume.extents : "free extents beyond end of "+physicalVolume;
+		this.physicalVolume = physicalVolume;
+		this.firstPhysicalExtent = firstPhysicalExtent;
+		this.extents = extents;
+	}
+
+	@Override
+	public String toString() {
+		return physicalVolume.toString()+"("+firstPhysicalExtent+","+extents+")";
+	}
+
+	/**
+	 * Sorted ascending by:
+	 * <ol>
+	 *   <li>physicalVolume</li>
+	 *   <li>firstPhysicalExtent</li>
+	 * </ol>
+	 */
+	@Override
+	public int compareTo(FreeExtents other) {
+		if(this==other) return 0;
+		int diff = physicalVolume.compareTo(other.physicalVolume);
+		if(diff!=0) return diff;
+		return Long.compare(firstPhysicalExtent, other.firstPhysicalExtent);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A lossy canonicalization table, so structurally equal configurations built again and
+ * again by a search share a single instance.  Each value maps to one slot by its hash code,
+ * and a value not equal to the one in its slot replaces it.  Nothing is ever resized,
+ * so the table stays bounded regardless of how many configurations are interned.
+ *
+ * Since a slot may be overwritten, two equal values are not guaranteed to be the same
+ * instance; callers must still use <code>equals</code>, which then usually succeeds on
+ * identity.
+ *
+ * The slots hold their values through weak references, so a table held in a static field
+ * does not keep the configurations, and the clusters they refer to, of a finished search
+ * reachable.  A cleared slot is treated as empty and replaced by the next value to map to it.
+ *
+ * This is thread safe without locking: slots are read and written without synchronization,
+ * which is safe because the interned objects are immutable and their state is held in
+ * <code>final</code> fields, so is visible to any thread that reads them from a slot.  The one
+ * exception is the transient <code>swapped</code> memo of {@link DomUDiskConfiguration}, which
+ * is written without synchronization.  This is the benign race documented there: a thread
+ * that does not yet see the memo only creates an equal configuration again.  A lost write to
+ * a slot, or a reference read from a slot before its referent is visible, likewise only
+ * costs a missed sharing.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class Interner<T> {
+
+	private final WeakReference<T>[] table;
+	private final int shift;
+
+	/**
+	 * @param  bits  the table has 2<sup>bits</sup> slots
+	 */
+	@SuppressWarnings("unchecked")
+	Interner(int bits) {
+		assert bits>0 && bits<31 : "bits out of range: "+bits;
+		table = (WeakReference<T>[])new WeakReference<?>[1 << bits];
+		shift = Integer.SIZE - bits;
+	}
+
+	/**
+	 * Gets the instance equal to the provided value already in the table, or adds and
+	 * returns the provided value when there is none.  The hash code of the value should be
+	 * precomputed or cheap.
+	 */
+	T intern(T value) {
+		// Fibonacci hashing spreads weak hash codes across the slots
+		int slot = (value.hashCode() * 0x9e3779b9) >>> shift;
+		WeakReference<T> ref = table[slot];
+		if(ref!=null) {
+			T existing = ref.get();
+			if(existing!=null && existing.equals(value)) return existing;
+		}
+		table[slot] = new WeakReference<>(value);
+		return value;
+	}
+}
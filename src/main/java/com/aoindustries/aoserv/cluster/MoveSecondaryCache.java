@@ -0,0 +1,212 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the physical volume mappings found by
+ * {@link ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.MoveSecondaryCache)}.
+ * The mappings depend only on the DomU and on which physical volumes of the new secondary Dom0
+ * are free, which is the same for many configurations of a search that differ elsewhere.  These
+ * then reuse the mappings instead of finding them again.  The least recently used mappings are
+ * evicted once full.
+ *
+ * A cache must only be used for configurations of a single cluster.
+ *
+ * This is thread safe.  The cache is split into stripes by the hash of the key, each
+ * with its own lock and least recently used order, so concurrent lookups of different
+ * keys, such as by the tasks generating the children of one configuration in parallel,
+ * rarely wait on each other.
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class MoveSecondaryCache {
+
+	/**
+	 * The DomU, the new secondary Dom0, and the 128-bit fingerprint of the free physical volumes of the Dom0.
+	 */
+	private static final class Key {
+
+		private final DomU domU;
+		private final Dom0 newSecondaryDom0;
+		private final long freeHigh;
+		private final long freeLow;
+
+		private Key(DomU domU, Dom0 newSecondaryDom0, long freeHigh, long freeLow) {
+			this.domU = domU;
+			this.newSecondaryDom0 = newSecondaryDom0;
+			this.freeHigh = freeHigh;
+			this.freeLow = freeLow;
+		}
+
+		@Override
+		public boolean equals(Object O) {
+			if(!(O instanceof Key)) return false;
+			Key other = (Key)O;
+			return
+				domU==other.domU
+				&& newSecondaryDom0==other.newSecondaryDom0
+				&& freeHigh==other.freeHigh
+				&& freeLow==other.freeLow
+			;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(freeHigh ^ (freeHigh >>> 32)) + 31*domU.id + 127*newSecondaryDom0.id;
+		}
+	}
+
+	/**
+	 * The number of stripes is 2<sup>STRIPE_BITS</sup>.
+	 */
+	private static final int STRIPE_BITS = 4;
+
+	/**
+	 * One independently locked part of the cache, holding the keys that hash to it.
+	 */
+	private static final class Stripe extends LinkedHashMap<Key, List<DomUConfiguration>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		private long hits;
+		private long misses;
+
+		private Stripe(int capacity) {
+			super(capacity*4/3+1, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, List<DomUConfiguration>> eldest) {
+			return size()>capacity;
+		}
+	}
+
+	private final int capacity;
+	private final Stripe[] stripes;
+
+	/**
+	 * @param  capacity  the maximum number of mappings kept
+	 */
+	public MoveSecondaryCache(int capacity) {
+		if(capacity<1) throw new IllegalArgumentException("capacity<1: "+capacity);
+		this.capacity = capacity;
+		int numStripes = 1 << STRIPE_BITS;
+		int stripeCapacity = Math.max(1, capacity / numStripes);
+		stripes = new Stripe[numStripes];
+		for(int i=0; i<numStripes; i++) stripes[i] = new Stripe(stripeCapacity);
+	}
+
+	/**
+	 * Selects the stripe by the high bits of the hash, leaving the low bits for the map within the stripe.
+	 */
+	private Stripe getStripe(Key key) {
+		return stripes[(key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS)];
+	}
+
+	/**
+	 * Gets the mapped DomU configurations, or <code>null</code> when not cached.
+	 */
+	List<DomUConfiguration> get(DomU domU, Dom0 newSecondaryDom0, long freeHigh, long freeLow) {
+		Key key = new Key(domU, newSecondaryDom0, freeHigh, freeLow);
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			List<DomUConfiguration> mapped = stripe.get(key);
+			if(mapped!=null) stripe.hits++;
+			else stripe.misses++;
+			return mapped;
+		}
+	}
+
+	/**
+	 * Adds the mapped DomU configurations, which must not be modified.
+	 */
+	void put(DomU domU, Dom0 newSecondaryDom0, long freeHigh, long freeLow, List<DomUConfiguration> mapped) {
+		Key key = new Key(domU, newSecondaryDom0, freeHigh, freeLow);
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			stripe.put(key, mapped);
+		}
+	}
+
+	/**
+	 * Gets the maximum number of mappings kept.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of mappings currently kept.
+	 */
+	public int size() {
+		int size = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of mappings found in the cache.
+	 */
+	public long getHits() {
+		long hits = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				hits += stripe.hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Gets the number of mappings not found in the cache, each requiring a new search for a mapping.
+	 */
+	public long getMisses() {
+		long misses = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				misses += stripe.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Gets the fraction of mappings found in the cache, or 0 when nothing has been looked up.
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total==0 ? 0 : (double)hits / (double)total;
+	}
+}
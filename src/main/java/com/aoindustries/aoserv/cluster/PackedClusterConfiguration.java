@@ -0,0 +1,622 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A compact form of a {@link ClusterConfiguration}, backed by primitive arrays instead
+ * of a graph of configuration objects.  The primary and secondary Dom0 of each DomU are
+ * kept by {@link Dom0#getId() id} in an <code>int[]</code>, and the physical volume segments
+ * of each DomU disk in a packed <code>long[]</code> of two values per segment.
+ *
+ * The order of the DomUs and their disks, along with the lookups from ids back to the
+ * resources, are shared by every configuration derived from the same packed configuration.
+ * Each transition copies only the arrays of Dom0 ids and segment references, sharing
+ * the segments of all unchanged disks, and finds a DomU in O(1) by its id.
+ *
+ * The object API is available through {@link #getDomUConfigurations()},
+ * {@link #getDomUConfiguration(com.aoindustries.aoserv.cluster.DomU)} and {@link #toClusterConfiguration()},
+ * which create the configuration objects on each call.  The fingerprint is the same as
+ * that of the equivalent <code>ClusterConfiguration</code>.
+ *
+ * Each part of a segment is limited to 32 bits, which at the standard extent size is
+ * 128 PiB per physical volume.
+ *
+ * When assertions are enabled, {@link ClusterConfiguration} checks each
+ * {@link ClusterConfiguration#liveMigrate(com.aoindustries.aoserv.cluster.DomU) liveMigrate} and
+ * {@link ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.MoveSecondaryCache) moveSecondary}
+ * against this implementation, which finds the allocated physical volumes and the fingerprints on its own.
+ *
+ * This is immutable and thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+class PackedClusterConfiguration {
+
+	/**
+	 * The largest value of each part of a packed segment.
+	 */
+	private static final long MAX_PACKED_VALUE = 0xffffffffL;
+
+	private static final long[] emptySegments = {};
+
+	// Each segment is two values: the physical volume id and extents, then the first logical and physical extents
+	static int getPhysicalVolumeId(long[] segments, int index) {
+		return (int)(segments[index] >>> 32);
+	}
+
+	static long getExtents(long[] segments, int index) {
+		return segments[index] & MAX_PACKED_VALUE;
+	}
+
+	static long getFirstLogicalExtent(long[] segments, int index) {
+		return segments[index + 1] >>> 32;
+	}
+
+	static long getFirstPhysicalExtent(long[] segments, int index) {
+		return segments[index + 1] & MAX_PACKED_VALUE;
+	}
+
+	private static long[] pack(List<PhysicalVolumeConfiguration> physicalVolumeConfigurations) throws IllegalArgumentException {
+		int size = physicalVolumeConfigurations.size();
+		if(size==0) return emptySegments;
+		long[] segments = new long[size << 1];
+		for(int i=0; i<size; i++) {
+			PhysicalVolumeConfiguration pvc = physicalVolumeConfigurations.get(i);
+			long extents = pvc.getExtents();
+			long firstLogicalExtent = pvc.getFirstLogicalExtent();
+			long firstPhysicalExtent = pvc.getFirstPhysicalExtent();
+			if(
+				extents>MAX_PACKED_VALUE
+				|| firstLogicalExtent>MAX_PACKED_VALUE
+				|| firstPhysicalExtent>MAX_PACKED_VALUE
+			) throw new IllegalArgumentException("Segment too large to pack: "+pvc);
+			segments[i << 1] = ((long)pvc.physicalVolume.id << 32) | extents;
+			segments[(i << 1) + 1] = (firstLogicalExtent << 32) | firstPhysicalExtent;
+		}
+		return segments;
+	}
+
+	private static List<PhysicalVolumeConfiguration> unpack(long[] segments, PhysicalVolume[] physicalVolumes) {
+		int size = segments.length >>> 1;
+		if(size==0) return Collections.emptyList();
+		PhysicalVolumeConfiguration[] array = new PhysicalVolumeConfiguration[size];
+		for(int i=0; i<size; i++) {
+			int index = i << 1;
+			array[i] = PhysicalVolumeConfiguration.newInstance(
+				physicalVolumes[getPhysicalVolumeId(segments, index)],
+				getFirstLogicalExtent(segments, index),
+				getFirstPhysicalExtent(segments, index),
+				getExtents(segments, index)
+			);
+		}
+		if(size==1) return Collections.singletonList(array[0]);
+		return new UnmodifiableArrayList<>(array);
+	}
+
+	/**
+	 * The parts shared by every configuration derived from the same packed configuration.
+	 */
+	private static class Layout {
+
+		private final Cluster cluster;
+
+		/**
+		 * The DomUs in the order of the configuration that was packed.
+		 */
+		private final DomU[] domUs;
+
+		/**
+		 * The index of each DomU within <code>domUs</code> by id, or <code>-1</code> when not configured.
+		 */
+		private final int[] domUIndexes;
+
+		/**
+		 * The first disk slot of each DomU, followed by the total number of disks.
+		 */
+		private final int[] firstDiskSlots;
+
+		/**
+		 * The disks of each DomU in order, by disk slot.
+		 */
+		private final DomUDisk[] domUDisks;
+
+		private final Dom0[] dom0s;
+		private final PhysicalVolume[] physicalVolumes;
+
+		private Layout(Cluster cluster, DomU[] domUs, int[] domUIndexes, int[] firstDiskSlots, DomUDisk[] domUDisks) {
+			this.cluster = cluster;
+			this.domUs = domUs;
+			this.domUIndexes = domUIndexes;
+			this.firstDiskSlots = firstDiskSlots;
+			this.domUDisks = domUDisks;
+			this.dom0s = new Dom0[cluster.getDom0Count()];
+			this.physicalVolumes = new PhysicalVolume[cluster.getPhysicalVolumeCount()];
+			for(Dom0 dom0 : cluster.unmodifiableDom0s.values()) {
+				dom0s[dom0.id] = dom0;
+				for(Dom0Disk dom0Disk : dom0.unmodifiableDom0Disks.values()) {
+					for(PhysicalVolume physicalVolume : dom0Disk.unmodifiablePhysicalVolumes.values()) {
+						physicalVolumes[physicalVolume.id] = physicalVolume;
+					}
+				}
+			}
+		}
+	}
+
+	private final Layout layout;
+
+	/**
+	 * The primary Dom0 id of each DomU at twice its index, followed by its secondary Dom0 id.
+	 */
+	private final int[] dom0Ids;
+
+	/**
+	 * The primary segments of each disk at twice its slot, followed by its secondary segments.
+	 */
+	private final long[][] segments;
+
+	private final long fingerprintHigh;
+	private final long fingerprintLow;
+
+	/**
+	 * Packs the provided configuration.
+	 *
+	 * @throws  IllegalArgumentException  if any segment is too large to pack
+	 */
+	public PackedClusterConfiguration(ClusterConfiguration clusterConfiguration) throws IllegalArgumentException {
+		Cluster cluster = clusterConfiguration.cluster;
+		List<DomUConfiguration> domUConfigurations = clusterConfiguration.unmodifiableDomUConfigurations;
+		int domUCount = domUConfigurations.size();
+		int diskCount = 0;
+		for(int i=0; i<domUCount; i++) diskCount += domUConfigurations.get(i).unmodifiableDomUDiskConfigurations.size();
+		DomU[] domUs = new DomU[domUCount];
+		int[] domUIndexes = new int[cluster.getDomUCount()];
+		Arrays.fill(domUIndexes, -1);
+		int[] firstDiskSlots = new int[domUCount + 1];
+		DomUDisk[] domUDisks = new DomUDisk[diskCount];
+		int[] newDom0Ids = new int[domUCount << 1];
+		long[][] newSegments = new long[diskCount << 1][];
+		int slot = 0;
+		for(int i=0; i<domUCount; i++) {
+			DomUConfiguration domUConfiguration = domUConfigurations.get(i);
+			DomU domU = domUConfiguration.domU;
+			domUs[i] = domU;
+			domUIndexes[domU.id] = i;
+			firstDiskSlots[i] = slot;
+			newDom0Ids[i << 1] = domUConfiguration.primaryDom0.id;
+			newDom0Ids[(i << 1) + 1] = domUConfiguration.secondaryDom0.id;
+			List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.unmodifiableDomUDiskConfigurations;
+			for(int d=0, size=domUDiskConfigurations.size(); d<size; d++) {
+				DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(d);
+				domUDisks[slot] = domUDiskConfiguration.domUDisk;
+				newSegments[slot << 1] = pack(domUDiskConfiguration.primaryPhysicalVolumeConfigurations);
+				newSegments[(slot << 1) + 1] = pack(domUDiskConfiguration.secondaryPhysicalVolumeConfigurations);
+				slot++;
+			}
+		}
+		firstDiskSlots[domUCount] = slot;
+		this.layout = new Layout(cluster, domUs, domUIndexes, firstDiskSlots, domUDisks);
+		this.dom0Ids = newDom0Ids;
+		this.segments = newSegments;
+		this.fingerprintHigh = clusterConfiguration.getFingerprintHigh();
+		this.fingerprintLow = clusterConfiguration.getFingerprintLow();
+		assert fingerprintHigh==computeFingerprintHigh() : "fingerprintHigh mismatch";
+		assert fingerprintLow==computeFingerprintLow() : "fingerprintLow mismatch";
+	}
+
+	/**
+	 * The fingerprint must match the arrays, as already updated incrementally by the caller.
+	 */
+	private PackedClusterConfiguration(Layout layout, int[] dom0Ids, long[][] segments, long fingerprintHigh, long fingerprintLow) {
+		this.layout = layout;
+		this.dom0Ids = dom0Ids;
+		this.segments = segments;
+		this.fingerprintHigh = fingerprintHigh;
+		this.fingerprintLow = fingerprintLow;
+		assert fingerprintHigh==computeFingerprintHigh() : "fingerprintHigh mismatch";
+		assert fingerprintLow==computeFingerprintLow() : "fingerprintLow mismatch";
+	}
+
+	/**
+	 * Computes the fingerprint of one DomU, the same as {@link DomUConfiguration}.
+	 */
+	private static long getDomUFingerprintHigh(Layout l, int[] dom0Ids, long[][] segments, int index) {
+		PhysicalVolume[] physicalVolumes = l.physicalVolumes;
+		int firstDiskSlot = l.firstDiskSlots[index];
+		int endDiskSlot = l.firstDiskSlots[index + 1];
+		long high = Fingerprint.high(Fingerprint.HIGH_SEED, l.domUs[index].fingerprintKey);
+		high = Fingerprint.high(high, l.dom0s[dom0Ids[index << 1]].fingerprintKey);
+		high = Fingerprint.high(high, l.dom0s[dom0Ids[(index << 1) + 1]].fingerprintKey);
+		high = Fingerprint.high(high, endDiskSlot - firstDiskSlot);
+		for(int slot=firstDiskSlot; slot<endDiskSlot; slot++) {
+			long diskHigh = Fingerprint.high(Fingerprint.HIGH_SEED, l.domUDisks[slot].fingerprintKey);
+			diskHigh = Fingerprint.high(diskHigh, segments[slot << 1], physicalVolumes);
+			diskHigh = Fingerprint.high(diskHigh, segments[(slot << 1) + 1], physicalVolumes);
+			high = Fingerprint.high(high, diskHigh);
+		}
+		return high;
+	}
+
+	/**
+	 * @see  #getDomUFingerprintHigh(com.aoindustries.aoserv.cluster.PackedClusterConfiguration.Layout, int[], long[][], int)
+	 */
+	private static long getDomUFingerprintLow(Layout l, int[] dom0Ids, long[][] segments, int index) {
+		PhysicalVolume[] physicalVolumes = l.physicalVolumes;
+		int firstDiskSlot = l.firstDiskSlots[index];
+		int endDiskSlot = l.firstDiskSlots[index + 1];
+		long low = Fingerprint.low(Fingerprint.LOW_SEED, l.domUs[index].fingerprintKey);
+		low = Fingerprint.low(low, l.dom0s[dom0Ids[index << 1]].fingerprintKey);
+		low = Fingerprint.low(low, l.dom0s[dom0Ids[(index << 1) + 1]].fingerprintKey);
+		low = Fingerprint.low(low, endDiskSlot - firstDiskSlot);
+		for(int slot=firstDiskSlot; slot<endDiskSlot; slot++) {
+			long diskLow = Fingerprint.low(Fingerprint.LOW_SEED, l.domUDisks[slot].fingerprintKey);
+			diskLow = Fingerprint.low(diskLow, segments[slot << 1], physicalVolumes);
+			diskLow = Fingerprint.low(diskLow, segments[(slot << 1) + 1], physicalVolumes);
+			low = Fingerprint.low(low, diskLow);
+		}
+		return low;
+	}
+
+	/**
+	 * Used by assertions.
+	 */
+	private long computeFingerprintHigh() {
+		long high = Fingerprint.HIGH_SEED;
+		for(int i=0, size=layout.domUs.length; i<size; i++) high ^= getDomUFingerprintHigh(layout, dom0Ids, segments, i);
+		return high;
+	}
+
+	/**
+	 * Used by assertions.
+	 */
+	private long computeFingerprintLow() {
+		long low = Fingerprint.LOW_SEED;
+		for(int i=0, size=layout.domUs.length; i<size; i++) low ^= getDomUFingerprintLow(layout, dom0Ids, segments, i);
+		return low;
+	}
+
+	@Override
+	public String toString() {
+		return layout.cluster.toString();
+	}
+
+	public Cluster getCluster() {
+		return layout.cluster;
+	}
+
+	/**
+	 * Gets the index of the provided DomU within this configuration or <code>-1</code> if not configured.
+	 */
+	private int indexOf(DomU domU) {
+		assert domU.clusterName.equals(layout.cluster.name) : this+": DomU is not part of this cluster: "+domU;
+		int[] domUIndexes = layout.domUIndexes;
+		int id = domU.id;
+		return id<domUIndexes.length ? domUIndexes[id] : -1;
+	}
+
+	/**
+	 * Creates the configuration of the DomU at the provided index.
+	 */
+	private DomUConfiguration newDomUConfiguration(int index) {
+		Layout l = layout;
+		int firstDiskSlot = l.firstDiskSlots[index];
+		int size = l.firstDiskSlots[index + 1] - firstDiskSlot;
+		List<DomUDiskConfiguration> domUDiskConfigurations;
+		if(size==0) {
+			domUDiskConfigurations = Collections.emptyList();
+		} else {
+			DomUDiskConfiguration[] array = new DomUDiskConfiguration[size];
+			for(int i=0; i<size; i++) {
+				int slot = firstDiskSlot + i;
+				array[i] = DomUDiskConfiguration.newInstance(
+					l.domUDisks[slot],
+					unpack(segments[slot << 1], l.physicalVolumes),
+					unpack(segments[(slot << 1) + 1], l.physicalVolumes)
+				);
+			}
+			domUDiskConfigurations = size==1 ? Collections.singletonList(array[0]) : new UnmodifiableArrayList<>(array);
+		}
+		return DomUConfiguration.newInstance(
+			l.domUs[index],
+			l.dom0s[dom0Ids[index << 1]],
+			l.dom0s[dom0Ids[(index << 1) + 1]],
+			domUDiskConfigurations
+		);
+	}
+
+	private class DomUConfigurationList extends AbstractList<DomUConfiguration> implements RandomAccess {
+
+		@Override
+		public int size() {
+			return layout.domUs.length;
+		}
+
+		@Override
+		public DomUConfiguration get(int index) {
+			if(index<0 || index>=layout.domUs.length) throw new IndexOutOfBoundsException("index out of range: "+index);
+			return newDomUConfiguration(index);
+		}
+	}
+
+	/**
+	 * Gets an unmodifiable list of all configured DomUs, in the same order as the
+	 * configuration that was packed.  Each DomU configuration is created as it is
+	 * accessed.
+	 */
+	public List<DomUConfiguration> getDomUConfigurations() {
+		return new DomUConfigurationList();
+	}
+
+	/**
+	 * Gets the configuration for the provided DomU in O(1), creating it on each call.
+	 *
+	 * @return  the DomUConfiguration or null if not found
+	 */
+	public DomUConfiguration getDomUConfiguration(DomU domU) {
+		int index = indexOf(domU);
+		return index==-1 ? null : newDomUConfiguration(index);
+	}
+
+	/**
+	 * Gets the primary Dom0 of the provided DomU in O(1).
+	 *
+	 * @return  the Dom0 or null if the DomU is not found
+	 */
+	public Dom0 getPrimaryDom0(DomU domU) {
+		int index = indexOf(domU);
+		return index==-1 ? null : layout.dom0s[dom0Ids[index << 1]];
+	}
+
+	/**
+	 * Gets the secondary Dom0 of the provided DomU in O(1).
+	 *
+	 * @return  the Dom0 or null if the DomU is not found
+	 */
+	public Dom0 getSecondaryDom0(DomU domU) {
+		int index = indexOf(domU);
+		return index==-1 ? null : layout.dom0s[dom0Ids[(index << 1) + 1]];
+	}
+
+	/**
+	 * Creates the equivalent <code>ClusterConfiguration</code>.
+	 */
+	public ClusterConfiguration toClusterConfiguration() {
+		int size = layout.domUs.length;
+		List<DomUConfiguration> domUConfigurations;
+		if(size==0) {
+			domUConfigurations = Collections.emptyList();
+		} else if(size==1) {
+			domUConfigurations = Collections.singletonList(newDomUConfiguration(0));
+		} else {
+			DomUConfiguration[] array = new DomUConfiguration[size];
+			for(int i=0; i<size; i++) array[i] = newDomUConfiguration(i);
+			domUConfigurations = new UnmodifiableArrayList<>(array);
+		}
+		ClusterConfiguration clusterConfiguration = new ClusterConfiguration(layout.cluster, domUConfigurations);
+		assert clusterConfiguration.getFingerprintHigh()==fingerprintHigh : "fingerprintHigh mismatch";
+		assert clusterConfiguration.getFingerprintLow()==fingerprintLow : "fingerprintLow mismatch";
+		return clusterConfiguration;
+	}
+
+	/**
+	 * Creates a new configuration with the DomU at the provided index changed, updating
+	 * the fingerprint from only the old and new configurations of the DomU.
+	 */
+	private PackedClusterConfiguration newPackedClusterConfigurationReplacing(int index, int[] newDom0Ids, long[][] newSegments) {
+		return new PackedClusterConfiguration(
+			layout,
+			newDom0Ids,
+			newSegments,
+			fingerprintHigh ^ getDomUFingerprintHigh(layout, dom0Ids, segments, index) ^ getDomUFingerprintHigh(layout, newDom0Ids, newSegments, index),
+			fingerprintLow ^ getDomUFingerprintLow(layout, dom0Ids, segments, index) ^ getDomUFingerprintLow(layout, newDom0Ids, newSegments, index)
+		);
+	}
+
+	/**
+	 * Swaps the primary and secondary for the provided DomU and returns the new cluster configuration.
+	 *
+	 * @see  ClusterConfiguration#liveMigrate(com.aoindustries.aoserv.cluster.DomU)
+	 */
+	public PackedClusterConfiguration liveMigrate(DomU domU) {
+		int index = indexOf(domU);
+		assert index!=-1 : this+": DomUConfiguration not found: "+domU;
+		int[] newDom0Ids = dom0Ids.clone();
+		newDom0Ids[index << 1] = dom0Ids[(index << 1) + 1];
+		newDom0Ids[(index << 1) + 1] = dom0Ids[index << 1];
+		long[][] newSegments = segments.clone();
+		for(int slot=layout.firstDiskSlots[index], endDiskSlot=layout.firstDiskSlots[index + 1]; slot<endDiskSlot; slot++) {
+			newSegments[slot << 1] = segments[(slot << 1) + 1];
+			newSegments[(slot << 1) + 1] = segments[slot << 1];
+		}
+		return newPackedClusterConfigurationReplacing(index, newDom0Ids, newSegments);
+	}
+
+	/**
+	 * Replaces the configuration of one DomU, which must have the same disks in the same
+	 * order as this configuration.
+	 *
+	 * @see  ClusterConfiguration#replaceDomUConfiguration(com.aoindustries.aoserv.cluster.DomUConfiguration)
+	 *
+	 * @throws  IllegalArgumentException  if any segment is too large to pack
+	 */
+	public PackedClusterConfiguration replaceDomUConfiguration(DomUConfiguration domUConfiguration) throws IllegalArgumentException {
+		int index = indexOf(domUConfiguration.domU);
+		assert index!=-1 : this+": DomUConfiguration not found: "+domUConfiguration.domU;
+		int[] newDom0Ids = dom0Ids.clone();
+		newDom0Ids[index << 1] = domUConfiguration.primaryDom0.id;
+		newDom0Ids[(index << 1) + 1] = domUConfiguration.secondaryDom0.id;
+		long[][] newSegments = segments.clone();
+		List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.unmodifiableDomUDiskConfigurations;
+		int firstDiskSlot = layout.firstDiskSlots[index];
+		assert domUDiskConfigurations.size()==layout.firstDiskSlots[index + 1] - firstDiskSlot : "DomUDiskConfiguration count mismatch";
+		for(int i=0, size=domUDiskConfigurations.size(); i<size; i++) {
+			DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(i);
+			int slot = firstDiskSlot + i;
+			assert domUDiskConfiguration.domUDisk==layout.domUDisks[slot] : "DomUDisk order mismatch: "+domUDiskConfiguration.domUDisk;
+			newSegments[slot << 1] = pack(domUDiskConfiguration.primaryPhysicalVolumeConfigurations);
+			newSegments[(slot << 1) + 1] = pack(domUDiskConfiguration.secondaryPhysicalVolumeConfigurations);
+		}
+		return newPackedClusterConfigurationReplacing(index, newDom0Ids, newSegments);
+	}
+
+	/**
+	 * Moves the secondary to another machine, finding the free physical volumes of the new secondary
+	 * from the packed segments in a single pass.
+	 *
+	 * @see  ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0)
+	 *
+	 * @return  the new configuration(s)
+	 */
+	public List<PackedClusterConfiguration> moveSecondary(DomU domU, Dom0 newSecondaryDom0) {
+		int index = indexOf(domU);
+		assert index!=-1 : this+": DomUConfiguration not found: "+domU;
+		assert newSecondaryDom0.clusterName.equals(layout.cluster.name) : this+": newSecondaryDom0 is not part of this cluster: "+newSecondaryDom0;
+		// Find the physical volumes allocated on the new secondary
+		boolean[] allocated = new boolean[layout.physicalVolumes.length];
+		long[][] allocatedExtents = layout.cluster.allocatePartialPhysicalVolumes ? new long[layout.physicalVolumes.length][] : null;
+		int dom0Id = newSecondaryDom0.id;
+		for(int i=0, size=layout.domUs.length; i<size; i++) {
+			int offset;
+			if(dom0Ids[i << 1]==dom0Id) offset = 0;
+			else if(dom0Ids[(i << 1) + 1]==dom0Id) offset = 1;
+			else continue;
+			for(int slot=layout.firstDiskSlots[i], endDiskSlot=layout.firstDiskSlots[i + 1]; slot<endDiskSlot; slot++) {
+				long[] diskSegments = segments[(slot << 1) + offset];
+				for(int s=0; s<diskSegments.length; s+=2) {
+					int physicalVolumeId = getPhysicalVolumeId(diskSegments, s);
+					allocated[physicalVolumeId] = true;
+					if(allocatedExtents!=null) {
+						allocatedExtents[physicalVolumeId] = ClusterConfiguration.addAllocatedExtents(
+							allocatedExtents[physicalVolumeId],
+							getFirstPhysicalExtent(diskSegments, s),
+							getExtents(diskSegments, s)
+						);
+					}
+				}
+			}
+		}
+		List<DomUConfiguration> mappedDomUConfigurations = ClusterConfiguration.moveSecondary(
+			newDomUConfiguration(index),
+			newSecondaryDom0,
+			physicalVolume -> allocated[physicalVolume.id],
+			allocatedExtents==null ? null : physicalVolume -> allocatedExtents[physicalVolume.id]
+		);
+		int size = mappedDomUConfigurations.size();
+		if(size==0) return Collections.emptyList();
+		if(size==1) return Collections.singletonList(replaceDomUConfiguration(mappedDomUConfigurations.get(0)));
+		PackedClusterConfiguration[] array = new PackedClusterConfiguration[size];
+		for(int i=0; i<size; i++) array[i] = replaceDomUConfiguration(mappedDomUConfigurations.get(i));
+		return new UnmodifiableArrayList<>(array);
+	}
+
+	/**
+	 * Checks that this has the same fingerprint and DomU configurations as the provided configuration.
+	 */
+	private boolean matches(ClusterConfiguration clusterConfiguration) {
+		return
+			fingerprintHigh==clusterConfiguration.getFingerprintHigh()
+			&& fingerprintLow==clusterConfiguration.getFingerprintLow()
+			&& toClusterConfiguration().equals(clusterConfiguration)
+		;
+	}
+
+	/**
+	 * Checks a result of {@link ClusterConfiguration#liveMigrate(com.aoindustries.aoserv.cluster.DomU)}.
+	 * Used by assertions.
+	 */
+	static boolean matchesLiveMigrate(ClusterConfiguration clusterConfiguration, DomU domU, ClusterConfiguration migrated) {
+		return new PackedClusterConfiguration(clusterConfiguration).liveMigrate(domU).matches(migrated);
+	}
+
+	/**
+	 * Checks the results of {@link ClusterConfiguration#moveSecondary(com.aoindustries.aoserv.cluster.DomU, com.aoindustries.aoserv.cluster.Dom0, com.aoindustries.aoserv.cluster.MoveSecondaryCache)},
+	 * which must be the same configurations in the same order.  Used by assertions.
+	 */
+	static boolean matchesMoveSecondary(ClusterConfiguration clusterConfiguration, DomU domU, Dom0 newSecondaryDom0, List<ClusterConfiguration> moved) {
+		List<PackedClusterConfiguration> packed = new PackedClusterConfiguration(clusterConfiguration).moveSecondary(domU, newSecondaryDom0);
+		int size = packed.size();
+		if(size!=moved.size()) return false;
+		for(int i=0; i<size; i++) {
+			if(!packed.get(i).matches(moved.get(i))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Two packed configurations are equal when their equivalent <code>ClusterConfiguration</code>
+	 * are equal.
+	 *
+	 * @see  #equals(PackedClusterConfiguration)
+	 */
+	@Override
+	public boolean equals(Object O) {
+		return O!=null && (O instanceof PackedClusterConfiguration) && equals((PackedClusterConfiguration)O);
+	}
+
+	/**
+	 * Compares the arrays directly when both configurations share the same layout, otherwise
+	 * compares each DomU configuration in order.
+	 *
+	 * @see  #equals(Object)
+	 */
+	public boolean equals(PackedClusterConfiguration other) {
+		if(this==other) return true;
+		if(other==null) return false;
+		if(fingerprintHigh!=other.fingerprintHigh || fingerprintLow!=other.fingerprintLow) return false;
+		if(layout.cluster!=other.layout.cluster) return false;
+		if(layout==other.layout) {
+			return
+				Arrays.equals(dom0Ids, other.dom0Ids)
+				&& Arrays.deepEquals(segments, other.segments)
+			;
+		}
+		return getDomUConfigurations().equals(other.getDomUConfigurations());
+	}
+
+	/**
+	 * The same as the hash code of the equivalent <code>ClusterConfiguration</code>.
+	 */
+	@Override
+	public int hashCode() {
+		return ClusterConfiguration.computeHashCode(layout.cluster, fingerprintHigh);
+	}
+
+	/**
+	 * @see  ClusterConfiguration#getFingerprintHigh()
+	 */
+	public long getFingerprintHigh() {
+		return fingerprintHigh;
+	}
+
+	/**
+	 * @see  ClusterConfiguration#getFingerprintLow()
+	 */
+	public long getFingerprintLow() {
+		return fingerprintLow;
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list stored as a 32-way trie, where replacing or adding an element
+ * copies only the O(log<sub>32</sub> n) nodes on the path to it.  All other nodes are shared with
+ * the original list, so many near-identical lists, such as the configurations on an open
+ * list, share all of their untouched chunks of up to 32 elements.
+ *
+ * Each node is sized to the elements below it, so the last node of each level may be shorter
+ * than 32 and no space is reserved for elements not yet added.
+ *
+ * This is immutable and thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PersistentList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+
+	private static final PersistentList<?> EMPTY = new PersistentList<>(0, 0, new Object[0]);
+
+	@SuppressWarnings("unchecked")
+	static <E> PersistentList<E> empty() {
+		return (PersistentList<E>)EMPTY;
+	}
+
+	/**
+	 * Builds a list of the provided elements, one level of the trie at a time.
+	 */
+	static <E> PersistentList<E> copyOf(List<? extends E> list) {
+		int size = list.size();
+		if(size==0) return empty();
+		Object[] nodes = new Object[(size + MASK) >>> BITS];
+		for(int i=0; i<nodes.length; i++) {
+			int from = i << BITS;
+			int to = Math.min(size, from + WIDTH);
+			Object[] leaf = new Object[to - from];
+			for(int j=from; j<to; j++) leaf[j - from] = list.get(j);
+			nodes[i] = leaf;
+		}
+		int shift = 0;
+		while(nodes.length>1) {
+			Object[] parents = new Object[(nodes.length + MASK) >>> BITS];
+			for(int i=0; i<parents.length; i++) {
+				int from = i << BITS;
+				parents[i] = Arrays.copyOfRange(nodes, from, Math.min(nodes.length, from + WIDTH));
+			}
+			nodes = parents;
+			shift += BITS;
+		}
+		return new PersistentList<>(size, shift, (Object[])nodes[0]);
+	}
+
+	private final int size;
+
+	/**
+	 * The number of bits of the index consumed below the root, zero when the root is a leaf.
+	 */
+	private final int shift;
+
+	private final Object[] root;
+
+	private PersistentList(int size, int shift, Object[] root) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if(index<0 || index>=size) throw new IndexOutOfBoundsException("index out of range: "+index);
+		Object[] node = root;
+		for(int level=shift; level>0; level-=BITS) node = (Object[])node[(index >>> level) & MASK];
+		return (E)node[index & MASK];
+	}
+
+	/**
+	 * Lists of the same size have the same shape, so another persistent list is compared
+	 * node by node, skipping any nodes the two lists share.
+	 */
+	@Override
+	public boolean equals(Object O) {
+		if(O==this) return true;
+		if(O instanceof PersistentList) {
+			PersistentList<?> other = (PersistentList<?>)O;
+			return size==other.size && equals(root, other.root, shift);
+		}
+		return super.equals(O);
+	}
+
+	private static boolean equals(Object[] node1, Object[] node2, int level) {
+		if(node1==node2) return true;
+		assert node1.length==node2.length : "nodes of different lengths";
+		for(int i=0; i<node1.length; i++) {
+			if(
+				level==0
+				? !Objects.equals(node1[i], node2[i])
+				: !equals((Object[])node1[i], (Object[])node2[i], level - BITS)
+			) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	/**
+	 * Gets a new list with the element at the provided index replaced, sharing all
+	 * nodes not on the path to the element.
+	 */
+	PersistentList<E> with(int index, E element) {
+		if(index<0 || index>=size) throw new IndexOutOfBoundsException("index out of range: "+index);
+		return new PersistentList<>(size, shift, with(root, shift, index, element));
+	}
+
+	private static Object[] with(Object[] node, int level, int index, Object element) {
+		Object[] copy = node.clone();
+		int i = (index >>> level) & MASK;
+		copy[i] = level==0 ? element : with((Object[])node[i], level - BITS, index, element);
+		return copy;
+	}
+
+	/**
+	 * Gets a new list with the element added to the end, sharing all nodes not on the
+	 * path to the new element.
+	 */
+	PersistentList<E> plus(E element) {
+		if((size >>> BITS) >= (1 << shift)) {
+			// Root is full, add a level
+			return new PersistentList<>(
+				size + 1,
+				shift + BITS,
+				new Object[] {root, newPath(shift, element)}
+			);
+		}
+		return new PersistentList<>(size + 1, shift, plus(root, shift, size, element));
+	}
+
+	private static Object[] plus(Object[] node, int level, int index, Object element) {
+		int i = (index >>> level) & MASK;
+		Object[] copy = Arrays.copyOf(node, Math.max(node.length, i + 1));
+		if(level==0) copy[i] = element;
+		else copy[i] = i<node.length ? plus((Object[])node[i], level - BITS, index, element) : newPath(level - BITS, element);
+		return copy;
+	}
+
+	private static Object[] newPath(int level, Object element) {
+		return level==0 ? new Object[] {element} : new Object[] {newPath(level - BITS, element)};
+	}
+}
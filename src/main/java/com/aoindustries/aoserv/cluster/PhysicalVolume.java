@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -29,38 +29,73 @@ import java.io.Serializable;
  */
 public class PhysicalVolume implements Comparable<PhysicalVolume>, Serializable {
 
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	final String clusterName;
+	final int dom0Id;
 	final String dom0Hostname;
+	final int dom0DiskId;
 	final String device;
+	final int id;
 	final short partition;
 	final long extents;
 
+	/**
+	 * The key of this resource within fingerprints, derived from its identifying fields.
+	 */
+	final long fingerprintKey;
+
 	/**
 	 * @see Dom0Disk#addPhysicalVolume
 	 */
-	PhysicalVolume(String clusterName, String dom0Hostname, String device, short partition, long extents) {
+	PhysicalVolume(String clusterName, int dom0Id, String dom0Hostname, int dom0DiskId, String device, int id, short partition, long extents) {
 		assert extents>0 : "extents<=0: "+extents;
 		this.clusterName = clusterName;
+		this.dom0Id = dom0Id;
 		this.dom0Hostname = dom0Hostname;
+		this.dom0DiskId = dom0DiskId;
 		this.device = device;
+		this.id = id;
 		this.partition = partition;
 		this.extents = extents;
+		this.fingerprintKey = Fingerprint.high(Fingerprint.key(Fingerprint.key(Fingerprint.key(Fingerprint.PHYSICAL_VOLUME_SEED, clusterName), dom0Hostname), device), partition);
 	}
 
 	public String getClusterName() {
 		return clusterName;
 	}
 
+	/**
+	 * @see  Dom0#getId()
+	 */
+	public int getDom0Id() {
+		return dom0Id;
+	}
+
 	public String getDom0Hostname() {
 		return dom0Hostname;
 	}
 
+	/**
+	 * @see  Dom0Disk#getId()
+	 */
+	public int getDom0DiskId() {
+		return dom0DiskId;
+	}
+
 	public String getDevice() {
 		return device;
 	}
 
+	/**
+	 * Gets the index of this physical volume among all physical volumes in its cluster,
+	 * from zero to one less than {@link Cluster#getPhysicalVolumeCount()}.  It is assigned
+	 * when the physical volume is added and is not changed as the cluster is built further.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	public short getPartition() {
 		return partition;
 	}
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2007-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2007-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -34,6 +34,8 @@ abstract public class PhysicalVolumeConfiguration implements Comparable<Physical
 
 	private static final long serialVersionUID = 1L;
 
+	private static final Interner<PhysicalVolumeConfiguration> interner = new Interner<>(14);
+
 	/**
 	 * Creates a new PhysicalVolume of the appropriate type for the provided extents.  Will use
 	 * 16-bit and 32-bit representation when possible to save heap.
@@ -41,6 +43,9 @@ abstract public class PhysicalVolumeConfiguration implements Comparable<Physical
 	 * If heap space is every an issue, can use even more specialized versions like:
 	 *     PhysicalVolumeConfiguration896 for multiples of 896 that can store into byte
 	 *     PhysicalVolumeConfiguration_0_0_896 for newInstance(0,0,896) - would need to measure to know which would save heap
+	 *
+	 * The same segments are created many times during a search, so equal instances are
+	 * shared through a lossy {@link Interner}.
 	 */
 	public static PhysicalVolumeConfiguration newInstance(
 		PhysicalVolume physicalVolume,
@@ -51,20 +56,22 @@ abstract public class PhysicalVolumeConfiguration implements Comparable<Physical
 		assert firstLogicalExtent>=0 : "firstLogicalExtent<0: "+firstLogicalExtent;
 		assert firstPhysicalExtent>=0 : "firstPhysicalExtent<0: "+firstPhysicalExtent;
 		assert extents>0 : "extents<=0: "+extents;
+		PhysicalVolumeConfiguration physicalVolumeConfiguration;
 		// 16-bit
 		if(
 			firstLogicalExtent<=Short.MAX_VALUE
 			&& firstPhysicalExtent<=Short.MAX_VALUE
 			&& extents<=Short.MAX_VALUE
-		) return new PhysicalVolumeConfigurationShort(physicalVolume, (short)firstLogicalExtent, (short)firstPhysicalExtent, (short)extents);
+		) physicalVolumeConfiguration = new PhysicalVolumeConfigurationShort(physicalVolume, (short)firstLogicalExtent, (short)firstPhysicalExtent, (short)extents);
 		// 32-bit
-		if(
+		else if(
 			firstLogicalExtent<=Integer.MAX_VALUE
 			&& firstPhysicalExtent<=Integer.MAX_VALUE
 			&& extents<=Integer.MAX_VALUE
-		) return new PhysicalVolumeConfigurationInt(physicalVolume, (int)firstLogicalExtent, (int)firstPhysicalExtent, (int)extents);
+		) physicalVolumeConfiguration = new PhysicalVolumeConfigurationInt(physicalVolume, (int)firstLogicalExtent, (int)firstPhysicalExtent, (int)extents);
 		// 64-bit
-		return new PhysicalVolumeConfigurationLong(physicalVolume, firstLogicalExtent, firstPhysicalExtent, extents);
+		else physicalVolumeConfiguration = new PhysicalVolumeConfigurationLong(physicalVolume, firstLogicalExtent, firstPhysicalExtent, extents);
+		return interner.intern(physicalVolumeConfiguration);
 	}
 
 	final PhysicalVolume physicalVolume;
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -25,6 +25,7 @@ package com.aoindustries.aoserv.cluster.analyze;
 import com.aoindustries.aoserv.cluster.Cluster;
 import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.Dom0;
+import com.aoindustries.aoserv.cluster.Dom0Configuration;
 import com.aoindustries.aoserv.cluster.UnmodifiableArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -67,10 +68,12 @@ public class AnalyzedClusterConfiguration {
 				)
 			);
 		} else {
+			// Find the DomUs of every Dom0 in one pass
+			Map<String, Dom0Configuration> dom0Configurations = clusterConfiguration.getDom0Configurations();
 			AnalyzedDom0Configuration[] dom0s = new AnalyzedDom0Configuration[clusterDom0s.size()];
 			int index = 0;
 			for(Dom0 dom0 : clusterDom0s.values()) {
-				dom0s[index++] = new AnalyzedDom0Configuration(clusterConfiguration, dom0);
+				dom0s[index++] = new AnalyzedDom0Configuration(clusterConfiguration, dom0Configurations.get(dom0.getHostname()));
 			}
 			assert index==size : "index!=size: "+index+"!="+size;
 			analyzedDom0Configurations = new UnmodifiableArrayList<>(dom0s);
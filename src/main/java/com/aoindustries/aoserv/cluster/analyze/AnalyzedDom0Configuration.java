@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -24,6 +24,7 @@ package com.aoindustries.aoserv.cluster.analyze;
 
 import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.Dom0;
+import com.aoindustries.aoserv.cluster.Dom0Configuration;
 import com.aoindustries.aoserv.cluster.Dom0Disk;
 import com.aoindustries.aoserv.cluster.DomU;
 import com.aoindustries.aoserv.cluster.DomUConfiguration;
@@ -31,12 +32,15 @@ import com.aoindustries.aoserv.cluster.ProcessorArchitecture;
 import com.aoindustries.aoserv.cluster.ProcessorType;
 import com.aoindustries.aoserv.cluster.UnmodifiableArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Analyzes a single Dom0 to find anything that is not optimal.
+ *
+ * Each check either creates a result for a <code>ResultHandler</code> or, when a
+ * <code>DeviationHandler</code> is provided instead, passes only the alert level and
+ * deviation without creating a result.
  * 
  * @author  AO Industries, Inc.
  */
@@ -44,10 +48,24 @@ public class AnalyzedDom0Configuration {
 
 	private final ClusterConfiguration clusterConfiguration;
 	private final Dom0 dom0;
+	private final Dom0Configuration dom0Configuration;
 
+	/**
+	 * Finds the DomUs on the provided Dom0 in O(n) of the number of DomUs in the cluster.
+	 * When analyzing every Dom0, use {@link #AnalyzedDom0Configuration(com.aoindustries.aoserv.cluster.ClusterConfiguration, com.aoindustries.aoserv.cluster.Dom0Configuration)}
+	 * with {@link ClusterConfiguration#getDom0Configurations()} instead.
+	 */
 	public AnalyzedDom0Configuration(ClusterConfiguration clusterConfiguration, Dom0 dom0) {
+		this(clusterConfiguration, clusterConfiguration.getDom0Configuration(dom0));
+	}
+
+	/**
+	 * Analyzes the provided Dom0 in time proportional to the number of DomUs on it.
+	 */
+	public AnalyzedDom0Configuration(ClusterConfiguration clusterConfiguration, Dom0Configuration dom0Configuration) {
 		this.clusterConfiguration = clusterConfiguration;
-		this.dom0 = dom0;
+		this.dom0 = dom0Configuration.getDom0();
+		this.dom0Configuration = dom0Configuration;
 	}
 
 	public ClusterConfiguration getClusterConfiguration() {
@@ -58,20 +76,26 @@ public class AnalyzedDom0Configuration {
 		return dom0;
 	}
 
+	public Dom0Configuration getDom0Configuration() {
+		return dom0Configuration;
+	}
+
 	/**
 	 * Gets the results for primary RAM allocation.
 	 *
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getPrimaryRamResult(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
-		int allocatedPrimaryRam = 0;
-		for(DomUConfiguration domUConfiguration : clusterConfiguration.getDomUConfigurations()) {
-			if(domUConfiguration.getPrimaryDom0()==dom0) allocatedPrimaryRam+=domUConfiguration.getDomU().getPrimaryRam();
-		}
+		return getPrimaryRamResult(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getPrimaryRamResult(ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
+		int allocatedPrimaryRam = dom0Configuration.getAllocatedPrimaryRam();
 		int totalRam = dom0.getRam();
 		int overcommittedRam = allocatedPrimaryRam - totalRam;
 		AlertLevel alertLevel = overcommittedRam>0 ? AlertLevel.CRITICAL : AlertLevel.NONE;
 		if(alertLevel.compareTo(minimumAlertLevel)>=0) {
+			if(deviationHandler!=null) return deviationHandler.handleDeviation(alertLevel, ((double)overcommittedRam / (double)totalRam));
 			return resultHandler.handleResult(
 				new IntResult(
 					"Primary RAM",
@@ -91,34 +115,24 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getSecondaryRamResults(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getSecondaryRamResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getSecondaryRamResults(ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.HIGH)<=0) {
-			int allocatedPrimaryRam = 0;
-			Map<String, Integer> allocatedSecondaryRams = new HashMap<>();
-			for(DomUConfiguration domUConfiguration : clusterConfiguration.getDomUConfigurations()) {
-				if(domUConfiguration.getPrimaryDom0()==dom0) {
-					allocatedPrimaryRam+=domUConfiguration.getDomU().getPrimaryRam();
-				} else if(domUConfiguration.getSecondaryDom0()==dom0) {
-					int secondaryRam = domUConfiguration.getDomU().getSecondaryRam();
-					if(secondaryRam!=-1) {
-						String failedHostname = domUConfiguration.getPrimaryDom0().getHostname();
-						Integer totalSecondary = allocatedSecondaryRams.get(failedHostname);
-						allocatedSecondaryRams.put(
-							failedHostname,
-							totalSecondary==null ? secondaryRam : (totalSecondary+secondaryRam)
-						);
-					}
-				}
-			}
+			int allocatedPrimaryRam = dom0Configuration.getAllocatedPrimaryRam();
 			int totalRam = dom0.getRam();
 			int freePrimaryRam = totalRam - allocatedPrimaryRam;
 
-			for(Map.Entry<String, Integer> entry : allocatedSecondaryRams.entrySet()) {
-				String failedHostname = entry.getKey();
-				int allocatedSecondary = entry.getValue();
+			for(int i=0, size=dom0Configuration.getFailedHostnameCount(); i<size; i++) {
+				String failedHostname = dom0Configuration.getFailedHostname(i);
+				int allocatedSecondary = dom0Configuration.getAllocatedSecondaryRam(i);
 				AlertLevel alertLevel = allocatedSecondary>freePrimaryRam ? AlertLevel.HIGH : AlertLevel.NONE;
 				if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 					if(
-						!resultHandler.handleResult(
+						deviationHandler!=null
+						? !deviationHandler.handleDeviation(alertLevel, (double)(allocatedSecondary-freePrimaryRam)/(double)totalRam)
+						: !resultHandler.handleResult(
 							new IntResult(
 								failedHostname,
 								allocatedSecondary,
@@ -142,11 +156,16 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getProcessorTypeResults(ResultHandler<? super ProcessorType> resultHandler, AlertLevel minimumAlertLevel) {
+		return getProcessorTypeResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getProcessorTypeResults(ResultHandler<? super ProcessorType> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.LOW)<=0) {
 			ProcessorType processorType = dom0.getProcessorType();
 
-			List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
-			for(DomUConfiguration domUConfiguration : domUConfigurations) {
+			List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+			for(int i=0, size=domUConfigurations.size(); i<size; i++) {
+				DomUConfiguration domUConfiguration = domUConfigurations.get(i);
 				DomU domU = domUConfiguration.getDomU();
 				if(
 					domUConfiguration.getPrimaryDom0()==dom0
@@ -169,7 +188,9 @@ public class AnalyzedDom0Configuration {
 					}
 					if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 						if(
-							!resultHandler.handleResult(
+							deviationHandler!=null
+							? !deviationHandler.handleDeviation(alertLevel, deviation)
+							: !resultHandler.handleResult(
 								new ObjectResult<>(
 									domU.getHostname(),
 									minProcessorType,
@@ -194,10 +215,15 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getProcessorArchitectureResults(ResultHandler<? super ProcessorArchitecture> resultHandler, AlertLevel minimumAlertLevel) {
+		return getProcessorArchitectureResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getProcessorArchitectureResults(ResultHandler<? super ProcessorArchitecture> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		ProcessorArchitecture processorArchitecture = dom0.getProcessorArchitecture();
 
-		List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
-		for(DomUConfiguration domUConfiguration : domUConfigurations) {
+		List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+		for(int i=0, size=domUConfigurations.size(); i<size; i++) {
+			DomUConfiguration domUConfiguration = domUConfigurations.get(i);
 			DomU domU = domUConfiguration.getDomU();
 			if(domUConfiguration.getPrimaryDom0()==dom0) {
 				// Primary is CRITICAL
@@ -208,7 +234,9 @@ public class AnalyzedDom0Configuration {
 				alertLevel = diff>0 ? AlertLevel.CRITICAL : AlertLevel.NONE;
 				if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 					if(
-						!resultHandler.handleResult(
+						deviationHandler!=null
+						? !deviationHandler.handleDeviation(alertLevel, (double)diff)
+						: !resultHandler.handleResult(
 							new ObjectResult<>(
 								domU.getHostname(),
 								minProcessorArchitecture,
@@ -231,7 +259,9 @@ public class AnalyzedDom0Configuration {
 				alertLevel = diff>0 ? AlertLevel.HIGH : AlertLevel.NONE;
 				if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 					if(
-						!resultHandler.handleResult(
+						deviationHandler!=null
+						? !deviationHandler.handleDeviation(alertLevel, (double)diff)
+						: !resultHandler.handleResult(
 							new ObjectResult<>(
 								domU.getHostname(),
 								minProcessorArchitecture,
@@ -255,11 +285,16 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getProcessorSpeedResults(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getProcessorSpeedResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getProcessorSpeedResults(ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.LOW)<=0) {
 			int processorSpeed = dom0.getProcessorSpeed();
 
-			List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
-			for(DomUConfiguration domUConfiguration : domUConfigurations) {
+			List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+			for(int i=0, size=domUConfigurations.size(); i<size; i++) {
+				DomUConfiguration domUConfiguration = domUConfigurations.get(i);
 				DomU domU = domUConfiguration.getDomU();
 				if(
 					domUConfiguration.getPrimaryDom0()==dom0
@@ -280,7 +315,9 @@ public class AnalyzedDom0Configuration {
 					}
 					if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 						if(
-							!resultHandler.handleResult(
+							deviationHandler!=null
+							? !deviationHandler.handleDeviation(alertLevel, deviation)
+							: !resultHandler.handleResult(
 								new ObjectResult<>(
 									domU.getHostname(),
 									minSpeed==-1 ? null : minSpeed,
@@ -305,11 +342,16 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getProcessorCoresResults(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getProcessorCoresResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getProcessorCoresResults(ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.MEDIUM)<=0) {
 			int processorCores = dom0.getProcessorCores();
 
-			List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
-			for(DomUConfiguration domUConfiguration : domUConfigurations) {
+			List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+			for(int i=0, size=domUConfigurations.size(); i<size; i++) {
+				DomUConfiguration domUConfiguration = domUConfigurations.get(i);
 				DomU domU = domUConfiguration.getDomU();
 				if(
 					domUConfiguration.getPrimaryDom0()==dom0
@@ -322,7 +364,9 @@ public class AnalyzedDom0Configuration {
 					AlertLevel alertLevel = minCores!=-1 && processorCores<minCores ? AlertLevel.MEDIUM : AlertLevel.NONE;
 					if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 						if(
-							!resultHandler.handleResult(
+							deviationHandler!=null
+							? !deviationHandler.handleDeviation(alertLevel, (double)(minCores-processorCores)/(double)minCores)
+							: !resultHandler.handleResult(
 								new ObjectResult<>(
 									domU.getHostname(),
 									minCores==-1 ? null : minCores,
@@ -345,18 +389,17 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getPrimaryProcessorWeightResult(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getPrimaryProcessorWeightResult(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getPrimaryProcessorWeightResult(ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.MEDIUM)<=0) {
-			int allocatedPrimaryWeight = 0;
-			for(DomUConfiguration domUConfiguration : clusterConfiguration.getDomUConfigurations()) {
-				if(domUConfiguration.getPrimaryDom0()==dom0) {
-					DomU domU = domUConfiguration.getDomU();
-					allocatedPrimaryWeight += (int)domU.getProcessorCores() * (int)domU.getProcessorWeight();
-				}
-			}
+			int allocatedPrimaryWeight = dom0Configuration.getAllocatedPrimaryProcessorWeight();
 			int totalWeight = dom0.getProcessorCores() * 1024;
 			int overcommittedWeight = allocatedPrimaryWeight - totalWeight;
 			AlertLevel alertLevel = overcommittedWeight>0 ? AlertLevel.MEDIUM : AlertLevel.NONE;
 			if(alertLevel.compareTo(minimumAlertLevel)>=0) {
+				if(deviationHandler!=null) return deviationHandler.handleDeviation(alertLevel, ((double)overcommittedWeight / (double)totalWeight));
 				return resultHandler.handleResult(
 					new IntResult(
 						"Primary Processor Weight",
@@ -379,9 +422,14 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getRequiresHvmResults(ResultHandler<? super Boolean> resultHandler, AlertLevel minimumAlertLevel) {
+		return getRequiresHvmResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	private boolean getRequiresHvmResults(ResultHandler<? super Boolean> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		boolean supportsHvm = dom0.getSupportsHvm();
-		List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
-		for(DomUConfiguration domUConfiguration : domUConfigurations) {
+		List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+		for(int i=0, size=domUConfigurations.size(); i<size; i++) {
+			DomUConfiguration domUConfiguration = domUConfigurations.get(i);
 			DomU domU = domUConfiguration.getDomU();
 			if(domUConfiguration.getPrimaryDom0()==dom0) {
 				boolean requiresHvm = domU.getRequiresHvm();
@@ -405,7 +453,9 @@ public class AnalyzedDom0Configuration {
 				}
 				if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 					if(
-						!resultHandler.handleResult(
+						deviationHandler!=null
+						? !deviationHandler.handleDeviation(alertLevel, deviation)
+						: !resultHandler.handleResult(
 							new BooleanResult(
 								domU.getHostname(),
 								requiresHvm,
@@ -441,7 +491,9 @@ public class AnalyzedDom0Configuration {
 				}
 				if(alertLevel.compareTo(minimumAlertLevel)>=0) {
 					if(
-						!resultHandler.handleResult(
+						deviationHandler!=null
+						? !deviationHandler.handleDeviation(alertLevel, deviation)
+						: !resultHandler.handleResult(
 							new BooleanResult(
 								domU.getHostname(),
 								requiresHvm,
@@ -466,13 +518,13 @@ public class AnalyzedDom0Configuration {
 		if(size==0) return Collections.emptyList();
 		else if(size==1) {
 			return Collections.singletonList(
-				new AnalyzedDom0DiskConfiguration(clusterConfiguration, clusterDom0Disks.values().iterator().next())
+				new AnalyzedDom0DiskConfiguration(clusterConfiguration, clusterDom0Disks.values().iterator().next(), dom0Configuration.getDomUConfigurations())
 			);
 		} else {
 			AnalyzedDom0DiskConfiguration[] array = new AnalyzedDom0DiskConfiguration[size];
 			int index = 0;
 			for(Dom0Disk dom0Disk : clusterDom0Disks.values()) {
-				array[index++] = new AnalyzedDom0DiskConfiguration(clusterConfiguration, dom0Disk);
+				array[index++] = new AnalyzedDom0DiskConfiguration(clusterConfiguration, dom0Disk, dom0Configuration.getDomUConfigurations());
 			}
 			assert index==size : "index!=size: "+index+"!="+size;
 			return new UnmodifiableArrayList<>(array);
@@ -485,18 +537,33 @@ public class AnalyzedDom0Configuration {
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getAllResults(ResultHandler<Object> resultHandler, AlertLevel minimumAlertLevel) {
-		if(!getPrimaryRamResult(resultHandler, minimumAlertLevel)) return false;
-		if(!getSecondaryRamResults(resultHandler, minimumAlertLevel)) return false;
-		if(!getProcessorTypeResults(resultHandler, minimumAlertLevel)) return false;
-		if(!getProcessorArchitectureResults(resultHandler, minimumAlertLevel)) return false;
-		if(!getProcessorSpeedResults(resultHandler, minimumAlertLevel)) return false;
-		if(!getProcessorCoresResults(resultHandler, minimumAlertLevel)) return false;
-		if(!getPrimaryProcessorWeightResult(resultHandler, minimumAlertLevel)) return false;
-		if(!getRequiresHvmResults(resultHandler, minimumAlertLevel)) return false;
+		return getAllResults(resultHandler, null, minimumAlertLevel);
+	}
+
+	/**
+	 * Gets the alert level and deviation of every result, the same as {@link #getAllResults(com.aoindustries.aoserv.cluster.analyze.ResultHandler, com.aoindustries.aoserv.cluster.analyze.AlertLevel)}
+	 * but without creating any results.
+	 *
+	 * @return true if more results are wanted, or false to receive no more results.
+	 */
+	public boolean getAllDeviations(DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
+		return getAllResults(null, deviationHandler, minimumAlertLevel);
+	}
+
+	private boolean getAllResults(ResultHandler<Object> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
+		if(!getPrimaryRamResult(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getSecondaryRamResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getProcessorTypeResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getProcessorArchitectureResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getProcessorSpeedResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getProcessorCoresResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getPrimaryProcessorWeightResult(resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		if(!getRequiresHvmResults(resultHandler, deviationHandler, minimumAlertLevel)) return false;
 		// The highest alert level for disks is HIGH, avoid ArrayList creation here
 		if(minimumAlertLevel.compareTo(AlertLevel.HIGH)<=0) {
-			for(AnalyzedDom0DiskConfiguration dom0Disk : getDom0Disks()) {
-				if(!dom0Disk.getAllResults(resultHandler, minimumAlertLevel)) return false;
+			List<DomUConfiguration> domUConfigurations = dom0Configuration.getDomUConfigurations();
+			for(Dom0Disk dom0Disk : dom0.getDom0Disks().values()) {
+				if(!AnalyzedDom0DiskConfiguration.getAllResults(dom0Disk, domUConfigurations, resultHandler, deviationHandler, minimumAlertLevel)) return false;
 			}
 		}
 		return true;
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -41,10 +41,24 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 	private final ClusterConfiguration clusterConfiguration;
 	private final Dom0Disk dom0Disk;
 
+	/**
+	 * The DomUs that may be on the Dom0 of this disk, which is all DomUs of the cluster
+	 * unless narrowed down by the caller.
+	 */
+	private final List<DomUConfiguration> domUConfigurations;
+
 	public AnalyzedDom0DiskConfiguration(ClusterConfiguration clusterConfiguration, Dom0Disk dom0Disk) {
+		this(clusterConfiguration, dom0Disk, clusterConfiguration.getDomUConfigurations());
+	}
+
+	/**
+	 * domUConfigurations must contain at least all DomUs that are primary or secondary on the Dom0 of the disk.
+	 */
+	AnalyzedDom0DiskConfiguration(ClusterConfiguration clusterConfiguration, Dom0Disk dom0Disk, List<DomUConfiguration> domUConfigurations) {
 		assert dom0Disk!=null : "AnalyzedDom0DiskConfiguration.<init>: dom0Disk is null";
 		this.clusterConfiguration = clusterConfiguration;
 		this.dom0Disk = dom0Disk;
+		this.domUConfigurations = domUConfigurations;
 	}
 
 	public ClusterConfiguration getClusterConfiguration() {
@@ -61,20 +75,31 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getAllocatedWeightResult(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getAllocatedWeightResult(dom0Disk, domUConfigurations, resultHandler, null, minimumAlertLevel);
+	}
+
+	private static boolean getAllocatedWeightResult(Dom0Disk dom0Disk, List<DomUConfiguration> domUConfigurations, ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.MEDIUM)<=0) {
 			// Add up all of the weights on any physical volumes on this drive.
 			// Each unique DomUDisk will only be added once.
 			int allocatedDiskWeight = 0;
 
-			for(DomUConfiguration domUConfiguration : clusterConfiguration.getDomUConfigurations()) {
+			for(int c=0, sizeC=domUConfigurations.size(); c<sizeC; c++) {
+				DomUConfiguration domUConfiguration = domUConfigurations.get(c);
 				// Must be either primary or secondary on this
-				if(domUConfiguration.getPrimaryDom0().getHostname().equals(dom0Disk.getDom0Hostname())) {
+				if(domUConfiguration.getPrimaryDom0().getId()==dom0Disk.getDom0Id()) {
+					assert domUConfiguration.getPrimaryDom0().getHostname().equals(dom0Disk.getDom0Hostname()) : "primaryDom0.hostname!=dom0Disk.dom0Hostname";
 					assert domUConfiguration.getPrimaryDom0().getClusterName().equals(dom0Disk.getClusterName()) : "primaryDom0.clusterName!=dom0Disk.clusterName";
 					// Look only for primary matches
-					for(DomUDiskConfiguration domUDiskConfiguration : domUConfiguration.getDomUDiskConfigurations()) {
-						for(PhysicalVolumeConfiguration physicalVolumeConfiguration : domUDiskConfiguration.getPrimaryPhysicalVolumeConfigurations()) {
+					List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.getDomUDiskConfigurations();
+					for(int d=0, sizeD=domUDiskConfigurations.size(); d<sizeD; d++) {
+						DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(d);
+						List<PhysicalVolumeConfiguration> physicalVolumeConfigurations = domUDiskConfiguration.getPrimaryPhysicalVolumeConfigurations();
+						for(int e=0, sizeE=physicalVolumeConfigurations.size(); e<sizeE; e++) {
+							PhysicalVolumeConfiguration physicalVolumeConfiguration = physicalVolumeConfigurations.get(e);
 							PhysicalVolume physicalVolume = physicalVolumeConfiguration.getPhysicalVolume();
-							if(physicalVolume.getDevice().equals(dom0Disk.getDevice())) {
+							if(physicalVolume.getDom0DiskId()==dom0Disk.getId()) {
+								assert physicalVolume.getDevice().equals(dom0Disk.getDevice()) : "physicalVolume.device!=dom0Disk.device";
 								assert physicalVolume.getClusterName().equals(dom0Disk.getClusterName()) : "physicalVolume.clusterName!=dom0Disk.clusterName";
 								assert physicalVolume.getDom0Hostname().equals(dom0Disk.getDom0Hostname()) : "physicalVolume.dom0Hostname!=dom0Disk.dom0Hostname";
 								// Found a match between DomUDisk and this Dom0Disk
@@ -84,13 +109,19 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 						}
 					}
 				} else {
-					if(domUConfiguration.getSecondaryDom0().getHostname().equals(dom0Disk.getDom0Hostname())) {
+					if(domUConfiguration.getSecondaryDom0().getId()==dom0Disk.getDom0Id()) {
+						assert domUConfiguration.getSecondaryDom0().getHostname().equals(dom0Disk.getDom0Hostname()) : "secondaryDom0.hostname!=dom0Disk.dom0Hostname";
 						assert domUConfiguration.getSecondaryDom0().getClusterName().equals(dom0Disk.getClusterName()) : "secondaryDom0.clusterName!=dom0Disk.clusterName";
 						// Look only for secondary matches
-						for(DomUDiskConfiguration domUDiskConfiguration : domUConfiguration.getDomUDiskConfigurations()) {
-							for(PhysicalVolumeConfiguration physicalVolumeConfiguration : domUDiskConfiguration.getSecondaryPhysicalVolumeConfigurations()) {
+						List<DomUDiskConfiguration> domUDiskConfigurations = domUConfiguration.getDomUDiskConfigurations();
+						for(int d=0, sizeD=domUDiskConfigurations.size(); d<sizeD; d++) {
+							DomUDiskConfiguration domUDiskConfiguration = domUDiskConfigurations.get(d);
+							List<PhysicalVolumeConfiguration> physicalVolumeConfigurations = domUDiskConfiguration.getSecondaryPhysicalVolumeConfigurations();
+							for(int e=0, sizeE=physicalVolumeConfigurations.size(); e<sizeE; e++) {
+								PhysicalVolumeConfiguration physicalVolumeConfiguration = physicalVolumeConfigurations.get(e);
 								PhysicalVolume physicalVolume = physicalVolumeConfiguration.getPhysicalVolume();
-								if(physicalVolume.getDevice().equals(dom0Disk.getDevice())) {
+								if(physicalVolume.getDom0DiskId()==dom0Disk.getId()) {
+									assert physicalVolume.getDevice().equals(dom0Disk.getDevice()) : "physicalVolume.device!=dom0Disk.device";
 									assert physicalVolume.getClusterName().equals(dom0Disk.getClusterName()) : "physicalVolume.clusterName!=dom0Disk.clusterName";
 									assert physicalVolume.getDom0Hostname().equals(dom0Disk.getDom0Hostname()) : "physicalVolume.dom0Hostname!=dom0Disk.dom0Hostname";
 									// Found a match between DomUDisk and this Dom0Disk
@@ -105,6 +136,7 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 			int overcommitDiskWeight = allocatedDiskWeight - 1024;
 			AlertLevel alertLevel = overcommitDiskWeight>0 ? AlertLevel.MEDIUM : AlertLevel.NONE;
 			if(alertLevel.compareTo(minimumAlertLevel)>=0) {
+				if(deviationHandler!=null) return deviationHandler.handleDeviation(alertLevel, (double)overcommitDiskWeight / (double)1024);
 				return resultHandler.handleResult(
 					new IntResult(
 						"Allocated Weight",
@@ -125,16 +157,21 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getDiskSpeedResults(ResultHandler<? super Integer> resultHandler, AlertLevel minimumAlertLevel) {
+		return getDiskSpeedResults(dom0Disk, domUConfigurations, resultHandler, null, minimumAlertLevel);
+	}
+
+	private static boolean getDiskSpeedResults(Dom0Disk dom0Disk, List<DomUConfiguration> domUConfigurations, ResultHandler<? super Integer> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
 		if(minimumAlertLevel.compareTo(AlertLevel.MEDIUM)<=0) {
-			List<DomUConfiguration> domUConfigurations = clusterConfiguration.getDomUConfigurations();
 			for(int c=0, sizeC=domUConfigurations.size(); c<sizeC; c++) {
 				DomUConfiguration domUConfiguration = domUConfigurations.get(c);
 				// Must be either primary or secondary on this
 				boolean isPrimary;
-				if(domUConfiguration.getPrimaryDom0().getHostname().equals(dom0Disk.getDom0Hostname())) {
+				if(domUConfiguration.getPrimaryDom0().getId()==dom0Disk.getDom0Id()) {
+					assert domUConfiguration.getPrimaryDom0().getHostname().equals(dom0Disk.getDom0Hostname()) : "primaryDom0.hostname!=dom0Disk.dom0Hostname";
 					assert domUConfiguration.getPrimaryDom0().getClusterName().equals(dom0Disk.getClusterName()) : "primaryDom0.clusterName!=dom0Disk.clusterName";
 					isPrimary = true;
-				} else if(domUConfiguration.getSecondaryDom0().getHostname().equals(dom0Disk.getDom0Hostname())) {
+				} else if(domUConfiguration.getSecondaryDom0().getId()==dom0Disk.getDom0Id()) {
+					assert domUConfiguration.getSecondaryDom0().getHostname().equals(dom0Disk.getDom0Hostname()) : "secondaryDom0.hostname!=dom0Disk.dom0Hostname";
 					assert domUConfiguration.getSecondaryDom0().getClusterName().equals(dom0Disk.getClusterName()) : "secondaryDom0.clusterName!=dom0Disk.clusterName";
 					isPrimary = false;
 				} else {
@@ -154,7 +191,8 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 					for(int e=0, sizeE=physicalVolumeConfigurations.size(); e<sizeE; e++) {
 						PhysicalVolumeConfiguration physicalVolumeConfiguration = physicalVolumeConfigurations.get(e);
 						PhysicalVolume physicalVolume = physicalVolumeConfiguration.getPhysicalVolume();
-						if(physicalVolume.getDevice().equals(dom0Disk.getDevice())) {
+						if(physicalVolume.getDom0DiskId()==dom0Disk.getId()) {
+							assert physicalVolume.getDevice().equals(dom0Disk.getDevice()) : "physicalVolume.device!=dom0Disk.device";
 							assert physicalVolume.getClusterName().equals(dom0Disk.getClusterName()) : "physicalVolume.clusterName!=dom0Disk.clusterName";
 							assert physicalVolume.getDom0Hostname().equals(dom0Disk.getDom0Hostname()) : "physicalVolume.dom0Hostname!=dom0Disk.dom0Hostname";
 							// Found a match between DomUDisk and this Dom0Disk
@@ -169,8 +207,10 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 					if(extentsFound>0) {
 						AlertLevel alertLevel = minDiskSpeed!=-1 && tooSlowExtents>0 ? AlertLevel.MEDIUM : AlertLevel.NONE;
 						if(alertLevel.compareTo(minimumAlertLevel)>=0) {
-							if(!
-								resultHandler.handleResult(
+							if(
+								deviationHandler!=null
+								? !deviationHandler.handleDeviation(alertLevel, (double)tooSlowExtents/(double)totalExtents)
+								: !resultHandler.handleResult(
 									new ObjectResult<>(
 										domUDisk.getDomUHostname() + ":" + domUDisk.getDevice(),
 										minDiskSpeed==-1 ? null : minDiskSpeed,
@@ -218,7 +258,28 @@ public class AnalyzedDom0DiskConfiguration implements Comparable<AnalyzedDom0Dis
 	 * @return true if more results are wanted, or false to receive no more results.
 	 */
 	public boolean getAllResults(ResultHandler<Object> resultHandler, AlertLevel minimumAlertLevel) {
-		if(!getAllocatedWeightResult(resultHandler, minimumAlertLevel)) return false;
-		return getDiskSpeedResults(resultHandler, minimumAlertLevel);
+		return getAllResults(dom0Disk, domUConfigurations, resultHandler, null, minimumAlertLevel);
+	}
+
+	/**
+	 * Gets the alert level and deviation of every result without creating any results.
+	 *
+	 * @see  AnalyzedDom0Configuration#getAllDeviations(com.aoindustries.aoserv.cluster.analyze.DeviationHandler, com.aoindustries.aoserv.cluster.analyze.AlertLevel)
+	 *
+	 * @return true if more results are wanted, or false to receive no more results.
+	 */
+	public boolean getAllDeviations(DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
+		return getAllResults(dom0Disk, domUConfigurations, null, deviationHandler, minimumAlertLevel);
+	}
+
+	/**
+	 * Analyzes a disk without creating an <code>AnalyzedDom0DiskConfiguration</code>.
+	 *
+	 * @param  domUConfigurations  must contain at least all DomUs that are primary or secondary on the Dom0 of the disk
+	 * @param  deviationHandler    when not <code>null</code>, receives the deviation of each result instead of <code>resultHandler</code>
+	 */
+	static boolean getAllResults(Dom0Disk dom0Disk, List<DomUConfiguration> domUConfigurations, ResultHandler<Object> resultHandler, DeviationHandler deviationHandler, AlertLevel minimumAlertLevel) {
+		if(!getAllocatedWeightResult(dom0Disk, domUConfigurations, resultHandler, deviationHandler, minimumAlertLevel)) return false;
+		return getDiskSpeedResults(dom0Disk, domUConfigurations, resultHandler, deviationHandler, minimumAlertLevel);
 	}
 }
@@ -0,0 +1,233 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.analyze;
+
+/**
+ * A summary of the results of an analyzed cluster, gathered in a single pass:
+ * the number of results and the sum of their deviations at each alert level at or
+ * above a minimum.  This is enough to determine whether the configuration is optimal
+ * or has any critical results, and to compute any heuristic that adds up a cost per
+ * result that is linear in its deviation.
+ *
+ * This is immutable and thread safe.
+ *
+ * @see  com.aoindustries.aoserv.cluster.ClusterConfiguration#getClusterScore()
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class ClusterScore {
+
+	private final AlertLevel minimumAlertLevel;
+
+	// Separate fields instead of arrays, since a score may be kept for every configuration on an open list
+	private int noneCount;
+	private int lowCount;
+	private int mediumCount;
+	private int highCount;
+	private int criticalCount;
+	private double noneDeviationSum;
+	private double lowDeviationSum;
+	private double mediumDeviationSum;
+	private double highDeviationSum;
+	private double criticalDeviationSum;
+
+	/**
+	 * Gathers the results of the provided analysis at or above the provided alert level.
+	 * Results at alert level NONE are only needed by some heuristics, and are far
+	 * more numerous, so are usually not gathered.
+	 *
+	 * The results are added up per Dom0 first, so the deviation sums are exactly the
+	 * same as those of an {@link IncrementalAnalysis}.
+	 */
+	public ClusterScore(AnalyzedClusterConfiguration analysis, AlertLevel minimumAlertLevel) {
+		this.minimumAlertLevel = minimumAlertLevel;
+		for(AnalyzedDom0Configuration dom0 : analysis.getAnalyzedDom0Configurations()) {
+			add(new ClusterScore(dom0, minimumAlertLevel));
+		}
+	}
+
+	/**
+	 * Gathers the results of one Dom0.  Only the alert level and deviation of each
+	 * result are needed, so no results are created.
+	 */
+	ClusterScore(AnalyzedDom0Configuration analysis, AlertLevel minimumAlertLevel) {
+		this.minimumAlertLevel = minimumAlertLevel;
+		analysis.getAllDeviations(
+			(AlertLevel alertLevel, double deviation) -> {
+				switch(alertLevel) {
+					case NONE :
+						noneCount++;
+						noneDeviationSum += deviation;
+						break;
+					case LOW :
+						lowCount++;
+						lowDeviationSum += deviation;
+						break;
+					case MEDIUM :
+						mediumCount++;
+						mediumDeviationSum += deviation;
+						break;
+					case HIGH :
+						highCount++;
+						highDeviationSum += deviation;
+						break;
+					case CRITICAL :
+						criticalCount++;
+						criticalDeviationSum += deviation;
+						break;
+					default :
+						throw new AssertionError("Unexpected value for alertLevel: "+alertLevel);
+				}
+				return true;
+			},
+			minimumAlertLevel
+		);
+	}
+
+	/**
+	 * Adds up the scores of each Dom0, in order.
+	 */
+	ClusterScore(ClusterScore[] dom0Scores, AlertLevel minimumAlertLevel) {
+		this.minimumAlertLevel = minimumAlertLevel;
+		for(ClusterScore dom0Score : dom0Scores) add(dom0Score);
+	}
+
+	private void add(ClusterScore other) {
+		assert other.minimumAlertLevel==minimumAlertLevel : "minimumAlertLevel mismatch";
+		noneCount += other.noneCount;
+		lowCount += other.lowCount;
+		mediumCount += other.mediumCount;
+		highCount += other.highCount;
+		criticalCount += other.criticalCount;
+		noneDeviationSum += other.noneDeviationSum;
+		lowDeviationSum += other.lowDeviationSum;
+		mediumDeviationSum += other.mediumDeviationSum;
+		highDeviationSum += other.highDeviationSum;
+		criticalDeviationSum += other.criticalDeviationSum;
+	}
+
+	/**
+	 * Gets the lowest alert level of the results gathered.
+	 */
+	public AlertLevel getMinimumAlertLevel() {
+		return minimumAlertLevel;
+	}
+
+	/**
+	 * Gets the number of results at the provided alert level.
+	 *
+	 * @throws  IllegalArgumentException  if the alert level is below the minimum gathered
+	 */
+	public int getCount(AlertLevel alertLevel) throws IllegalArgumentException {
+		checkAlertLevel(alertLevel);
+		switch(alertLevel) {
+			case NONE     : return noneCount;
+			case LOW      : return lowCount;
+			case MEDIUM   : return mediumCount;
+			case HIGH     : return highCount;
+			case CRITICAL : return criticalCount;
+			default       : throw new AssertionError("Unexpected value for alertLevel: "+alertLevel);
+		}
+	}
+
+	/**
+	 * Gets the sum of the deviations of the results at the provided alert level.
+	 *
+	 * @throws  IllegalArgumentException  if the alert level is below the minimum gathered
+	 */
+	public double getDeviationSum(AlertLevel alertLevel) throws IllegalArgumentException {
+		checkAlertLevel(alertLevel);
+		switch(alertLevel) {
+			case NONE     : return noneDeviationSum;
+			case LOW      : return lowDeviationSum;
+			case MEDIUM   : return mediumDeviationSum;
+			case HIGH     : return highDeviationSum;
+			case CRITICAL : return criticalDeviationSum;
+			default       : throw new AssertionError("Unexpected value for alertLevel: "+alertLevel);
+		}
+	}
+
+	private void checkAlertLevel(AlertLevel alertLevel) throws IllegalArgumentException {
+		if(alertLevel.compareTo(minimumAlertLevel)<0) throw new IllegalArgumentException("alertLevel below minimumAlertLevel: "+alertLevel+"<"+minimumAlertLevel);
+	}
+
+	/**
+	 * Determines if this is optimal, meaning all results have AlertLevel of NONE.
+	 * This is only valid when results of at least AlertLevel LOW were gathered.
+	 *
+	 * @see  AnalyzedClusterConfiguration#isOptimal()
+	 */
+	public boolean isOptimal() {
+		assert minimumAlertLevel.compareTo(AlertLevel.LOW)<=0 : "minimumAlertLevel too high to determine isOptimal: "+minimumAlertLevel;
+		return lowCount==0 && mediumCount==0 && highCount==0 && criticalCount==0;
+	}
+
+	/**
+	 * Determines if this has at least one result with AlertLevel of CRITICAL.
+	 *
+	 * @see  AnalyzedClusterConfiguration#hasCritical()
+	 */
+	public boolean hasCritical() {
+		return criticalCount!=0;
+	}
+
+	@Override
+	public boolean equals(Object O) {
+		return O!=null && (O instanceof ClusterScore) && equals((ClusterScore)O);
+	}
+
+	/**
+	 * Two scores are equal when gathered at the same minimum alert level with exactly
+	 * the same counts and deviation sums.
+	 *
+	 * @see  #equals(Object)
+	 */
+	public boolean equals(ClusterScore other) {
+		if(this==other) return true;
+		if(other==null) return false;
+		return
+			minimumAlertLevel==other.minimumAlertLevel
+			&& noneCount==other.noneCount
+			&& lowCount==other.lowCount
+			&& mediumCount==other.mediumCount
+			&& highCount==other.highCount
+			&& criticalCount==other.criticalCount
+			&& Double.doubleToLongBits(noneDeviationSum)==Double.doubleToLongBits(other.noneDeviationSum)
+			&& Double.doubleToLongBits(lowDeviationSum)==Double.doubleToLongBits(other.lowDeviationSum)
+			&& Double.doubleToLongBits(mediumDeviationSum)==Double.doubleToLongBits(other.mediumDeviationSum)
+			&& Double.doubleToLongBits(highDeviationSum)==Double.doubleToLongBits(other.highDeviationSum)
+			&& Double.doubleToLongBits(criticalDeviationSum)==Double.doubleToLongBits(other.criticalDeviationSum)
+		;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = minimumAlertLevel.hashCode();
+		hash = hash * 31 + lowCount;
+		hash = hash * 31 + mediumCount;
+		hash = hash * 31 + highCount;
+		hash = hash * 31 + criticalCount;
+		long bits = Double.doubleToLongBits(lowDeviationSum);
+		return hash * 31 + (int)(bits ^ (bits >>> 32));
+	}
+}
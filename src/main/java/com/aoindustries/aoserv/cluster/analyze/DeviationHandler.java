@@ -0,0 +1,42 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.analyze;
+
+/**
+ * Receives the alert level and deviation of each result without the result being
+ * created.  This is all that is needed to score a configuration, so the analysis
+ * of a configuration by a search allocates no results, labels or boxed values.
+ *
+ * @see  AnalyzedDom0Configuration#getAllDeviations(com.aoindustries.aoserv.cluster.analyze.DeviationHandler, com.aoindustries.aoserv.cluster.analyze.AlertLevel)
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface DeviationHandler {
+
+	/**
+	 * Each deviation is provided as it is found.
+	 *
+	 * @return true if more results are wanted, or false to receive no more results.
+	 */
+	boolean handleDeviation(AlertLevel alertLevel, double deviation);
+}
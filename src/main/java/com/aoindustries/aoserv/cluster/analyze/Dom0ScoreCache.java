@@ -0,0 +1,202 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.analyze;
+
+import com.aoindustries.aoserv.cluster.Dom0Configuration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the scores of Dom0s by their {@link Dom0Configuration#getFingerprintHigh() fingerprint}.
+ * A search often reaches the same Dom0 with exactly the same DomUs and physical volume
+ * allocations while the rest of the cluster differs, which then costs a lookup instead of
+ * an analysis of its RAM, processors, HVM and disks.  The least recently used score is
+ * evicted once full.
+ *
+ * A cache must only be used for configurations of a single cluster.
+ *
+ * This is thread safe.  The cache is split into stripes by fingerprint, each with its
+ * own lock and least recently used order, so the tasks analyzing the children of one
+ * configuration in parallel rarely wait on each other.
+ *
+ * @see  IncrementalAnalysis
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class Dom0ScoreCache {
+
+	/**
+	 * The 128-bit fingerprint of a Dom0 configuration.
+	 */
+	private static final class Key {
+
+		private final long fingerprintHigh;
+		private final long fingerprintLow;
+
+		private Key(long fingerprintHigh, long fingerprintLow) {
+			this.fingerprintHigh = fingerprintHigh;
+			this.fingerprintLow = fingerprintLow;
+		}
+
+		@Override
+		public boolean equals(Object O) {
+			if(!(O instanceof Key)) return false;
+			Key other = (Key)O;
+			return fingerprintHigh==other.fingerprintHigh && fingerprintLow==other.fingerprintLow;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(fingerprintHigh ^ (fingerprintHigh >>> 32));
+		}
+	}
+
+	/**
+	 * The number of stripes is 2<sup>STRIPE_BITS</sup>.
+	 */
+	private static final int STRIPE_BITS = 4;
+
+	/**
+	 * One independently locked part of the cache, holding the keys that hash to it.
+	 */
+	private static final class Stripe extends LinkedHashMap<Key, ClusterScore> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		private long hits;
+		private long misses;
+
+		private Stripe(int capacity) {
+			super(capacity*4/3+1, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, ClusterScore> eldest) {
+			return size()>capacity;
+		}
+	}
+
+	private final int capacity;
+	private final Stripe[] stripes;
+
+	/**
+	 * @param  capacity  the maximum number of scores kept
+	 */
+	public Dom0ScoreCache(int capacity) {
+		if(capacity<1) throw new IllegalArgumentException("capacity<1: "+capacity);
+		this.capacity = capacity;
+		int numStripes = 1 << STRIPE_BITS;
+		int stripeCapacity = Math.max(1, capacity / numStripes);
+		stripes = new Stripe[numStripes];
+		for(int i=0; i<numStripes; i++) stripes[i] = new Stripe(stripeCapacity);
+	}
+
+	/**
+	 * Selects the stripe by the low bits of the fingerprint, which are not used by the map within the stripe.
+	 */
+	private Stripe getStripe(Key key) {
+		return stripes[(int)key.fingerprintLow & ((1 << STRIPE_BITS) - 1)];
+	}
+
+	/**
+	 * Gets the score of the provided Dom0 configuration at the provided alert level,
+	 * analyzing it only when not cached.
+	 */
+	ClusterScore getClusterScore(AnalyzedDom0Configuration analysis, AlertLevel minimumAlertLevel) {
+		Dom0Configuration dom0Configuration = analysis.getDom0Configuration();
+		Key key = new Key(dom0Configuration.getFingerprintHigh(), dom0Configuration.getFingerprintLow());
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			ClusterScore score = stripe.get(key);
+			if(score!=null && score.getMinimumAlertLevel()==minimumAlertLevel) {
+				stripe.hits++;
+				return score;
+			}
+			stripe.misses++;
+		}
+		// Analyze outside the lock, concurrent misses for the same key will get equal scores
+		ClusterScore score = new ClusterScore(analysis, minimumAlertLevel);
+		synchronized(stripe) {
+			stripe.put(key, score);
+		}
+		return score;
+	}
+
+	/**
+	 * Gets the maximum number of scores kept.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of scores currently kept.
+	 */
+	public int size() {
+		int size = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of scores found in the cache.
+	 */
+	public long getHits() {
+		long hits = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				hits += stripe.hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Gets the number of scores not found in the cache, each requiring an analysis.
+	 */
+	public long getMisses() {
+		long misses = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				misses += stripe.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Gets the fraction of scores found in the cache, or 0 when nothing has been looked up.
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total==0 ? 0 : (double)hits / (double)total;
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.analyze;
+
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.Dom0;
+import com.aoindustries.aoserv.cluster.DomUConfiguration;
+import java.util.List;
+
+/**
+ * The score of a cluster configuration kept separately for each Dom0.  Every
+ * result of a Dom0 depends only on the DomUs that are primary or secondary on it,
+ * so the analysis of a configuration that differs from this one by a single transition
+ * only re-runs the checks of the Dom0s that transition changed, typically two or three,
+ * and reuses the scores of all other Dom0s.  The scores of all Dom0s are still copied
+ * and added up again, in their original order so the sums are exact, so deriving an
+ * analysis is O(Dom0s) plus the checks of the changed Dom0s.
+ *
+ * When a {@link Dom0ScoreCache} is provided, it is shared by every analysis derived
+ * from this one, and a Dom0 with the same DomUs as one already analyzed is not
+ * analyzed again.
+ *
+ * This is immutable and thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class IncrementalAnalysis {
+
+	private final ClusterConfiguration clusterConfiguration;
+	private final AlertLevel minimumAlertLevel;
+	private final Dom0ScoreCache dom0ScoreCache;
+
+	/**
+	 * The Dom0s in the order of {@link AnalyzedClusterConfiguration#getAnalyzedDom0Configurations()},
+	 * shared by every analysis derived from this one.
+	 */
+	private final Dom0[] dom0s;
+
+	/**
+	 * The index within {@link #dom0s} of each Dom0 by {@link Dom0#getId() id},
+	 * shared by every analysis derived from this one.
+	 */
+	private final int[] dom0Indexes;
+	private final ClusterScore[] dom0Scores;
+	private final ClusterScore clusterScore;
+
+	/**
+	 * Analyzes every Dom0 of the provided configuration.
+	 */
+	public IncrementalAnalysis(ClusterConfiguration clusterConfiguration, AlertLevel minimumAlertLevel) {
+		this(clusterConfiguration, minimumAlertLevel, null);
+	}
+
+	/**
+	 * Analyzes every Dom0 of the provided configuration, reusing any scores in the provided cache.
+	 *
+	 * @param  dom0ScoreCache  the optional cache of Dom0 scores, or <code>null</code> to analyze every Dom0
+	 */
+	public IncrementalAnalysis(ClusterConfiguration clusterConfiguration, AlertLevel minimumAlertLevel, Dom0ScoreCache dom0ScoreCache) {
+		this.clusterConfiguration = clusterConfiguration;
+		this.minimumAlertLevel = minimumAlertLevel;
+		this.dom0ScoreCache = dom0ScoreCache;
+		List<AnalyzedDom0Configuration> analyzedDom0Configurations = new AnalyzedClusterConfiguration(clusterConfiguration).getAnalyzedDom0Configurations();
+		int size = analyzedDom0Configurations.size();
+		dom0s = new Dom0[size];
+		dom0Indexes = new int[clusterConfiguration.getCluster().getDom0Count()];
+		dom0Scores = new ClusterScore[size];
+		for(int i=0; i<size; i++) {
+			AnalyzedDom0Configuration analyzedDom0Configuration = analyzedDom0Configurations.get(i);
+			Dom0 dom0 = analyzedDom0Configuration.getDom0();
+			dom0s[i] = dom0;
+			dom0Indexes[dom0.getId()] = i;
+			dom0Scores[i] = getClusterScore(analyzedDom0Configuration);
+		}
+		clusterScore = new ClusterScore(dom0Scores, minimumAlertLevel);
+	}
+
+	/**
+	 * Analyzes a configuration derived from the configuration of the parent analysis,
+	 * re-running the checks of only the changed Dom0s.
+	 *
+	 * @param  changedDom0s  every Dom0 that any changed DomU was or is now primary or secondary on.
+	 *                       Other Dom0s are not analyzed again, so their results must be unchanged.
+	 */
+	public IncrementalAnalysis(IncrementalAnalysis parent, ClusterConfiguration clusterConfiguration, Dom0 ... changedDom0s) {
+		assert clusterConfiguration.getCluster()==parent.clusterConfiguration.getCluster() : "clusterConfiguration is for a different cluster";
+		assert allChangedDom0sProvided(parent.clusterConfiguration, clusterConfiguration, changedDom0s);
+		this.clusterConfiguration = clusterConfiguration;
+		this.minimumAlertLevel = parent.minimumAlertLevel;
+		this.dom0ScoreCache = parent.dom0ScoreCache;
+		this.dom0s = parent.dom0s;
+		this.dom0Indexes = parent.dom0Indexes;
+		this.dom0Scores = parent.dom0Scores.clone();
+		for(Dom0 changedDom0 : changedDom0s) {
+			int index = indexOf(changedDom0);
+			dom0Scores[index] = getClusterScore(
+				new AnalyzedDom0Configuration(clusterConfiguration, clusterConfiguration.getDom0Configuration(changedDom0))
+			);
+		}
+		clusterScore = new ClusterScore(dom0Scores, minimumAlertLevel);
+		assert clusterScore.equals(new ClusterScore(new AnalyzedClusterConfiguration(clusterConfiguration), minimumAlertLevel)) : "incremental score does not match full analysis";
+	}
+
+	private ClusterScore getClusterScore(AnalyzedDom0Configuration analysis) {
+		return
+			dom0ScoreCache==null
+			? new ClusterScore(analysis, minimumAlertLevel)
+			: dom0ScoreCache.getClusterScore(analysis, minimumAlertLevel)
+		;
+	}
+
+	private static boolean contains(Dom0[] dom0s, Dom0 dom0) {
+		for(Dom0 d : dom0s) {
+			if(d==dom0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes sure every DomU that differs between the configurations was and is only on the changed Dom0s.
+	 */
+	private static boolean allChangedDom0sProvided(ClusterConfiguration parent, ClusterConfiguration child, Dom0[] changedDom0s) {
+		List<DomUConfiguration> parentDomUConfigurations = parent.getDomUConfigurations();
+		List<DomUConfiguration> childDomUConfigurations = child.getDomUConfigurations();
+		int size = parentDomUConfigurations.size();
+		if(childDomUConfigurations.size()!=size) throw new AssertionError("DomUs added or removed");
+		for(int i=0; i<size; i++) {
+			DomUConfiguration parentDomUConfiguration = parentDomUConfigurations.get(i);
+			DomUConfiguration childDomUConfiguration = childDomUConfigurations.get(i);
+			if(parentDomUConfiguration!=childDomUConfiguration) {
+				if(
+					!contains(changedDom0s, parentDomUConfiguration.getPrimaryDom0())
+					|| !contains(changedDom0s, parentDomUConfiguration.getSecondaryDom0())
+					|| !contains(changedDom0s, childDomUConfiguration.getPrimaryDom0())
+					|| !contains(changedDom0s, childDomUConfiguration.getSecondaryDom0())
+				) throw new AssertionError("Dom0 of "+childDomUConfiguration.getDomU()+" not in changedDom0s");
+			}
+		}
+		return true;
+	}
+
+	private int indexOf(Dom0 dom0) {
+		int index = dom0Indexes[dom0.getId()];
+		assert dom0s[index]==dom0 : "dom0 not found: "+dom0;
+		return index;
+	}
+
+	/**
+	 * Gets the lowest alert level of results gathered.
+	 */
+	public AlertLevel getMinimumAlertLevel() {
+		return minimumAlertLevel;
+	}
+
+	/**
+	 * Gets the cache of Dom0 scores or <code>null</code> when not cached.
+	 */
+	public Dom0ScoreCache getDom0ScoreCache() {
+		return dom0ScoreCache;
+	}
+
+	/**
+	 * Gets the configuration that is analyzed.
+	 */
+	public ClusterConfiguration getClusterConfiguration() {
+		return clusterConfiguration;
+	}
+
+	/**
+	 * Gets the score of the configuration, exactly equal to one from
+	 * {@link ClusterScore#ClusterScore(com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration, com.aoindustries.aoserv.cluster.analyze.AlertLevel)}.
+	 */
+	public ClusterScore getClusterScore() {
+		return clusterScore;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * The closed list of a best-first search.  Only the 128-bit fingerprint of each
+ * <code>ClusterConfiguration</code> is stored, along with the path length needed
+ * to decide if the configuration should be re-opened when reached by a shorter
+ * path.  This avoids keeping every explored configuration reachable.
+ *
+ * This is an open-addressing hash table with linear probing over a <code>LongBuffer</code>,
+ * with three longs per slot: the high and low halves of the fingerprint then the path length.
+ * The buffer may either wrap a <code>long[]</code> or be allocated off-heap in a direct
+ * <code>ByteBuffer</code>.  The all-zero fingerprint marks an empty slot, so a
+ * configuration with that fingerprint is stored with a low half of one instead.
+ *
+ * This is not thread safe.
+ *
+ * @see  com.aoindustries.aoserv.cluster.ClusterConfiguration#getFingerprintHigh()
+ * @see  com.aoindustries.aoserv.cluster.ClusterConfiguration#getFingerprintLow()
+ *
+ * @author  AO Industries, Inc.
+ */
+class ClosedList {
+
+	private static final int INITIAL_CAPACITY = 1 << 12;
+
+	/**
+	 * The largest number of slots, limited by the size of a direct <code>ByteBuffer</code>.
+	 */
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	/**
+	 * The most entries that fit in the largest table at the load factor of 3/4.
+	 */
+	static final int MAX_SIZE = MAX_CAPACITY - (MAX_CAPACITY >>> 2);
+
+	private static final int SLOT_SIZE = 3;
+
+	private final boolean direct;
+	private LongBuffer table;
+	private int mask;
+	private int size;
+
+	/**
+	 * @param  direct  when <code>true</code>, the table is stored off-heap
+	 */
+	ClosedList(boolean direct) {
+		this.direct = direct;
+		this.table = allocate(INITIAL_CAPACITY);
+		this.mask = INITIAL_CAPACITY - 1;
+	}
+
+	private LongBuffer allocate(int capacity) {
+		if(direct) return ByteBuffer.allocateDirect(capacity * SLOT_SIZE * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+		else return LongBuffer.wrap(new long[capacity * SLOT_SIZE]);
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static long checkLow(long high, long low) {
+		return (high==0 && low==0) ? 1 : low;
+	}
+
+	/**
+	 * Finds the slot of the provided fingerprint or the empty slot where it would be added.
+	 */
+	private int find(long high, long low) {
+		int slot = (int)(high ^ (high >>> 32)) & mask;
+		while(true) {
+			int pos = slot * SLOT_SIZE;
+			long h = table.get(pos);
+			long l = table.get(pos + 1);
+			if((h==high && l==low) || (h==0 && l==0)) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Gets the path length stored for the provided fingerprint or <code>-1</code> if not on the closed list.
+	 */
+	int get(long high, long low) {
+		low = checkLow(high, low);
+		int pos = find(high, low) * SLOT_SIZE;
+		if(table.get(pos)==0 && table.get(pos + 1)==0) return -1;
+		return (int)table.get(pos + 2);
+	}
+
+	/**
+	 * Adds a fingerprint to the closed list or updates its path length when already present.
+	 */
+	void put(long high, long low, int pathLen) {
+		low = checkLow(high, low);
+		int pos = find(high, low) * SLOT_SIZE;
+		if(table.get(pos)==0 && table.get(pos + 1)==0) {
+			// Keep the load factor at or below 3/4
+			if((size + 1) > ((mask + 1) - ((mask + 1) >>> 2))) {
+				rehash((mask + 1) << 1, -1);
+				pos = find(high, low) * SLOT_SIZE;
+			}
+			table.put(pos, high);
+			table.put(pos + 1, low);
+			size++;
+		}
+		table.put(pos + 2, pathLen);
+	}
+
+	/**
+	 * Removes a fingerprint from the closed list.  The entries following it are shifted
+	 * back as needed, so no deleted markers are left behind.
+	 */
+	void remove(long high, long low) {
+		low = checkLow(high, low);
+		int slot = find(high, low);
+		int pos = slot * SLOT_SIZE;
+		if(table.get(pos)==0 && table.get(pos + 1)==0) return;
+		size--;
+		int next = slot;
+		while(true) {
+			next = (next + 1) & mask;
+			int nextPos = next * SLOT_SIZE;
+			long h = table.get(nextPos);
+			long l = table.get(nextPos + 1);
+			if(h==0 && l==0) break;
+			int home = (int)(h ^ (h >>> 32)) & mask;
+			// Move back when the home of the entry is not cyclically within (slot, next]
+			if(slot<=next ? (home<=slot || home>next) : (home<=slot && home>next)) {
+				table.put(pos, h);
+				table.put(pos + 1, l);
+				table.put(pos + 2, table.get(nextPos + 2));
+				slot = next;
+				pos = nextPos;
+			}
+		}
+		table.put(pos, 0);
+		table.put(pos + 1, 0);
+		table.put(pos + 2, 0);
+	}
+
+	/**
+	 * Gets all entries as consecutive high, low and path length values, in no particular order.
+	 */
+	long[] toArray() {
+		long[] entries = new long[size * SLOT_SIZE];
+		int i = 0;
+		for(int slot=0, capacity=mask + 1; slot<capacity; slot++) {
+			int pos = slot * SLOT_SIZE;
+			long h = table.get(pos);
+			long l = table.get(pos + 1);
+			if(h!=0 || l!=0) {
+				entries[i++] = h;
+				entries[i++] = l;
+				entries[i++] = table.get(pos + 2);
+			}
+		}
+		assert i==entries.length : "size mismatch";
+		return entries;
+	}
+
+	/**
+	 * Removes all fingerprints with a path length greater than or equal to the provided
+	 * length.  The table is rebuilt once instead of removing one entry at a time.
+	 */
+	void removePathLenAtLeast(int pathLen) {
+		rehash(mask + 1, pathLen);
+	}
+
+	/**
+	 * Moves all entries into a new table of the provided capacity, skipping any with
+	 * a path length at least <code>pathLen</code> unless it is <code>-1</code>.
+	 */
+	private void rehash(int capacity, int pathLen) {
+		if(capacity>MAX_CAPACITY) throw new IllegalStateException("ClosedList is full: "+size);
+		LongBuffer oldTable = table;
+		int oldCapacity = mask + 1;
+		table = allocate(capacity);
+		mask = capacity - 1;
+		size = 0;
+		for(int oldSlot=0; oldSlot<oldCapacity; oldSlot++) {
+			int oldPos = oldSlot * SLOT_SIZE;
+			long h = oldTable.get(oldPos);
+			long l = oldTable.get(oldPos + 1);
+			if(h!=0 || l!=0) {
+				long p = oldTable.get(oldPos + 2);
+				if(pathLen==-1 || p<pathLen) {
+					int pos = find(h, l) * SLOT_SIZE;
+					table.put(pos, h);
+					table.put(pos + 1, l);
+					table.put(pos + 2, p);
+					size++;
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2019, 2020, 2021  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2019, 2020, 2021, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,15 +27,24 @@ import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.Dom0;
 import com.aoindustries.aoserv.cluster.DomU;
 import com.aoindustries.aoserv.cluster.DomUConfiguration;
-import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
+import com.aoindustries.aoserv.cluster.MoveSecondaryCache;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
+import com.aoindustries.aoserv.cluster.analyze.Dom0ScoreCache;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
+import java.io.File;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>
@@ -65,9 +74,35 @@ import java.util.Random;
  * To reduce the number of non-live-migrate swaps, this search could try to move
  * between same architectures in preference to different architectures.
  * </p>
- * TODO: To manage heap consumption, allow two optional parameters:
- *           maxPathLen
- *           something to make it a "Beam Search" (http://pages.cs.wisc.edu/~dyer/cs540/notes/search2.html)
+ * <p>
+ * To manage heap consumption, two optional parameters are available:
+ * </p>
+ * <ol>
+ *   <li>{@link #withMaxPathLen(int) maxPathLen} - paths are not expanded beyond this number of transitions</li>
+ *   <li>{@link #withBeamWidth(int, int) beamWidth} - turns the search into a "Beam Search" (http://pages.cs.wisc.edu/~dyer/cs540/notes/search2.html)
+ *       that keeps only the best configurations of each layer</li>
+ *   <li>{@link #withOffHeapClosedList(boolean) offHeapClosedList} - stores the closed list of
+ *       configuration fingerprints outside of the heap</li>
+ *   <li>{@link #withMaterializeInterval(int) materializeInterval} - stores only the transitions between
+ *       configurations, rebuilding configurations as needed</li>
+ *   <li>{@link #withExternalMemory(java.io.File, int) externalMemoryDirectory} - keeps the open and closed
+ *       lists in memory-mapped files</li>
+ * </ol>
+ * <p>
+ * To speed up each expansion, {@link #withForkJoinPool(java.util.concurrent.ForkJoinPool) forkJoinPool}
+ * generates and analyzes the children of a configuration in parallel.
+ * </p>
+ * <p>
+ * When even a beam search uses too much heap, {@link IterativeDeepeningClusterOptimizer}
+ * trades repeated expansions for heap use linear in the path length.
+ * </p>
+ * <p>
+ * To use more than one processor, {@link ParallelClusterOptimizer} distributes
+ * the best-first search across multiple threads.
+ * </p>
+ * <p>
+ * An optimizer is immutable.  All setters return a new instance of an optimizer.
+ * </p>
  *
  * @author  AO Industries, Inc.
  */
@@ -75,16 +110,245 @@ public class ClusterOptimizer {
 
 	private static final boolean USE_SKIP_SAME_HEURISTIC_HACK = false;
 
+	/**
+	 * The largest frontier supported by external memory, limited by the most entries
+	 * buffered in memory by the closed list before being written to disk.
+	 */
+	private static final int MAX_FRONTIER = ClosedList.MAX_SIZE;
+
+	/**
+	 * The number of Dom0 scores kept by each search.
+	 */
+	static final int DOM0_SCORE_CACHE_SIZE = 1 << 16;
+
+	/**
+	 * The number of secondary moves kept by each search.
+	 */
+	static final int MOVE_SECONDARY_CACHE_SIZE = 1 << 14;
+
 	private final ClusterConfiguration clusterConfiguration;
 	private final HeuristicFunction heuristicFunction;
 	private final boolean allowPathThroughCritical;
 	private final boolean randomizeChildren;
+	private final int maxPathLen;
+	private final int beamWidth;
+	private final int maxBeamWidth;
+	private final boolean offHeapClosedList;
+	private final int materializeInterval;
+	private final File externalMemoryDirectory;
+	private final int maxFrontier;
+	private final ForkJoinPool forkJoinPool;
 
 	public ClusterOptimizer(ClusterConfiguration clusterConfiguration, HeuristicFunction heuristicFunction, boolean allowPathThroughCritical, boolean randomizeChildren) {
+		this(clusterConfiguration, heuristicFunction, allowPathThroughCritical, randomizeChildren, -1, 0, 0, false, 1, null, 0, null);
+	}
+
+	private ClusterOptimizer(
+		ClusterConfiguration clusterConfiguration,
+		HeuristicFunction heuristicFunction,
+		boolean allowPathThroughCritical,
+		boolean randomizeChildren,
+		int maxPathLen,
+		int beamWidth,
+		int maxBeamWidth,
+		boolean offHeapClosedList,
+		int materializeInterval,
+		File externalMemoryDirectory,
+		int maxFrontier,
+		ForkJoinPool forkJoinPool
+	) {
 		this.clusterConfiguration = clusterConfiguration;
 		this.heuristicFunction = heuristicFunction;
 		this.allowPathThroughCritical = allowPathThroughCritical;
 		this.randomizeChildren = randomizeChildren;
+		this.maxPathLen = maxPathLen;
+		this.beamWidth = beamWidth;
+		this.maxBeamWidth = maxBeamWidth;
+		this.offHeapClosedList = offHeapClosedList;
+		this.materializeInterval = materializeInterval;
+		this.externalMemoryDirectory = externalMemoryDirectory;
+		this.maxFrontier = maxFrontier;
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Limits the number of transitions in any path.  No configuration is expanded
+	 * once its path has reached this length.
+	 *
+	 * @param  maxPathLen  the maximum path length or <code>-1</code> for no limit
+	 *
+	 * @return  a new optimizer with the limit applied
+	 */
+	public ClusterOptimizer withMaxPathLen(int maxPathLen) {
+		if(maxPathLen<-1) throw new IllegalArgumentException("maxPathLen should be -1 or >=0: "+maxPathLen);
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			externalMemoryDirectory,
+			maxFrontier,
+			forkJoinPool
+		);
+	}
+
+	/**
+	 * Turns the search into a beam search that keeps only the best <code>beamWidth</code>
+	 * configurations of each layer (all paths of the same length).  Only the previous
+	 * and current layers are kept for duplicate detection, so the heap used is bounded
+	 * by the beam width instead of growing with every configuration explored.
+	 *
+	 * When the beam dies out, or reaches {@link #withMaxPathLen(int) maxPathLen},
+	 * without finding an optimal configuration, the search is restarted with twice
+	 * the width, up to <code>maxBeamWidth</code>.  It is not restarted when no layer
+	 * was cut to the width, since that search was already exhaustive.
+	 *
+	 * @param  beamWidth     the initial number of configurations kept per layer or <code>0</code> for a best-first search
+	 * @param  maxBeamWidth  the widest beam to try, use <code>beamWidth</code> to never widen
+	 *
+	 * @return  a new optimizer using a beam search
+	 */
+	public ClusterOptimizer withBeamWidth(int beamWidth, int maxBeamWidth) {
+		if(beamWidth<0) throw new IllegalArgumentException("beamWidth should be >=0: "+beamWidth);
+		if(maxBeamWidth<beamWidth) throw new IllegalArgumentException("maxBeamWidth should be >=beamWidth: "+maxBeamWidth+"<"+beamWidth);
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			externalMemoryDirectory,
+			maxFrontier,
+			forkJoinPool
+		);
+	}
+
+	/**
+	 * Stores the closed list of the best-first search off-heap in a direct <code>ByteBuffer</code>.
+	 * The closed list only contains the fingerprint and path length of each explored
+	 * configuration either way.
+	 *
+	 * @param  offHeapClosedList  <code>true</code> to store the closed list off-heap
+	 *
+	 * @return  a new optimizer with the closed list storage selected
+	 */
+	public ClusterOptimizer withOffHeapClosedList(boolean offHeapClosedList) {
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			externalMemoryDirectory,
+			maxFrontier,
+			forkJoinPool
+		);
+	}
+
+	/**
+	 * Only stores the configuration in every <code>materializeInterval</code> elements
+	 * of the best-first search.  All other elements store only the transition from the
+	 * previous element and the fingerprint of the configuration, and the configuration
+	 * is rebuilt when needed by replaying the transitions from the nearest stored
+	 * configuration.  This trades the time to replay up to <code>materializeInterval - 1</code>
+	 * transitions per expansion for a much smaller open list.
+	 *
+	 * @param  materializeInterval  the path length interval between stored configurations,
+	 *                              <code>1</code> to store every configuration
+	 *
+	 * @return  a new optimizer with the interval applied
+	 */
+	public ClusterOptimizer withMaterializeInterval(int materializeInterval) {
+		if(materializeInterval<1) throw new IllegalArgumentException("materializeInterval should be >=1: "+materializeInterval);
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			externalMemoryDirectory,
+			maxFrontier,
+			forkJoinPool
+		);
+	}
+
+	/**
+	 * Performs the best-first search with its open and closed lists in memory-mapped files
+	 * within a new temporary directory under <code>directory</code>.  At most
+	 * <code>maxFrontier</code> open elements and closed fingerprints are kept in the heap
+	 * before being written to disk.  Configurations are rebuilt from the log of elements
+	 * as they are expanded, so this is slower, but the search is no longer limited by heap.
+	 *
+	 * This replaces {@link #withOffHeapClosedList(boolean) offHeapClosedList} and
+	 * {@link #withMaterializeInterval(int) materializeInterval}, but is not used for a
+	 * {@link #withBeamWidth(int, int) beam search}.
+	 *
+	 * @param  directory    the local directory for temporary files or <code>null</code> to search in the heap
+	 * @param  maxFrontier  the number of open elements or closed fingerprints kept in the heap
+	 *
+	 * @return  a new optimizer using external memory
+	 */
+	public ClusterOptimizer withExternalMemory(File directory, int maxFrontier) {
+		if(directory!=null && (maxFrontier<2 || maxFrontier>MAX_FRONTIER)) throw new IllegalArgumentException("maxFrontier should be in the range 2-"+MAX_FRONTIER+": "+maxFrontier);
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			directory,
+			directory==null ? 0 : maxFrontier,
+			forkJoinPool
+		);
+	}
+
+	/**
+	 * Generates and analyzes the children of each expanded configuration in parallel.
+	 * The work is divided into one task per DomU and target Dom0, and the results
+	 * are merged in the same order as when generated serially, so the search itself
+	 * is unchanged.  The heuristic of each child is also evaluated within its task, so
+	 * the heuristic function must be thread safe.
+	 *
+	 * @param  forkJoinPool  the pool to run the tasks or <code>null</code> to generate children serially
+	 *
+	 * @return  a new optimizer with the pool applied
+	 */
+	public ClusterOptimizer withForkJoinPool(ForkJoinPool forkJoinPool) {
+		return new ClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			beamWidth,
+			maxBeamWidth,
+			offHeapClosedList,
+			materializeInterval,
+			externalMemoryDirectory,
+			maxFrontier,
+			forkJoinPool
+		);
 	}
 
 	/**
@@ -117,62 +381,80 @@ public class ClusterOptimizer {
 	 */
 	@SuppressWarnings("UseOfSystemOutOrSystemErr")
 	public ListElement getOptimizedClusterConfiguration(OptimizedClusterConfigurationHandler handler) {
+		if(beamWidth>0) return getBeamSearchPath(handler);
+		if(externalMemoryDirectory!=null) {
+			return new ExternalMemorySearch(
+				clusterConfiguration,
+				heuristicFunction,
+				allowPathThroughCritical,
+				randomizeChildren,
+				maxPathLen,
+				externalMemoryDirectory,
+				maxFrontier,
+				forkJoinPool
+			).getOptimizedClusterConfiguration(handler);
+		}
 
 		// Reused inside loop below
 		List<ClusterConfiguration> children = new ArrayList<>();
 		List<Transition> childTransitions = new ArrayList<>();
+		BitSet childrenHaveCritical = new BitSet();
+		AlertLevel analysisAlertLevel = getAnalysisAlertLevel(heuristicFunction);
+		Dom0ScoreCache dom0ScoreCache = new Dom0ScoreCache(DOM0_SCORE_CACHE_SIZE);
+		MoveSecondaryCache moveSecondaryCache = new MoveSecondaryCache(MOVE_SECONDARY_CACHE_SIZE);
+		double[] childHeuristics = null;
 
 		// Return value is stored here upon success or remains null on failure
 		ListElement shortestPath = null;
 
 		// Initialize the open list
-		PriorityQueue<ListElement> openQueue = new PriorityQueue<>();
-		Map<ClusterConfiguration, ListElement> openMap = new HashMap<>();
-		{
-			ListElement openListElement = new ListElement(
+		OpenList openList = new OpenList();
+		openList.add(
+			new ListElement(
 				null,
 				null,
 				clusterConfiguration,
 				heuristicFunction.getHeuristic(clusterConfiguration, 0)
-			);
-			openQueue.add(openListElement);
-			openMap.put(clusterConfiguration, openListElement);
-		}
+			)
+		);
 
 		// Initialize the closed list
-		Map<ClusterConfiguration, ListElement> closedMap = new HashMap<>();
+		ClosedList closedList = new ClosedList(offHeapClosedList);
 
 		long loopCounter = 0;
 		long existingOpenCount = 0;
 		long existingClosedCount = 0;
-		long openQueueRemoveCount = 0;
+		long openReplaceCount = 0;
 		long skipCriticalPathCount = 0;
 		long lastDisplayTime = System.currentTimeMillis();
 		double lastHeurisic = Double.NaN;
-		while(!openQueue.isEmpty()) {
+		while(!openList.isEmpty()) {
 			loopCounter++;
-			assert openQueue.size()==openMap.size() : "openQueue and openMap have different sizes";
-			ListElement X = openQueue.remove();
-			openMap.remove(X.clusterConfiguration);
+			ListElement X = openList.remove();
 			assert shortestPath==null || X.pathLen<shortestPath.pathLen : "Should only explore paths shorter than shortestPath";
 			long currentTime = System.currentTimeMillis();
 			long timeSince = currentTime - lastDisplayTime;
 			if(timeSince<0 || timeSince>=60000) {
 				System.out.println(
-					"        open:"+openMap.size()
-					+ " closed:"+closedMap.size()
+					"        open:"+openList.size()
+					+ " closed:"+closedList.size()
 					+ " transitions:"+X.pathLen
 					+ " heuristic:"+X.heuristic
 					+ " existingOpen:"+existingOpenCount
 					+ " existingClosed:"+existingClosedCount
-					+ " openQueueRemove:"+openQueueRemoveCount
+					+ " openReplace:"+openReplaceCount
 					+ " skipCriticalPath:"+skipCriticalPathCount
+					+ " dom0ScoreHitRate:"+dom0ScoreCache.getHitRate()
+					+ " moveSecondaryHitRate:"+moveSecondaryCache.getHitRate()
 				);
 				lastDisplayTime = currentTime;
 			}
 			// Is this the goal?
-			AnalyzedClusterConfiguration analyzedX = new AnalyzedClusterConfiguration(X.clusterConfiguration);
-			if(analyzedX.isOptimal()) {
+			ClusterConfiguration xConfiguration = X.getClusterConfiguration();
+			// Not kept, since X remains referenced by the path of each child
+			IncrementalAnalysis analysisX = new IncrementalAnalysis(xConfiguration, analysisAlertLevel, dom0ScoreCache);
+			ClusterScore scoreX = analysisX.getClusterScore();
+			if(scoreX.isOptimal()) {
 				shortestPath = X;
 
 				// Give handler a chance to cancel before trimming
@@ -183,114 +465,277 @@ public class ClusterOptimizer {
 
 				// Trim anything out of open/closed that has transitions.length>=this path
 				//System.out.println(
-				//    "        Before trim: openQueue: "+openQueue.size()
-				//    + " openMap: "+openMap.size()
-				//    + " closedMap:"+closedMap.size()
+				//    "        Before trim: openList: "+openList.size()
+				//    + " closedList:"+closedList.size()
 				//);
-				// openQueue and openMap
+				// openList
 				int shortestPathLen = shortestPath.pathLen;
-				Iterator<Map.Entry<ClusterConfiguration, ListElement>> openIter = openMap.entrySet().iterator();
-				while(openIter.hasNext()) {
-					Map.Entry<ClusterConfiguration, ListElement> entry = openIter.next();
-					ListElement listElement = entry.getValue();
-					int lePathLen = listElement.pathLen;
-					if(lePathLen>=shortestPathLen) {
-						openIter.remove();
-						if(!openQueue.remove(listElement)) throw new AssertionError("listElement not found in openQueue");
-					}
-				}
-				// closedMap
-				Iterator<Map.Entry<ClusterConfiguration, ListElement>> closedIter = closedMap.entrySet().iterator();
-				while(closedIter.hasNext()) {
-					Map.Entry<ClusterConfiguration, ListElement> entry = closedIter.next();
-					if(entry.getValue().pathLen>=shortestPathLen) closedIter.remove();
-				}
+				openList.removePathLenAtLeast(shortestPathLen);
+				// closedList
+				closedList.removePathLenAtLeast(shortestPathLen);
 				//System.out.println(
-				//    "        After trim: openQueue: "+openQueue.size()
-				//    + " openMap: "+openMap.size()
-				//    + " closedMap:"+closedMap.size()
+				//    "        After trim: openList: "+openList.size()
+				//    + " closedList:"+closedList.size()
 				//);
 			} else {
 				if(!USE_SKIP_SAME_HEURISTIC_HACK || lastHeurisic!=X.heuristic) {
 					if(USE_SKIP_SAME_HEURISTIC_HACK) lastHeurisic = X.heuristic;
 					// generate children of X if depth limit not reached
 					// max depth is determined by any path already found
-					if(shortestPath==null || (X.pathLen+1)<shortestPath.pathLen) { // + 1 to match size of newTransitions below
-						generateChildren(X.clusterConfiguration, children, childTransitions, randomizeChildren);
+					if(
+						(shortestPath==null || (X.pathLen+1)<shortestPath.pathLen) // + 1 to match size of newTransitions below
+						&& (maxPathLen==-1 || X.pathLen<maxPathLen)
+					) {
+						boolean xEndsCritical = allowPathThroughCritical ? true : scoreX.hasCritical();
+						if(forkJoinPool==null) generateChildren(xConfiguration, children, childTransitions, moveSecondaryCache, randomizeChildren);
+						else childHeuristics = generateChildren(forkJoinPool, analysisX, children, childTransitions, xEndsCritical ? null : childrenHaveCritical, null, heuristicFunction, X.pathLen+1, moveSecondaryCache, randomizeChildren);
 						//System.out.println("        children: "+children.size());
-						boolean xEndsCritical = allowPathThroughCritical ? true : analyzedX.hasCritical();
 						// for each child of X do
 						for(int i=0, size=children.size(); i<size; i++) {
 							ClusterConfiguration child = children.get(i);
+							long childHigh = child.getFingerprintHigh();
+							long childLow = child.getFingerprintLow();
+							int childPathLen = X.pathLen+1; // + 1 to match size of newTransitions below
+							// Check open and closed first, since most children are already on one of them and are not analyzed
+							ListElement existingOpen = openList.get(childHigh, childLow);
+							int existingClosedPathLen;
+							if(existingOpen!=null) {
+								existingOpenCount++;
+								// if the child was reached by a shorter path then give the state of open the shorter path
+								if(childPathLen>=existingOpen.pathLen) continue;
+								existingClosedPathLen = -1;
+							} else {
+								existingClosedPathLen = closedList.get(childHigh, childLow);
+								if(existingClosedPathLen!=-1) {
+									existingClosedCount++;
+									// If the child was reached by a shorter path then remove the state from closed below
+									if(childPathLen>=existingClosedPathLen) continue;
+								}
+							}
+							// Not kept since most children stay on the open list
+							ClusterScore childScore = forkJoinPool!=null ? null : childTransitions.get(i).analyze(analysisX, child).getClusterScore();
 							// Don't keep any path that has a transition from not having any critical to have at least one critical
-							boolean childHasCritical = allowPathThroughCritical ? false : new AnalyzedClusterConfiguration(child).hasCritical();
-							if(xEndsCritical || !childHasCritical) {
-								ListElement existingOpen = openMap.get(child);
-								if(existingOpen!=null) {
-									existingOpenCount++;
-									// if the child was reached by a shorter path
-									if((X.pathLen+1)<existingOpen.pathLen) { // + 1 to match size of newTransitions below
-										// then give the state of open the shorter path
-
-										// removing and adding back to open because a short path affects the heuristic and therefore
-										// the position within the queue.
-										openQueue.remove(existingOpen); // This runs in O(n)
-										openQueueRemoveCount++;
-
-										ListElement openListElement = new ListElement(
-											X,
-											childTransitions.get(i),
-											child,
-											heuristicFunction.getHeuristic(child, X.pathLen+1)
-										);
-										openQueue.add(openListElement);
-										openMap.put(child, openListElement);
-									}
-								} else {
-									ListElement existingClosed = closedMap.get(child);
-									if(existingClosed!=null) {
-										existingClosedCount++;
-										// If the child was reached by a shorter path then
-										if((X.pathLen+1)<existingClosed.pathLen) {
-											// remove the state from closed
-											closedMap.remove(child);
-											// add the child to open
-											ListElement openListElement = new ListElement(
-												X,
-												childTransitions.get(i),
-												child,
-												heuristicFunction.getHeuristic(child, X.pathLen+1)
-											);
-											openQueue.add(openListElement);
-											openMap.put(child, openListElement);
-										}
-									} else {
-										// the child is not on open or closed
-										// add the child to open
-										ListElement openListElement = new ListElement(
-											X,
-											childTransitions.get(i),
-											child,
-											heuristicFunction.getHeuristic(child, X.pathLen+1)
-										);
-										openQueue.add(openListElement);
-										openMap.put(child, openListElement);
-									}
+							boolean childHasCritical =
+								allowPathThroughCritical ? false
+								: forkJoinPool==null ? childScore.hasCritical()
+								: xEndsCritical ? false // Not analyzed in parallel since not needed
+								: childrenHaveCritical.get(i);
+							if(!xEndsCritical && childHasCritical) {
+								skipCriticalPathCount++;
+								continue;
+							}
+							ListElement childElement = newListElement(
+								X,
+								childTransitions.get(i),
+								child,
+								forkJoinPool==null ? heuristicFunction.getHeuristic(child, childScore, childPathLen) : childHeuristics[i]
+							);
+							if(existingOpen!=null) {
+								// replacing in place because a short path affects the heuristic and therefore
+								// the position within the queue.  This runs in O(log n).
+								openList.replace(existingOpen, childElement);
+								openReplaceCount++;
+							} else {
+								if(existingClosedPathLen!=-1) {
+									// remove the state from closed
+									closedList.remove(childHigh, childLow);
 								}
-							} else skipCriticalPathCount++;
+								// add the child to open
+								openList.add(childElement);
+							}
 						}
 					}
 				}
 			}
 			// put X on closed
-			closedMap.put(X.clusterConfiguration, X);
+			closedList.put(X.fingerprintHigh, X.fingerprintLow, X.pathLen);
 		}
 		return shortestPath;
 	}
 
+	/**
+	 * Creates a new element of the best-first search, only storing the configuration
+	 * every <code>materializeInterval</code> transitions.
+	 *
+	 * @see  #withMaterializeInterval(int)
+	 */
+	private ListElement newListElement(ListElement previous, Transition transition, ClusterConfiguration clusterConfiguration, double heuristic) {
+		if(materializeInterval==1 || ((previous.pathLen+1) % materializeInterval)==0) {
+			return new ListElement(previous, transition, clusterConfiguration, heuristic);
+		} else {
+			return new ListElement(previous, transition, clusterConfiguration.getFingerprintHigh(), clusterConfiguration.getFingerprintLow(), heuristic);
+		}
+	}
+
+	/**
+	 * Beam search implementation, widening the beam on each failed attempt that
+	 * cut any layer to its width.
+	 *
+	 * @see  #withBeamWidth(int, int)
+	 */
+	private ListElement getBeamSearchPath(OptimizedClusterConfigurationHandler handler) {
+		int width = beamWidth;
+		while(true) {
+			BeamSearchResult result = getBeamSearchPath(handler, width);
+			if(result.path!=null || !result.truncated || width>=maxBeamWidth) return result.path;
+			width = width>(maxBeamWidth>>>1) ? maxBeamWidth : (width<<1);
+		}
+	}
+
+	/**
+	 * The result of one beam search of a given width.
+	 */
+	private static class BeamSearchResult {
+
+		/**
+		 * The path to an optimal configuration or <code>null</code> if none found.
+		 */
+		private final ListElement path;
+
+		/**
+		 * Whether any layer was cut to the beam width.  When not, every configuration
+		 * within maxPathLen was explored, so a wider beam cannot find a path.
+		 */
+		private final boolean truncated;
+
+		private BeamSearchResult(ListElement path, boolean truncated) {
+			this.path = path;
+			this.truncated = truncated;
+		}
+	}
+
+	/**
+	 * Performs one beam search of the provided width.  Because each layer is one
+	 * transition longer than the previous, the first optimal configuration found
+	 * is on a shortest path within the beam.  The handler is notified of this path,
+	 * but the search ends either way since no shorter path can be found.
+	 *
+	 * @return  the path to the optimal configuration with the lowest heuristic in
+	 *          the first layer containing any optimal configuration, or a <code>null</code>
+	 *          path if the beam dies out or reaches maxPathLen, along with whether
+	 *          any layer was cut to the width
+	 */
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	private BeamSearchResult getBeamSearchPath(OptimizedClusterConfigurationHandler handler, int width) {
+		// Reused inside loop below
+		List<ClusterConfiguration> children = new ArrayList<>();
+		List<Transition> childTransitions = new ArrayList<>();
+		BitSet childrenHaveCritical = new BitSet();
+		BitSet childrenAreOptimal = new BitSet();
+		AlertLevel analysisAlertLevel = getAnalysisAlertLevel(heuristicFunction);
+		Dom0ScoreCache dom0ScoreCache = new Dom0ScoreCache(DOM0_SCORE_CACHE_SIZE);
+		MoveSecondaryCache moveSecondaryCache = new MoveSecondaryCache(MOVE_SECONDARY_CACHE_SIZE);
+
+		long loopCounter = 0;
+		ListElement start = new ListElement(
+			null,
+			null,
+			clusterConfiguration,
+			heuristicFunction.getHeuristic(clusterConfiguration, 0)
+		);
+		if(clusterConfiguration.getClusterScore().isOptimal()) {
+			if(handler!=null) handler.handleOptimizedClusterConfiguration(start, 1);
+			return new BeamSearchResult(start, false);
+		}
+
+		boolean truncated = false;
+		List<ListElement> layer = new ArrayList<>();
+		layer.add(start);
+		Map<ClusterConfiguration, ListElement> layerMap = new HashMap<>();
+		layerMap.put(clusterConfiguration, start);
+		Map<ClusterConfiguration, ListElement> previousLayerMap = new HashMap<>();
+		long lastDisplayTime = System.currentTimeMillis();
+		for(int pathLen = 1; maxPathLen==-1 || pathLen<=maxPathLen; pathLen++) {
+			// Generate the next layer, skipping anything already in the previous or current layers
+			Map<ClusterConfiguration, ListElement> nextLayerMap = new HashMap<>();
+			// The elements of the next layer found optimal while analyzing the children
+			Set<ListElement> optimalElements = new HashSet<>();
+			for(ListElement X : layer) {
+				IncrementalAnalysis analysisX = new IncrementalAnalysis(X.clusterConfiguration, analysisAlertLevel, dom0ScoreCache);
+				boolean xEndsCritical = allowPathThroughCritical ? true : analysisX.getClusterScore().hasCritical();
+				double[] childHeuristics;
+				if(forkJoinPool==null) {
+					generateChildren(X.clusterConfiguration, children, childTransitions, moveSecondaryCache, randomizeChildren);
+					childHeuristics = null;
+				} else {
+					childHeuristics = generateChildren(forkJoinPool, analysisX, children, childTransitions, xEndsCritical ? null : childrenHaveCritical, childrenAreOptimal, heuristicFunction, pathLen, moveSecondaryCache, randomizeChildren);
+				}
+				for(int i=0, size=children.size(); i<size; i++) {
+					ClusterConfiguration child = children.get(i);
+					if(
+						!previousLayerMap.containsKey(child)
+						&& !layerMap.containsKey(child)
+						&& !nextLayerMap.containsKey(child)
+					) {
+						ClusterScore childScore = forkJoinPool!=null ? null : childTransitions.get(i).analyze(analysisX, child).getClusterScore();
+						// Don't keep any path that has a transition from not having any critical to have at least one critical
+						boolean childHasCritical =
+							allowPathThroughCritical ? false
+							: forkJoinPool==null ? childScore.hasCritical()
+							: xEndsCritical ? false // Not analyzed in parallel since not needed
+							: childrenHaveCritical.get(i);
+						if(xEndsCritical || !childHasCritical) {
+							ListElement childElement = new ListElement(
+								X,
+								childTransitions.get(i),
+								child,
+								forkJoinPool==null ? heuristicFunction.getHeuristic(child, childScore, pathLen) : childHeuristics[i]
+							);
+							nextLayerMap.put(child, childElement);
+							if(forkJoinPool==null ? childScore.isOptimal() : childrenAreOptimal.get(i)) optimalElements.add(childElement);
+						}
+					}
+				}
+				loopCounter++;
+			}
+			if(nextLayerMap.isEmpty()) return new BeamSearchResult(null, truncated);
+
+			// Keep the best of the layer
+			List<ListElement> nextLayer = new ArrayList<>(nextLayerMap.values());
+			Collections.sort(nextLayer);
+			for(ListElement listElement : nextLayer) {
+				if(optimalElements.contains(listElement)) {
+					if(handler!=null) handler.handleOptimizedClusterConfiguration(listElement, loopCounter);
+					return new BeamSearchResult(listElement, truncated);
+				}
+			}
+			if(nextLayer.size()>width) {
+				truncated = true;
+				nextLayer = new ArrayList<>(nextLayer.subList(0, width));
+				nextLayerMap.clear();
+				for(ListElement listElement : nextLayer) {
+					nextLayerMap.put(listElement.clusterConfiguration, listElement);
+				}
+			}
+			long currentTime = System.currentTimeMillis();
+			long timeSince = currentTime - lastDisplayTime;
+			if(timeSince<0 || timeSince>=60000) {
+				System.out.println(
+					"        beamWidth:"+width
+					+ " transitions:"+pathLen
+					+ " heuristic:"+nextLayer.get(0).heuristic
+					+ " expanded:"+loopCounter
+					+ " dom0ScoreHitRate:"+dom0ScoreCache.getHitRate()
+					+ " moveSecondaryHitRate:"+moveSecondaryCache.getHitRate()
+				);
+				lastDisplayTime = currentTime;
+			}
+			previousLayerMap = layerMap;
+			layer = nextLayer;
+			layerMap = nextLayerMap;
+		}
+		return new BeamSearchResult(null, truncated);
+	}
+
 	private static final Random fastRandom = new Random(IoUtils.bufferToLong(new SecureRandom().generateSeed(8)));
 
-	private void generateChildren(ClusterConfiguration clusterConfiguration, List<ClusterConfiguration> children, List<Transition> childTransitions, boolean randomizeChildren) {
+	/**
+	 * Generates all of the children of the provided configuration, along with the transition to reach each.
+	 * The provided lists are cleared before use.
+	 *
+	 * @param  moveSecondaryCache  the optional cache of secondary moves, may be <code>null</code>
+	 */
+	static void generateChildren(ClusterConfiguration clusterConfiguration, List<ClusterConfiguration> children, List<Transition> childTransitions, MoveSecondaryCache moveSecondaryCache, boolean randomizeChildren) {
 		children.clear();
 		childTransitions.clear();
 
@@ -300,51 +745,19 @@ public class ClusterOptimizer {
 			if(!domU.isSecondaryDom0Locked()) {
 				Dom0 primaryDom0 = domUConfiguration.getPrimaryDom0();
 				Dom0 secondaryDom0 = domUConfiguration.getSecondaryDom0();
-				if(
-					!domU.isPrimaryDom0Locked()
-					// TODO: Don't hard-code these
-					&& !secondaryDom0.getHostname().equals("gw1.fc.aoindustries.com")
-					&& !secondaryDom0.getHostname().equals("gw2.fc.aoindustries.com")
-				) {
+				if(canLiveMigrate(domUConfiguration)) {
 					// Can't swap if either primary or secondary is locked
 					ClusterConfiguration swappedClusterConfiguration = clusterConfiguration.liveMigrate(domU);
 					Transition transition = new MigrateTransition(domU, primaryDom0, secondaryDom0);
-					int size = children.size();
-					if(randomizeChildren && size!=0) {
-						// It may be faster to build the list and randomize at the end instead of incuring the overhead of inserting into an ArrayList
-						// However, since the two lists children and childrenTransitions need to be kept in sync, a simple call to
-						// Collections.shuffle will not work
-						int index = fastRandom.nextInt(size+1);
-						children.add(index, swappedClusterConfiguration);
-						childTransitions.add(index, transition);
-					} else {
-						children.add(swappedClusterConfiguration);
-						childTransitions.add(transition);
-					}
+					addChild(children, childTransitions, swappedClusterConfiguration, transition, randomizeChildren);
 				}
 
 				for(Map.Entry<String, Dom0> entry : clusterConfiguration.getCluster().getDom0s().entrySet()) {
-					String dom0Hostname = entry.getKey();
 					Dom0 dom0 = entry.getValue();
-					// Can't move to current primary or secondary
-					if(
-						!dom0.equals(primaryDom0)
-						&& !dom0.equals(secondaryDom0)
-						// TODO: Don't hard-code these
-						&& !dom0Hostname.equals("gw1.fc.aoindustries.com")
-						&& !dom0Hostname.equals("gw2.fc.aoindustries.com")
-					) {
-						for(ClusterConfiguration movedClusterConfiguration : clusterConfiguration.moveSecondary(domU, dom0)) {
-							Transition transition = new MoveSecondaryTransition(domU, secondaryDom0, dom0);
-							int size = children.size();
-							if(randomizeChildren && size!=0) {
-								int index = fastRandom.nextInt(size+1);
-								children.add(index, movedClusterConfiguration);
-								childTransitions.add(index, transition);
-							} else {
-								children.add(movedClusterConfiguration);
-								childTransitions.add(transition);
-							}
+					if(canMoveSecondary(domUConfiguration, entry.getKey(), dom0)) {
+						for(ClusterConfiguration movedClusterConfiguration : clusterConfiguration.moveSecondary(domU, dom0, moveSecondaryCache)) {
+							Transition transition = new MoveSecondaryTransition(domU, secondaryDom0, dom0, movedClusterConfiguration.getDomUConfiguration(domU));
+							addChild(children, childTransitions, movedClusterConfiguration, transition, randomizeChildren);
 						}
 					}
 				}
@@ -352,6 +765,233 @@ public class ClusterOptimizer {
 		}
 	}
 
+	/**
+	 * Gets the alert level to analyze configurations at, which is LOW to determine whether
+	 * each is optimal, or lower when needed by the heuristic function.
+	 */
+	static AlertLevel getAnalysisAlertLevel(HeuristicFunction heuristicFunction) {
+		AlertLevel alertLevel = heuristicFunction.getMinimumAlertLevel();
+		return alertLevel.compareTo(AlertLevel.LOW)<0 ? alertLevel : AlertLevel.LOW;
+	}
+
+	/**
+	 * Generates the same children as {@link #generateChildren(com.aoindustries.aoserv.cluster.ClusterConfiguration, java.util.List, java.util.List, com.aoindustries.aoserv.cluster.MoveSecondaryCache, boolean)},
+	 * but with one task per DomU and target Dom0 run in the provided pool.  The
+	 * results of the tasks are merged in order, so the children are in the same
+	 * order as when generated serially, unless randomized.
+	 *
+	 * @param  analysis              the analysis of the configuration to generate the children of, from which
+	 *                               the children are analyzed incrementally
+	 * @param  childrenHaveCritical  when not <code>null</code>, set to whether each child has any critical result
+	 * @param  childrenAreOptimal    when not <code>null</code>, set to whether each child is optimal
+	 * @param  g                     the number of moves to each child, passed to the heuristic function
+	 *
+	 * @return  the heuristic of each child, which is not evaluated for children with any critical result
+	 *          when <code>childrenHaveCritical</code> is provided
+	 */
+	static double[] generateChildren(ForkJoinPool forkJoinPool, IncrementalAnalysis analysis, List<ClusterConfiguration> children, List<Transition> childTransitions, BitSet childrenHaveCritical, BitSet childrenAreOptimal, HeuristicFunction heuristicFunction, int g, MoveSecondaryCache moveSecondaryCache, boolean randomizeChildren) {
+		ClusterConfiguration clusterConfiguration = analysis.getClusterConfiguration();
+		children.clear();
+		childTransitions.clear();
+		if(childrenHaveCritical!=null) childrenHaveCritical.clear();
+		if(childrenAreOptimal!=null) childrenAreOptimal.clear();
+
+		// Find the tasks, a null target Dom0 meaning to swap the primary and secondary
+		List<DomUConfiguration> taskDomUConfigurations = new ArrayList<>();
+		List<Dom0> taskDom0s = new ArrayList<>();
+		for(DomUConfiguration domUConfiguration : clusterConfiguration.getDomUConfigurations()) {
+			if(!domUConfiguration.getDomU().isSecondaryDom0Locked()) {
+				if(canLiveMigrate(domUConfiguration)) {
+					taskDomUConfigurations.add(domUConfiguration);
+					taskDom0s.add(null);
+				}
+				for(Map.Entry<String, Dom0> entry : clusterConfiguration.getCluster().getDom0s().entrySet()) {
+					Dom0 dom0 = entry.getValue();
+					if(canMoveSecondary(domUConfiguration, entry.getKey(), dom0)) {
+						taskDomUConfigurations.add(domUConfiguration);
+						taskDom0s.add(dom0);
+					}
+				}
+			}
+		}
+		int numTasks = taskDom0s.size();
+		if(numTasks==0) return new double[0];
+		ChildrenTask[] tasks = new ChildrenTask[numTasks];
+		int numChildren = 0;
+		for(int i=0; i<numTasks; i++) {
+			tasks[i] = new ChildrenTask(analysis, taskDomUConfigurations.get(i), taskDom0s.get(i), childrenHaveCritical!=null, heuristicFunction, g, moveSecondaryCache);
+		}
+		forkJoinPool.invoke(new ChildrenTasks(tasks, 0, numTasks));
+
+		// Merge in order
+		for(ChildrenTask task : tasks) numChildren += task.children.size();
+		double[] heuristics = new double[numChildren];
+		for(ChildrenTask task : tasks) {
+			for(int i=0, size=task.children.size(); i<size; i++) {
+				if(childrenHaveCritical!=null && task.childrenHaveCritical.get(i)) childrenHaveCritical.set(children.size());
+				if(childrenAreOptimal!=null && task.childrenAreOptimal.get(i)) childrenAreOptimal.set(children.size());
+				heuristics[children.size()] = task.heuristics[i];
+				children.add(task.children.get(i));
+				childTransitions.add(task.childTransitions.get(i));
+			}
+		}
+		if(randomizeChildren) {
+			// Shuffle all together
+			for(int i=numChildren-1; i>0; i--) {
+				int j = fastRandom.nextInt(i + 1);
+				if(j!=i) {
+					Collections.swap(children, i, j);
+					Collections.swap(childTransitions, i, j);
+					double heuristic = heuristics[i];
+					heuristics[i] = heuristics[j];
+					heuristics[j] = heuristic;
+					if(childrenHaveCritical!=null) {
+						boolean hasCritical = childrenHaveCritical.get(i);
+						childrenHaveCritical.set(i, childrenHaveCritical.get(j));
+						childrenHaveCritical.set(j, hasCritical);
+					}
+					if(childrenAreOptimal!=null) {
+						boolean isOptimal = childrenAreOptimal.get(i);
+						childrenAreOptimal.set(i, childrenAreOptimal.get(j));
+						childrenAreOptimal.set(j, isOptimal);
+					}
+				}
+			}
+		}
+		return heuristics;
+	}
+
+	/**
+	 * Generates the children of one DomU, either swapping its primary and secondary
+	 * or moving its secondary to one Dom0, along with the heuristic of each child.
+	 */
+	private static class ChildrenTask {
+
+		private final IncrementalAnalysis analysis;
+		private final DomUConfiguration domUConfiguration;
+		private final Dom0 dom0;
+		private final boolean analyzeCritical;
+		private final HeuristicFunction heuristicFunction;
+		private final int g;
+		private final MoveSecondaryCache moveSecondaryCache;
+
+		private final List<ClusterConfiguration> children = new ArrayList<>();
+		private final List<Transition> childTransitions = new ArrayList<>();
+		private final BitSet childrenHaveCritical = new BitSet();
+		private final BitSet childrenAreOptimal = new BitSet();
+		private double[] heuristics;
+
+		private ChildrenTask(IncrementalAnalysis analysis, DomUConfiguration domUConfiguration, Dom0 dom0, boolean analyzeCritical, HeuristicFunction heuristicFunction, int g, MoveSecondaryCache moveSecondaryCache) {
+			this.analysis = analysis;
+			this.domUConfiguration = domUConfiguration;
+			this.dom0 = dom0;
+			this.analyzeCritical = analyzeCritical;
+			this.heuristicFunction = heuristicFunction;
+			this.g = g;
+			this.moveSecondaryCache = moveSecondaryCache;
+		}
+
+		private void compute() {
+			ClusterConfiguration clusterConfiguration = analysis.getClusterConfiguration();
+			DomU domU = domUConfiguration.getDomU();
+			if(dom0==null) {
+				children.add(clusterConfiguration.liveMigrate(domU));
+				childTransitions.add(new MigrateTransition(domU, domUConfiguration.getPrimaryDom0(), domUConfiguration.getSecondaryDom0()));
+			} else {
+				for(ClusterConfiguration movedClusterConfiguration : clusterConfiguration.moveSecondary(domU, dom0, moveSecondaryCache)) {
+					children.add(movedClusterConfiguration);
+					childTransitions.add(new MoveSecondaryTransition(domU, domUConfiguration.getSecondaryDom0(), dom0, movedClusterConfiguration.getDomUConfiguration(domU)));
+				}
+			}
+			int size = children.size();
+			heuristics = new double[size];
+			for(int i=0; i<size; i++) {
+				ClusterConfiguration child = children.get(i);
+				ClusterScore childScore = childTransitions.get(i).analyze(analysis, child).getClusterScore();
+				if(childScore.isOptimal()) childrenAreOptimal.set(i);
+				if(analyzeCritical && childScore.hasCritical()) {
+					// Will not be kept
+					childrenHaveCritical.set(i);
+					heuristics[i] = Double.NaN;
+				} else {
+					heuristics[i] = heuristicFunction.getHeuristic(child, childScore, g);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Recursively splits a range of tasks in half until only one task remains.
+	 */
+	private static class ChildrenTasks extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ChildrenTask[] tasks;
+		private final int from;
+		private final int to;
+
+		private ChildrenTasks(ChildrenTask[] tasks, int from, int to) {
+			this.tasks = tasks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if((to - from)==1) {
+				tasks[from].compute();
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(
+					new ChildrenTasks(tasks, from, mid),
+					new ChildrenTasks(tasks, mid, to)
+				);
+			}
+		}
+	}
+
+	/**
+	 * Swapping is not possible when either the primary or secondary is locked.
+	 */
+	private static boolean canLiveMigrate(DomUConfiguration domUConfiguration) {
+		Dom0 secondaryDom0 = domUConfiguration.getSecondaryDom0();
+		return
+			!domUConfiguration.getDomU().isPrimaryDom0Locked()
+			// TODO: Don't hard-code these
+			&& !secondaryDom0.getHostname().equals("gw1.fc.aoindustries.com")
+			&& !secondaryDom0.getHostname().equals("gw2.fc.aoindustries.com")
+		;
+	}
+
+	/**
+	 * Can't move to current primary or secondary.
+	 */
+	private static boolean canMoveSecondary(DomUConfiguration domUConfiguration, String dom0Hostname, Dom0 dom0) {
+		return
+			!dom0.equals(domUConfiguration.getPrimaryDom0())
+			&& !dom0.equals(domUConfiguration.getSecondaryDom0())
+			// TODO: Don't hard-code these
+			&& !dom0Hostname.equals("gw1.fc.aoindustries.com")
+			&& !dom0Hostname.equals("gw2.fc.aoindustries.com")
+		;
+	}
+
+	private static void addChild(List<ClusterConfiguration> children, List<Transition> childTransitions, ClusterConfiguration child, Transition transition, boolean randomizeChildren) {
+		int size = children.size();
+		if(randomizeChildren && size!=0) {
+			// It may be faster to build the list and randomize at the end instead of incuring the overhead of inserting into an ArrayList
+			// However, since the two lists children and childrenTransitions need to be kept in sync, a simple call to
+			// Collections.shuffle will not work
+			int index = fastRandom.nextInt(size+1);
+			children.add(index, child);
+			childTransitions.add(index, transition);
+		} else {
+			children.add(child);
+			childTransitions.add(transition);
+		}
+	}
+
 	/**
 	 * Gets the starting clusterConfiguration.
 	 */
@@ -384,4 +1024,80 @@ public class ClusterOptimizer {
 	public boolean getRandomizeChildren() {
 		return randomizeChildren;
 	}
+
+	/**
+	 * Gets the maximum number of transitions in any path or <code>-1</code> for no limit.
+	 *
+	 * @see  #withMaxPathLen(int)
+	 */
+	public int getMaxPathLen() {
+		return maxPathLen;
+	}
+
+	/**
+	 * Gets the initial number of configurations kept per layer or <code>0</code> when
+	 * performing a best-first search.
+	 *
+	 * @see  #withBeamWidth(int, int)
+	 */
+	public int getBeamWidth() {
+		return beamWidth;
+	}
+
+	/**
+	 * Gets the widest beam that will be tried.
+	 *
+	 * @see  #withBeamWidth(int, int)
+	 */
+	public int getMaxBeamWidth() {
+		return maxBeamWidth;
+	}
+
+	/**
+	 * Gets whether the closed list of the best-first search is stored off-heap.
+	 *
+	 * @see  #withOffHeapClosedList(boolean)
+	 */
+	public boolean getOffHeapClosedList() {
+		return offHeapClosedList;
+	}
+
+	/**
+	 * Gets the path length interval between stored configurations, <code>1</code> when
+	 * every configuration is stored.
+	 *
+	 * @see  #withMaterializeInterval(int)
+	 */
+	public int getMaterializeInterval() {
+		return materializeInterval;
+	}
+
+	/**
+	 * Gets the directory for the temporary files of the search or <code>null</code> when
+	 * searching in the heap.
+	 *
+	 * @see  #withExternalMemory(java.io.File, int)
+	 */
+	public File getExternalMemoryDirectory() {
+		return externalMemoryDirectory;
+	}
+
+	/**
+	 * Gets the number of open elements or closed fingerprints kept in the heap when
+	 * searching in external memory, or <code>0</code> when searching in the heap.
+	 *
+	 * @see  #withExternalMemory(java.io.File, int)
+	 */
+	public int getMaxFrontier() {
+		return maxFrontier;
+	}
+
+	/**
+	 * Gets the pool used to generate children or <code>null</code> when generated serially.
+	 *
+	 * @see  #withForkJoinPool(java.util.concurrent.ForkJoinPool)
+	 */
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
 }
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,18 +22,12 @@
  */
 package com.aoindustries.aoserv.cluster.optimize;
 
-import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
-import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
-import com.aoindustries.aoserv.cluster.analyze.Result;
-import com.aoindustries.aoserv.cluster.analyze.ResultHandler;
 
 /**
  * Adds up all the non-optimal states of the analyzed cluster giving more weight
  * to higher level problems.  Adds in <code>g</code> to prefer shorter paths.
  * 
- * This is not thread safe.
- * 
  * The values are:
  * <pre>
  * NONE = 0
@@ -45,44 +39,33 @@ import com.aoindustries.aoserv.cluster.analyze.ResultHandler;
  *
  * @author  AO Industries, Inc.
  */
-public class ExponentialHeuristicFunction implements HeuristicFunction, ResultHandler<Object> {
+public class ExponentialHeuristicFunction extends SumHeuristicFunction {
 
-	private long total;
+	public ExponentialHeuristicFunction() {
+		super(AlertLevel.LOW);
+	}
 
 	@Override
-	public double getHeuristic(ClusterConfiguration clusterConfiguration, int g) {
-		AnalyzedClusterConfiguration analysis = new AnalyzedClusterConfiguration(clusterConfiguration);
-
+	protected double getPathCost(int g) {
 		// Include g to prefer shorter paths
-		total = g;
-
-		// Add each result
-		analysis.getAllResults(this, AlertLevel.LOW);
-
-		return total;
+		return g;
 	}
 
 	@Override
-	public boolean handleResult(Result<?> result) {
-		AlertLevel alertLevel = result.getAlertLevel();
+	protected double getCost(AlertLevel alertLevel, int count, double deviationSum) {
 		switch(alertLevel) {
 			case NONE :
 				throw new AssertionError("Should only get non-optimal results");
 			case LOW :
-				total += 4;
-				break;
+				return 4 * count;
 			case MEDIUM :
-				total += 8;
-				break;
+				return 8 * count;
 			case HIGH :
-				total += 16;
-				break;
+				return 16 * count;
 			case CRITICAL :
-				total += 1024; // Try to avoid this at all costs
-				break;
+				return 1024 * count; // Try to avoid this at all costs
 			default :
 				throw new AssertionError("Unexpected value for alertLevel: "+alertLevel);
 		}
-		return true;
 	}
 }
@@ -0,0 +1,373 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The closed list of an external-memory search.  New fingerprints are added to an
+ * in-memory {@link ClosedList}.  Once it holds <code>maxBuffered</code> entries, it
+ * is written to a new run file, sorted by fingerprint, and searched by binary search
+ * through a memory mapping.  Whenever there are {@link #MERGE_RUNS} or more runs,
+ * the smallest are merged into one run by a background thread, keeping the
+ * number of runs logarithmic in the number of entries.
+ *
+ * Entries are never removed.  A configuration closed again by a shorter path is
+ * added again, and lookups return the shortest path length found in any run.
+ *
+ * The runs may be merged concurrently, but otherwise this is not thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+class ExternalClosedList implements AutoCloseable {
+
+	private static final int MERGE_RUNS = 4;
+
+	private static final int SLOT_SIZE = 3;
+
+	/**
+	 * The most entries in one run, limited by the size of a single memory mapping.
+	 */
+	private static final int MAX_RUN_COUNT = Integer.MAX_VALUE / (SLOT_SIZE * Long.BYTES);
+
+	/**
+	 * One sorted run of entries.
+	 */
+	private static class Run {
+
+		private final Path file;
+		private final LongBuffer entries;
+		private final int count;
+
+		private Run(Path file, LongBuffer entries, int count) {
+			this.file = file;
+			this.entries = entries;
+			this.count = count;
+		}
+
+		/**
+		 * Gets the path length for the provided fingerprint or <code>-1</code> if not in this run.
+		 */
+		private int get(long high, long low) {
+			int lowIndex = 0;
+			int highIndex = count - 1;
+			while(lowIndex<=highIndex) {
+				int mid = (lowIndex + highIndex) >>> 1;
+				int pos = mid * SLOT_SIZE;
+				int diff = compare(entries.get(pos), entries.get(pos + 1), high, low);
+				if(diff<0) lowIndex = mid + 1;
+				else if(diff>0) highIndex = mid - 1;
+				else return (int)entries.get(pos + 2);
+			}
+			return -1;
+		}
+	}
+
+	private static int compare(long high1, long low1, long high2, long low2) {
+		int diff = Long.compare(high1, high2);
+		return diff!=0 ? diff : Long.compare(low1, low2);
+	}
+
+	private final Path directory;
+	private final int maxBuffered;
+	private ClosedList buffer = new ClosedList(false);
+	private final AtomicLong runCounter = new AtomicLong();
+	private final ExecutorService merger = Executors.newSingleThreadExecutor(
+		(Runnable r) -> {
+			Thread thread = new Thread(r, ExternalClosedList.class.getName()+".merger");
+			thread.setDaemon(true);
+			return thread;
+		}
+	);
+
+	/**
+	 * Replaced as a whole, never modified.
+	 */
+	private volatile List<Run> runs = Collections.emptyList();
+	private final Object runsLock = new Object();
+
+	private boolean merging;
+	private volatile Throwable mergeFailure;
+
+	ExternalClosedList(Path directory, int maxBuffered) {
+		this.directory = directory;
+		this.maxBuffered = maxBuffered;
+	}
+
+	private void checkMergeFailure() {
+		Throwable t = mergeFailure;
+		if(t!=null) {
+			if(t instanceof IOException) throw new UncheckedIOException((IOException)t);
+			if(t instanceof Error) throw (Error)t;
+			throw (RuntimeException)t;
+		}
+	}
+
+	/**
+	 * The number of entries, including any fingerprints closed more than once.
+	 */
+	long size() {
+		long size = buffer.size();
+		for(Run run : runs) size += run.count;
+		return size;
+	}
+
+	/**
+	 * The number of runs currently on disk.
+	 */
+	int getRunCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Gets the shortest path length stored for the provided fingerprint or <code>-1</code> if not on the closed list.
+	 */
+	int get(long high, long low) {
+		checkMergeFailure();
+		int pathLen = buffer.get(high, low);
+		for(Run run : runs) {
+			int runPathLen = run.get(high, low);
+			if(runPathLen!=-1 && (pathLen==-1 || runPathLen<pathLen)) pathLen = runPathLen;
+		}
+		return pathLen;
+	}
+
+	/**
+	 * Adds a fingerprint to the closed list.
+	 */
+	void put(long high, long low, int pathLen) {
+		checkMergeFailure();
+		buffer.put(high, low, pathLen);
+		if(buffer.size()>=maxBuffered) flush();
+	}
+
+	/**
+	 * Writes the buffer to a new run.
+	 */
+	private void flush() {
+		long[] entries = buffer.toArray();
+		buffer = new ClosedList(false);
+		sort(entries);
+		try {
+			Run run = writeRun(entries, entries.length / SLOT_SIZE);
+			synchronized(runsLock) {
+				List<Run> newRuns = new ArrayList<>(runs.size() + 1);
+				newRuns.addAll(runs);
+				newRuns.add(run);
+				runs = Collections.unmodifiableList(newRuns);
+				startMerge();
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates a new run file with room for the provided number of entries.
+	 */
+	private LongBuffer createRun(Path file, int capacity) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long)capacity * SLOT_SIZE * Long.BYTES);
+			return mapped.asLongBuffer();
+		}
+	}
+
+	private Run writeRun(long[] entries, int count) throws IOException {
+		Path file = directory.resolve("closed-"+runCounter.getAndIncrement()+".bin");
+		LongBuffer longs = createRun(file, count);
+		longs.put(entries, 0, count * SLOT_SIZE);
+		return new Run(file, longs, count);
+	}
+
+	/**
+	 * Starts a background merge of the smallest runs when there are enough runs
+	 * and no merge is already running.  Must hold runsLock.
+	 */
+	private void startMerge() {
+		assert Thread.holdsLock(runsLock);
+		if(!merging && runs.size()>=MERGE_RUNS) {
+			List<Run> sorted = new ArrayList<>(runs);
+			sorted.sort(Comparator.comparingInt((Run run) -> run.count));
+			List<Run> selected = new ArrayList<>(sorted.subList(0, MERGE_RUNS));
+			long total = 0;
+			for(Run run : selected) total += run.count;
+			// Runs that have reached the size limit are left as-is
+			if(total>MAX_RUN_COUNT) return;
+			int mergedCapacity = (int)total;
+			merging = true;
+			merger.submit(() -> {
+				try {
+					Run merged = merge(selected, mergedCapacity);
+					synchronized(runsLock) {
+						List<Run> newRuns = new ArrayList<>(runs);
+						newRuns.removeAll(selected);
+						newRuns.add(merged);
+						runs = Collections.unmodifiableList(newRuns);
+						merging = false;
+						// Existing mappings remain readable after their files are deleted
+						for(Run run : selected) Files.deleteIfExists(run.file);
+						startMerge();
+					}
+				} catch(Throwable t) {
+					mergeFailure = t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Merges sorted runs into one, keeping the shortest path length of any fingerprint
+	 * found in more than one run.  The merged entries are written directly to the new
+	 * run file, which is deleted when the merge fails or is interrupted.
+	 */
+	private Run merge(List<Run> toMerge, int total) throws IOException {
+		Path file = directory.resolve("closed-"+runCounter.getAndIncrement()+".bin");
+		try {
+			return merge(toMerge, total, file);
+		} catch(Throwable t) {
+			try {
+				Files.deleteIfExists(file);
+			} catch(IOException e) {
+				t.addSuppressed(e);
+			}
+			throw t;
+		}
+	}
+
+	private Run merge(List<Run> toMerge, int total, Path file) throws IOException {
+		LongBuffer merged = createRun(file, total);
+		int[] positions = new int[toMerge.size()];
+		int count = 0;
+		while(true) {
+			// Find the lowest fingerprint among the heads of the runs
+			int lowestRun = -1;
+			long lowestHigh = 0;
+			long lowestLow = 0;
+			for(int i=0; i<positions.length; i++) {
+				Run run = toMerge.get(i);
+				if(positions[i]<run.count) {
+					int pos = positions[i] * SLOT_SIZE;
+					long h = run.entries.get(pos);
+					long l = run.entries.get(pos + 1);
+					if(lowestRun==-1 || compare(h, l, lowestHigh, lowestLow)<0) {
+						lowestRun = i;
+						lowestHigh = h;
+						lowestLow = l;
+					}
+				}
+			}
+			if(lowestRun==-1) break;
+			// Stop promptly when closed
+			if((count & 0xfff)==0 && Thread.interrupted()) throw new InterruptedIOException("Merge interrupted");
+			Run run = toMerge.get(lowestRun);
+			long pathLen = run.entries.get(positions[lowestRun]++ * SLOT_SIZE + 2);
+			int last = (count - 1) * SLOT_SIZE;
+			if(count>0 && merged.get(last)==lowestHigh && merged.get(last + 1)==lowestLow) {
+				if(pathLen<merged.get(last + 2)) merged.put(last + 2, pathLen);
+			} else {
+				int pos = count++ * SLOT_SIZE;
+				merged.put(pos, lowestHigh);
+				merged.put(pos + 1, lowestLow);
+				merged.put(pos + 2, pathLen);
+			}
+		}
+		return new Run(file, merged, count);
+	}
+
+	/**
+	 * Heap sorts the entries by fingerprint, moving each entry as a whole.
+	 */
+	private static void sort(long[] entries) {
+		int count = entries.length / SLOT_SIZE;
+		for(int i=(count >>> 1) - 1; i>=0; i--) siftDown(entries, i, count);
+		for(int end=count - 1; end>0; end--) {
+			swap(entries, 0, end);
+			siftDown(entries, 0, end);
+		}
+	}
+
+	private static void siftDown(long[] entries, int index, int count) {
+		while(true) {
+			int child = (index << 1) + 1;
+			if(child>=count) return;
+			int right = child + 1;
+			if(right<count && compare(entries, right, child)>0) child = right;
+			if(compare(entries, index, child)>=0) return;
+			swap(entries, index, child);
+			index = child;
+		}
+	}
+
+	private static int compare(long[] entries, int i, int j) {
+		int pi = i * SLOT_SIZE;
+		int pj = j * SLOT_SIZE;
+		return compare(entries[pi], entries[pi + 1], entries[pj], entries[pj + 1]);
+	}
+
+	private static void swap(long[] entries, int i, int j) {
+		int pi = i * SLOT_SIZE;
+		int pj = j * SLOT_SIZE;
+		for(int k=0; k<SLOT_SIZE; k++) {
+			long t = entries[pi + k];
+			entries[pi + k] = entries[pj + k];
+			entries[pj + k] = t;
+		}
+	}
+
+	/**
+	 * Stops any background merge, releases the runs, and deletes every run file
+	 * created, including any left by a failed merge.
+	 */
+	@Override
+	public void close() throws IOException {
+		merger.shutdownNow();
+		try {
+			merger.awaitTermination(1, TimeUnit.MINUTES);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized(runsLock) {
+			runs = Collections.emptyList();
+		}
+		for(long i=0, count=runCounter.get(); i<count; i++) {
+			Files.deleteIfExists(directory.resolve("closed-"+i+".bin"));
+		}
+		buffer = new ClosedList(false);
+	}
+}
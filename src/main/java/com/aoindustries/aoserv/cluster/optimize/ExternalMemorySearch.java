@@ -0,0 +1,390 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.Dom0;
+import com.aoindustries.aoserv.cluster.DomU;
+import com.aoindustries.aoserv.cluster.DomUConfiguration;
+import com.aoindustries.aoserv.cluster.MoveSecondaryCache;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
+import com.aoindustries.aoserv.cluster.analyze.Dom0ScoreCache;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A best-first search that keeps its open and closed lists in memory-mapped files,
+ * so the heap only bounds the working frontier instead of every configuration explored.
+ *
+ * Every generated element is appended to a {@link NodeLog}.  The {@link ExternalOpenList}
+ * holds only heuristics and element ids, and the {@link ExternalClosedList} holds only
+ * fingerprints and path lengths.  Configurations are rebuilt when expanded by replaying
+ * the transitions from the nearest recently expanded configuration.
+ *
+ * Duplicates are detected when an element is removed from the open list instead of
+ * when it is added, so a configuration may be on the open list more than once.
+ *
+ * @see  ClusterOptimizer#withExternalMemory(java.io.File, int)
+ *
+ * @author  AO Industries, Inc.
+ */
+class ExternalMemorySearch {
+
+	/**
+	 * The number of recently expanded configurations kept to start rebuilding from.
+	 */
+	private static final int CACHE_SIZE = 1024;
+
+	private final ClusterConfiguration clusterConfiguration;
+	private final HeuristicFunction heuristicFunction;
+	private final boolean allowPathThroughCritical;
+	private final boolean randomizeChildren;
+	private final int maxPathLen;
+	private final File directory;
+	private final int maxFrontier;
+	private final ForkJoinPool forkJoinPool;
+
+	private final DomU[] domUs;
+	private final Map<DomU, Integer> domUIndexes;
+	private final Dom0[] dom0s;
+	private final Map<Dom0, Integer> dom0Indexes;
+
+	ExternalMemorySearch(
+		ClusterConfiguration clusterConfiguration,
+		HeuristicFunction heuristicFunction,
+		boolean allowPathThroughCritical,
+		boolean randomizeChildren,
+		int maxPathLen,
+		File directory,
+		int maxFrontier,
+		ForkJoinPool forkJoinPool
+	) {
+		this.clusterConfiguration = clusterConfiguration;
+		this.heuristicFunction = heuristicFunction;
+		this.allowPathThroughCritical = allowPathThroughCritical;
+		this.randomizeChildren = randomizeChildren;
+		this.maxPathLen = maxPathLen;
+		this.directory = directory;
+		this.maxFrontier = maxFrontier;
+		this.forkJoinPool = forkJoinPool;
+		// Search-local indexes
+		this.domUs = new TreeSet<>(clusterConfiguration.getCluster().getDomUs().values()).toArray(new DomU[0]);
+		this.domUIndexes = new HashMap<>(domUs.length*4/3+1);
+		for(int i=0; i<domUs.length; i++) domUIndexes.put(domUs[i], i);
+		this.dom0s = new TreeSet<>(clusterConfiguration.getCluster().getDom0s().values()).toArray(new Dom0[0]);
+		this.dom0Indexes = new HashMap<>(dom0s.length*4/3+1);
+		for(int i=0; i<dom0s.length; i++) dom0Indexes.put(dom0s[i], i);
+	}
+
+	/**
+	 * Performs the search within a new temporary directory, which is removed once complete.
+	 *
+	 * @see  ClusterOptimizer#getOptimizedClusterConfiguration(com.aoindustries.aoserv.cluster.optimize.OptimizedClusterConfigurationHandler)
+	 */
+	ListElement getOptimizedClusterConfiguration(OptimizedClusterConfigurationHandler handler) {
+		try {
+			Path workDirectory = Files.createTempDirectory(directory.toPath(), ClusterOptimizer.class.getSimpleName()+"-");
+			Throwable primary = null;
+			try {
+				try (
+					NodeLog nodeLog = new NodeLog(workDirectory, NodeLog.getIndexWidth(Math.max(domUs.length, dom0s.length)));
+					ExternalOpenList openList = new ExternalOpenList(workDirectory, maxFrontier);
+					ExternalClosedList closedList = new ExternalClosedList(workDirectory, maxFrontier)
+				) {
+					return getOptimizedClusterConfiguration(handler, nodeLog, openList, closedList);
+				}
+			} catch(Throwable t) {
+				primary = t;
+				throw t;
+			} finally {
+				try {
+					Files.deleteIfExists(workDirectory);
+				} catch(IOException e) {
+					// Do not hide the exception that ended the search
+					if(primary==null) throw e;
+					primary.addSuppressed(e);
+				}
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	private ListElement getOptimizedClusterConfiguration(
+		OptimizedClusterConfigurationHandler handler,
+		NodeLog nodeLog,
+		ExternalOpenList openList,
+		ExternalClosedList closedList
+	) {
+		// Reused inside loop below
+		List<ClusterConfiguration> children = new ArrayList<>();
+		List<Transition> childTransitions = new ArrayList<>();
+		BitSet childrenHaveCritical = new BitSet();
+		AlertLevel analysisAlertLevel = ClusterOptimizer.getAnalysisAlertLevel(heuristicFunction);
+		Dom0ScoreCache dom0ScoreCache = new Dom0ScoreCache(ClusterOptimizer.DOM0_SCORE_CACHE_SIZE);
+		MoveSecondaryCache moveSecondaryCache = new MoveSecondaryCache(ClusterOptimizer.MOVE_SECONDARY_CACHE_SIZE);
+
+		// Return value is stored here upon success or remains null on failure
+		ListElement shortestPath = null;
+
+		Map<Long, ClusterConfiguration> cache = new LinkedHashMap<Long, ClusterConfiguration>(CACHE_SIZE*4/3+1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ClusterConfiguration> eldest) {
+				return size()>CACHE_SIZE;
+			}
+		};
+
+		// Initialize the open list
+		double startHeuristic = heuristicFunction.getHeuristic(clusterConfiguration, 0);
+		openList.add(
+			startHeuristic,
+			nodeLog.append(
+				-1,
+				0,
+				clusterConfiguration.getFingerprintHigh(),
+				clusterConfiguration.getFingerprintLow(),
+				startHeuristic,
+				NodeLog.TYPE_NONE,
+				0,
+				0
+			)
+		);
+
+		long loopCounter = 0;
+		long existingClosedCount = 0;
+		long skipCriticalPathCount = 0;
+		long lastDisplayTime = System.currentTimeMillis();
+		while(!openList.isEmpty()) {
+			long id = openList.remove();
+			int pathLen = nodeLog.getPathLen(id);
+			// Only explore paths shorter than shortestPath
+			if(shortestPath!=null && pathLen>=shortestPath.pathLen) continue;
+			// Skip when already closed by a path no longer than this one
+			long high = nodeLog.getFingerprintHigh(id);
+			long low = nodeLog.getFingerprintLow(id);
+			int closedPathLen = closedList.get(high, low);
+			if(closedPathLen!=-1 && closedPathLen<=pathLen) {
+				existingClosedCount++;
+				continue;
+			}
+			// put X on closed
+			closedList.put(high, low, pathLen);
+			loopCounter++;
+			long currentTime = System.currentTimeMillis();
+			long timeSince = currentTime - lastDisplayTime;
+			if(timeSince<0 || timeSince>=60000) {
+				System.out.println(
+					"        open:"+openList.size()
+					+ " openSegments:"+openList.getSegmentCount()
+					+ " closed:"+closedList.size()
+					+ " closedRuns:"+closedList.getRunCount()
+					+ " nodes:"+nodeLog.size()
+					+ " transitions:"+pathLen
+					+ " heuristic:"+nodeLog.getHeuristic(id)
+					+ " existingClosed:"+existingClosedCount
+					+ " skipCriticalPath:"+skipCriticalPathCount
+					+ " dom0ScoreHitRate:"+dom0ScoreCache.getHitRate()
+					+ " moveSecondaryHitRate:"+moveSecondaryCache.getHitRate()
+				);
+				lastDisplayTime = currentTime;
+			}
+			// Is this the goal?
+			ClusterConfiguration X = getClusterConfiguration(nodeLog, cache, id);
+			IncrementalAnalysis analysisX = new IncrementalAnalysis(X, analysisAlertLevel, dom0ScoreCache);
+			ClusterScore scoreX = analysisX.getClusterScore();
+			if(scoreX.isOptimal()) {
+				shortestPath = getPath(nodeLog, id);
+				if(
+					handler==null
+					|| !handler.handleOptimizedClusterConfiguration(shortestPath, loopCounter)
+				) break;
+			} else if(
+				// generate children of X if depth limit not reached
+				// max depth is determined by any path already found
+				(shortestPath==null || (pathLen+1)<shortestPath.pathLen)
+				&& (maxPathLen==-1 || pathLen<maxPathLen)
+			) {
+				cache.put(id, X);
+				boolean xEndsCritical = allowPathThroughCritical ? true : scoreX.hasCritical();
+				double[] childHeuristics;
+				if(forkJoinPool==null) {
+					ClusterOptimizer.generateChildren(X, children, childTransitions, moveSecondaryCache, randomizeChildren);
+					childHeuristics = null;
+				} else {
+					childHeuristics = ClusterOptimizer.generateChildren(forkJoinPool, analysisX, children, childTransitions, xEndsCritical ? null : childrenHaveCritical, null, heuristicFunction, pathLen+1, moveSecondaryCache, randomizeChildren);
+				}
+				for(int i=0, size=children.size(); i<size; i++) {
+					ClusterConfiguration child = children.get(i);
+					long childHigh = child.getFingerprintHigh();
+					long childLow = child.getFingerprintLow();
+					int childClosedPathLen = closedList.get(childHigh, childLow);
+					if(childClosedPathLen!=-1 && childClosedPathLen<=(pathLen+1)) {
+						existingClosedCount++;
+					} else {
+						// Don't keep any path that has a transition from not having any critical to have at least one critical
+						ClusterScore childScore = forkJoinPool!=null ? null : childTransitions.get(i).analyze(analysisX, child).getClusterScore();
+						boolean childHasCritical =
+							allowPathThroughCritical ? false
+							: forkJoinPool==null ? childScore.hasCritical()
+							: xEndsCritical ? false // Not analyzed in parallel since not needed
+							: childrenHaveCritical.get(i);
+						if(xEndsCritical || !childHasCritical) {
+							double heuristic = forkJoinPool==null ? heuristicFunction.getHeuristic(child, childScore, pathLen+1) : childHeuristics[i];
+							Transition transition = childTransitions.get(i);
+							long childId;
+							if(transition instanceof MigrateTransition) {
+								childId = nodeLog.append(
+									id,
+									pathLen+1,
+									childHigh,
+									childLow,
+									heuristic,
+									NodeLog.TYPE_MIGRATE,
+									domUIndexes.get(((MigrateTransition)transition).getDomU()),
+									0
+								);
+							} else {
+								MoveSecondaryTransition moveSecondary = (MoveSecondaryTransition)transition;
+								childId = nodeLog.append(
+									id,
+									pathLen+1,
+									childHigh,
+									childLow,
+									heuristic,
+									NodeLog.TYPE_MOVE_SECONDARY,
+									domUIndexes.get(moveSecondary.getDomU()),
+									dom0Indexes.get(moveSecondary.getNewSecondaryDom0())
+								);
+							}
+							openList.add(heuristic, childId);
+						} else skipCriticalPathCount++;
+					}
+				}
+			}
+		}
+		return shortestPath;
+	}
+
+	/**
+	 * Rebuilds the configuration of an element, starting from the nearest cached ancestor.
+	 */
+	private ClusterConfiguration getClusterConfiguration(NodeLog nodeLog, Map<Long, ClusterConfiguration> cache, long id) {
+		int pathLen = nodeLog.getPathLen(id);
+		long[] ids = new long[pathLen];
+		int i = pathLen;
+		ClusterConfiguration rebuilt;
+		long current = id;
+		while(true) {
+			if(nodeLog.getPrevious(current)==-1) {
+				rebuilt = clusterConfiguration;
+				break;
+			}
+			rebuilt = cache.get(current);
+			if(rebuilt!=null) break;
+			ids[--i] = current;
+			current = nodeLog.getPrevious(current);
+		}
+		for(; i<pathLen; i++) rebuilt = apply(nodeLog, rebuilt, ids[i]);
+		return rebuilt;
+	}
+
+	/**
+	 * Replays the transition of one element.
+	 */
+	private ClusterConfiguration apply(NodeLog nodeLog, ClusterConfiguration previous, long id) {
+		DomU domU = domUs[nodeLog.getDomUIndex(id)];
+		byte type = nodeLog.getType(id);
+		ClusterConfiguration rebuilt;
+		if(type==NodeLog.TYPE_MIGRATE) {
+			rebuilt = previous.liveMigrate(domU);
+		} else {
+			assert type==NodeLog.TYPE_MOVE_SECONDARY : "Unexpected type: "+type;
+			// Select the mapping with the matching fingerprint
+			long high = nodeLog.getFingerprintHigh(id);
+			long low = nodeLog.getFingerprintLow(id);
+			rebuilt = null;
+			for(ClusterConfiguration moved : previous.moveSecondary(domU, dom0s[nodeLog.getDom0Index(id)])) {
+				if(moved.getFingerprintHigh()==high && moved.getFingerprintLow()==low) {
+					rebuilt = moved;
+					break;
+				}
+			}
+			if(rebuilt==null) throw new AssertionError("No mapping matches the fingerprint of element "+id);
+		}
+		assert rebuilt.getFingerprintHigh()==nodeLog.getFingerprintHigh(id) && rebuilt.getFingerprintLow()==nodeLog.getFingerprintLow(id) : "rebuilt configuration has a different fingerprint";
+		return rebuilt;
+	}
+
+	/**
+	 * Builds the path of materialized elements from the start to the provided element.
+	 */
+	private ListElement getPath(NodeLog nodeLog, long id) {
+		int pathLen = nodeLog.getPathLen(id);
+		long[] ids = new long[pathLen + 1];
+		for(int i=pathLen; i>=0; i--) {
+			ids[i] = id;
+			id = nodeLog.getPrevious(id);
+		}
+		assert id==-1 : "start not reached";
+		ListElement path = new ListElement(null, null, clusterConfiguration, nodeLog.getHeuristic(ids[0]));
+		for(int i=1; i<=pathLen; i++) {
+			ClusterConfiguration previous = path.clusterConfiguration;
+			ClusterConfiguration next = apply(nodeLog, previous, ids[i]);
+			DomU domU = domUs[nodeLog.getDomUIndex(ids[i])];
+			DomUConfiguration previousDomUConfiguration = previous.getDomUConfiguration(domU);
+			Transition transition;
+			if(nodeLog.getType(ids[i])==NodeLog.TYPE_MIGRATE) {
+				transition = new MigrateTransition(
+					domU,
+					previousDomUConfiguration.getPrimaryDom0(),
+					previousDomUConfiguration.getSecondaryDom0()
+				);
+			} else {
+				DomUConfiguration nextDomUConfiguration = next.getDomUConfiguration(domU);
+				transition = new MoveSecondaryTransition(
+					domU,
+					previousDomUConfiguration.getSecondaryDom0(),
+					nextDomUConfiguration.getSecondaryDom0(),
+					nextDomUConfiguration
+				);
+			}
+			path = new ListElement(path, transition, next, nodeLog.getHeuristic(ids[i]));
+		}
+		return path;
+	}
+}
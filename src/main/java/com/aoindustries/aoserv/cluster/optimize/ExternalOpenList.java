@@ -0,0 +1,221 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.PriorityQueue;
+
+/**
+ * The open list of an external-memory search.  Entries are only a heuristic and
+ * the id of an element in the {@link NodeLog}.  Up to <code>maxFrontier</code>
+ * entries are kept in a binary min-heap of primitive arrays.  When the heap is full,
+ * its entries are sorted, the lower half is kept in memory, and the upper half is
+ * spilled to a memory-mapped segment file covering that range of heuristics.
+ * Entries are then removed from either the heap or the head of a segment,
+ * whichever has the lowest heuristic.
+ *
+ * Duplicate entries are not detected here.  They are skipped when removed, once
+ * the element is found on the closed list.
+ *
+ * This is not thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+class ExternalOpenList implements AutoCloseable {
+
+	private static final int ENTRY_BYTES = Double.BYTES + Long.BYTES;
+
+	/**
+	 * One segment of spilled entries, sorted by heuristic.
+	 */
+	private static class Segment implements Comparable<Segment> {
+
+		private final Path file;
+		private final MappedByteBuffer buffer;
+		private final int count;
+		private int next;
+
+		private Segment(Path file, MappedByteBuffer buffer, int count) {
+			this.file = file;
+			this.buffer = buffer;
+			this.count = count;
+		}
+
+		private double getHeuristic() {
+			return buffer.getDouble(next * ENTRY_BYTES);
+		}
+
+		private long getId() {
+			return buffer.getLong(next * ENTRY_BYTES + Double.BYTES);
+		}
+
+		@Override
+		public int compareTo(Segment other) {
+			return Double.compare(getHeuristic(), other.getHeuristic());
+		}
+	}
+
+	private final Path directory;
+	private final int maxFrontier;
+	private final double[] heuristics;
+	private final long[] ids;
+	private int heapSize;
+	private final PriorityQueue<Segment> segments = new PriorityQueue<>();
+	private long segmentCounter;
+	private long spilledSize;
+
+	ExternalOpenList(Path directory, int maxFrontier) {
+		assert maxFrontier>=2 : "maxFrontier<2: "+maxFrontier;
+		this.directory = directory;
+		this.maxFrontier = maxFrontier;
+		this.heuristics = new double[maxFrontier];
+		this.ids = new long[maxFrontier];
+	}
+
+	long size() {
+		return heapSize + spilledSize;
+	}
+
+	boolean isEmpty() {
+		return heapSize==0 && segments.isEmpty();
+	}
+
+	/**
+	 * The number of segments currently on disk.
+	 */
+	int getSegmentCount() {
+		return segments.size();
+	}
+
+	void add(double heuristic, long id) {
+		if(heapSize==maxFrontier) spill();
+		// Sift up
+		int index = heapSize++;
+		while(index>0) {
+			int parent = (index - 1) >>> 1;
+			if(heuristic>=heuristics[parent]) break;
+			heuristics[index] = heuristics[parent];
+			ids[index] = ids[parent];
+			index = parent;
+		}
+		heuristics[index] = heuristic;
+		ids[index] = id;
+	}
+
+	/**
+	 * Removes the entry with the lowest heuristic.
+	 *
+	 * @return  the id of the element
+	 */
+	long remove() {
+		assert !isEmpty() : "open list is empty";
+		Segment segment = segments.peek();
+		if(segment!=null && (heapSize==0 || segment.getHeuristic()<heuristics[0])) {
+			segments.remove();
+			long id = segment.getId();
+			spilledSize--;
+			if(++segment.next<segment.count) {
+				segments.add(segment);
+			} else {
+				try {
+					Files.deleteIfExists(segment.file);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return id;
+		}
+		long id = ids[0];
+		int last = --heapSize;
+		if(last>0) siftDown(heuristics[last], ids[last]);
+		return id;
+	}
+
+	private void siftDown(double heuristic, long id) {
+		int index = 0;
+		int half = heapSize >>> 1;
+		while(index<half) {
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if(right<heapSize && heuristics[right]<heuristics[child]) child = right;
+			if(heuristic<=heuristics[child]) break;
+			heuristics[index] = heuristics[child];
+			ids[index] = ids[child];
+			index = child;
+		}
+		heuristics[index] = heuristic;
+		ids[index] = id;
+	}
+
+	/**
+	 * Sorts the heap, keeping the lower half in memory and writing the upper half
+	 * to a new segment.  A sorted array is already a valid heap.
+	 */
+	private void spill() {
+		int count = heapSize;
+		double[] sortedHeuristics = new double[count];
+		long[] sortedIds = new long[count];
+		for(int i=0; i<count; i++) {
+			sortedHeuristics[i] = heuristics[0];
+			sortedIds[i] = ids[0];
+			int last = --heapSize;
+			if(last>0) siftDown(heuristics[last], ids[last]);
+		}
+		int keep = count >>> 1;
+		System.arraycopy(sortedHeuristics, 0, heuristics, 0, keep);
+		System.arraycopy(sortedIds, 0, ids, 0, keep);
+		heapSize = keep;
+		int spill = count - keep;
+		Path file = directory.resolve("open-"+(segmentCounter++)+".bin");
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long)spill * ENTRY_BYTES);
+			for(int i=0; i<spill; i++) {
+				buffer.putDouble(i * ENTRY_BYTES, sortedHeuristics[keep + i]);
+				buffer.putLong(i * ENTRY_BYTES + Double.BYTES, sortedIds[keep + i]);
+			}
+			segments.add(new Segment(file, buffer, spill));
+			spilledSize += spill;
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Releases the segments and deletes their files.
+	 */
+	@Override
+	public void close() throws IOException {
+		Segment segment;
+		while((segment = segments.poll())!=null) {
+			Files.deleteIfExists(segment.file);
+		}
+		spilledSize = 0;
+		heapSize = 0;
+	}
+}
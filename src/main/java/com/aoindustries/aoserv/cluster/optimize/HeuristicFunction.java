@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,11 +23,16 @@
 package com.aoindustries.aoserv.cluster.optimize;
 
 import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
 
 /**
  * A <code>HeuristicAlgorithm</code> generates a heuristic value for a provided
  * <code>AnalyzedCluster</code>.
  *
+ * Implementations must be thread safe, since a single instance may be called
+ * concurrently by a parallel search or shared by any number of optimizers.
+ *
  * @author  AO Industries, Inc.
  */
 public interface HeuristicFunction {
@@ -43,4 +48,28 @@ public interface HeuristicFunction {
 	 * @return  The estimated number of moves to an optimal state
 	 */
 	double getHeuristic(ClusterConfiguration clusterConfiguration, int g);
+
+	/**
+	 * Estimates the number of moves to an optimal state, given the score already
+	 * computed by the search.  Heuristics that only depend on the score should
+	 * override this to avoid analyzing the configuration again.
+	 *
+	 * @param  clusterScore  The score of the configuration or <code>null</code> when not yet computed.
+	 *
+	 * @see  #getHeuristic(com.aoindustries.aoserv.cluster.ClusterConfiguration, int)
+	 */
+	default double getHeuristic(ClusterConfiguration clusterConfiguration, ClusterScore clusterScore, int g) {
+		return getHeuristic(clusterConfiguration, g);
+	}
+
+	/**
+	 * Gets the lowest alert level of results read from the score.  The searches score
+	 * each child incrementally from its parent at this level, or at LOW when this is
+	 * higher, so the heuristic of a child is found from the Dom0s changed by its transition
+	 * without analyzing the whole child again.  A heuristic that needs more than is in the
+	 * score it is given must fall back to a full analysis of the configuration.
+	 */
+	default AlertLevel getMinimumAlertLevel() {
+		return AlertLevel.LOW;
+	}
 }
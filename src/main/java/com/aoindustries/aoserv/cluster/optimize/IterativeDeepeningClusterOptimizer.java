@@ -0,0 +1,333 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.MoveSecondaryCache;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
+import com.aoindustries.aoserv.cluster.analyze.Dom0ScoreCache;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Optimizes the cluster using an iterative-deepening A* search (IDA*).
+ * </p>
+ * <p>
+ * This explores the same transitions as {@link ClusterOptimizer}, but as a series
+ * of depth-first searches.  Each search only follows configurations with a heuristic
+ * no greater than the current threshold, and the next threshold is the lowest
+ * heuristic that exceeded it.  Only the configurations along the current path are
+ * kept, with the unvisited children of each stored as their transitions and
+ * fingerprints, then rebuilt from their parent when visited.  The heap used is
+ * therefore linear in the path length times the size of a configuration, plus the
+ * path length times the number of children per configuration times the small size
+ * of a transition, instead of growing with every configuration explored.  The cost
+ * is that configurations are expanded again on each iteration, and duplicate
+ * configurations are only detected along the current path.
+ * </p>
+ * <p>
+ * An optional {@link #withMaxPathLen(int) maxPathLen} puts a hard limit on the
+ * depth of the search.
+ * </p>
+ * <p>
+ * An optimizer is immutable.  All setters return a new instance of an optimizer.
+ * </p>
+ *
+ * @see  ClusterOptimizer
+ *
+ * @author  AO Industries, Inc.
+ */
+public class IterativeDeepeningClusterOptimizer {
+
+	private final ClusterConfiguration clusterConfiguration;
+	private final HeuristicFunction heuristicFunction;
+	private final boolean allowPathThroughCritical;
+	private final boolean randomizeChildren;
+	private final int maxPathLen;
+
+	public IterativeDeepeningClusterOptimizer(ClusterConfiguration clusterConfiguration, HeuristicFunction heuristicFunction, boolean allowPathThroughCritical, boolean randomizeChildren) {
+		this(clusterConfiguration, heuristicFunction, allowPathThroughCritical, randomizeChildren, -1);
+	}
+
+	private IterativeDeepeningClusterOptimizer(
+		ClusterConfiguration clusterConfiguration,
+		HeuristicFunction heuristicFunction,
+		boolean allowPathThroughCritical,
+		boolean randomizeChildren,
+		int maxPathLen
+	) {
+		this.clusterConfiguration = clusterConfiguration;
+		this.heuristicFunction = heuristicFunction;
+		this.allowPathThroughCritical = allowPathThroughCritical;
+		this.randomizeChildren = randomizeChildren;
+		this.maxPathLen = maxPathLen;
+	}
+
+	/**
+	 * Limits the number of transitions in any path.  No configuration is expanded
+	 * once its path has reached this length.
+	 *
+	 * @param  maxPathLen  the maximum path length or <code>-1</code> for no limit
+	 *
+	 * @return  a new optimizer with the limit applied
+	 */
+	public IterativeDeepeningClusterOptimizer withMaxPathLen(int maxPathLen) {
+		if(maxPathLen<-1) throw new IllegalArgumentException("maxPathLen should be -1 or >=0: "+maxPathLen);
+		return new IterativeDeepeningClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen
+		);
+	}
+
+	public int getMaxPathLen() {
+		return maxPathLen;
+	}
+
+	/**
+	 * Optimizes the cluster and returns the path to the first optimal configuration found or <code>null</code> if no
+	 * optimal configuration was found.
+	 */
+	public ListElement getOptimizedClusterConfiguration() {
+		return getOptimizedClusterConfiguration(null);
+	}
+
+	/**
+	 * Optimizes the cluster and returns the best path (possibly limited by an OptimizedResultHandler)
+	 * or <code>null</code> if no optimal configuration was found.
+	 *
+	 * Once a path is found, and the handler asks to continue, only shorter paths
+	 * are explored for the rest of the search.
+	 *
+	 * Without a handler or <code>maxPathLen</code>, this will not return until an
+	 * optimal configuration is found.
+	 *
+	 * @param  handler  if null, returns the first path found, not necessarily the shortest
+	 */
+	public ListElement getOptimizedClusterConfiguration(OptimizedClusterConfigurationHandler handler) {
+		Search search = new Search(handler, ClusterOptimizer.getAnalysisAlertLevel(heuristicFunction));
+		ListElement start = new ListElement(
+			null,
+			null,
+			clusterConfiguration,
+			heuristicFunction.getHeuristic(clusterConfiguration, 0)
+		);
+		double threshold = start.heuristic;
+		while(true) {
+			search.iterations++;
+			search.nextThreshold = Double.POSITIVE_INFINITY;
+			search(search, start, threshold);
+			if(search.done || search.nextThreshold==Double.POSITIVE_INFINITY) return search.shortestPath;
+			threshold = search.nextThreshold;
+		}
+	}
+
+	/**
+	 * The state of one call to {@link #getOptimizedClusterConfiguration(com.aoindustries.aoserv.cluster.optimize.OptimizedClusterConfigurationHandler)}.
+	 */
+	private static class Search {
+
+		private final OptimizedClusterConfigurationHandler handler;
+		private final AlertLevel analysisAlertLevel;
+
+		private final Dom0ScoreCache dom0ScoreCache = new Dom0ScoreCache(ClusterOptimizer.DOM0_SCORE_CACHE_SIZE);
+		private final MoveSecondaryCache moveSecondaryCache = new MoveSecondaryCache(ClusterOptimizer.MOVE_SECONDARY_CACHE_SIZE);
+
+		/**
+		 * Return value is stored here upon success or remains null on failure
+		 */
+		private ListElement shortestPath;
+
+		/**
+		 * Set once the handler has asked to stop.
+		 */
+		private boolean done;
+
+		/**
+		 * The lowest heuristic that was over the threshold of the current iteration.
+		 */
+		private double nextThreshold;
+
+		private long iterations;
+		private long loopCounter;
+		private long onPathCount;
+		private long skipCriticalPathCount;
+		private long lastDisplayTime = System.currentTimeMillis();
+
+		// Reused by visit
+		private final List<ClusterConfiguration> children = new ArrayList<>();
+		private final List<Transition> childTransitions = new ArrayList<>();
+
+		private Search(OptimizedClusterConfigurationHandler handler, AlertLevel analysisAlertLevel) {
+			this.handler = handler;
+			this.analysisAlertLevel = analysisAlertLevel;
+		}
+	}
+
+	/**
+	 * Searches depth-first from the provided element, following only children with
+	 * a heuristic no greater than <code>threshold</code>.  The children of each
+	 * configuration are explored lowest heuristic first.
+	 *
+	 * An explicit stack is used instead of recursion since paths may be much
+	 * longer than the call stack allows when the heuristic puts little weight on
+	 * the path length.
+	 */
+	private void search(Search search, ListElement start, double threshold) {
+		List<Frame> stack = new ArrayList<>();
+		Frame frame = visit(search, start, new IncrementalAnalysis(start.clusterConfiguration, search.analysisAlertLevel, search.dom0ScoreCache), threshold);
+		if(frame!=null) stack.add(frame);
+		while(!search.done && !stack.isEmpty()) {
+			frame = stack.get(stack.size()-1);
+			if(frame.next>=frame.children.length) {
+				stack.remove(stack.size()-1);
+			} else {
+				ListElement child = frame.children[frame.next];
+				// Release once visited
+				frame.children[frame.next++] = null;
+				// Rebuild from the parent, which is materialized along the current path
+				ClusterConfiguration childConfiguration = child.getClusterConfiguration();
+				Frame childFrame = visit(
+					search,
+					new ListElement(frame.parent, child.transition, childConfiguration, child.heuristic),
+					child.transition.analyze(frame.parentAnalysis, childConfiguration),
+					threshold
+				);
+				if(childFrame!=null) stack.add(childFrame);
+			}
+		}
+	}
+
+	/**
+	 * The children of one configuration along the current path, sorted by heuristic.
+	 * The children are not materialized, storing only their transitions from the parent.
+	 */
+	private static class Frame {
+
+		private final ListElement parent;
+		private final IncrementalAnalysis parentAnalysis;
+		private final ListElement[] children;
+
+		/**
+		 * The index of the next child to visit.
+		 */
+		private int next;
+
+		private Frame(ListElement parent, IncrementalAnalysis parentAnalysis, ListElement[] children) {
+			this.parent = parent;
+			this.parentAnalysis = parentAnalysis;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * Visits one configuration, checking for the goal then generating its children.
+	 *
+	 * @param  analysisX  the analysis of the configuration, from which its children are analyzed incrementally
+	 *
+	 * @return  the children to visit or <code>null</code> when there are none
+	 */
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	private Frame visit(Search search, ListElement X, IncrementalAnalysis analysisX, double threshold) {
+		// Only explore paths shorter than shortestPath
+		if(search.shortestPath!=null && X.pathLen>=search.shortestPath.pathLen) return null;
+		search.loopCounter++;
+		long currentTime = System.currentTimeMillis();
+		long timeSince = currentTime - search.lastDisplayTime;
+		if(timeSince<0 || timeSince>=60000) {
+			System.out.println(
+				"        iteration:"+search.iterations
+				+ " threshold:"+threshold
+				+ " transitions:"+X.pathLen
+				+ " heuristic:"+X.heuristic
+				+ " expanded:"+search.loopCounter
+				+ " onPath:"+search.onPathCount
+				+ " skipCriticalPath:"+search.skipCriticalPathCount
+				+ " dom0ScoreHitRate:"+search.dom0ScoreCache.getHitRate()
+				+ " moveSecondaryHitRate:"+search.moveSecondaryCache.getHitRate()
+			);
+			search.lastDisplayTime = currentTime;
+		}
+		// Is this the goal?  The scores are not kept on the configurations along the current path.
+		ClusterScore scoreX = analysisX.getClusterScore();
+		if(scoreX.isOptimal()) {
+			search.shortestPath = X;
+			if(
+				search.handler==null
+				|| !search.handler.handleOptimizedClusterConfiguration(X, search.loopCounter)
+			) search.done = true;
+			return null;
+		}
+		// generate children of X if depth limit not reached
+		// max depth is determined by any path already found
+		if(
+			(search.shortestPath!=null && (X.pathLen+1)>=search.shortestPath.pathLen)
+			|| (maxPathLen!=-1 && X.pathLen>=maxPathLen)
+		) return null;
+
+		ClusterOptimizer.generateChildren(X.clusterConfiguration, search.children, search.childTransitions, search.moveSecondaryCache, randomizeChildren);
+		boolean xEndsCritical = allowPathThroughCritical ? true : scoreX.hasCritical();
+		List<ListElement> next = new ArrayList<>(search.children.size());
+		for(int i=0, size=search.children.size(); i<size; i++) {
+			ClusterConfiguration child = search.children.get(i);
+			if(isOnPath(X, child)) {
+				search.onPathCount++;
+			} else {
+				Transition transition = search.childTransitions.get(i);
+				ClusterScore childScore = transition.analyze(analysisX, child).getClusterScore();
+				// Don't keep any path that has a transition from not having any critical to have at least one critical
+				boolean childHasCritical = allowPathThroughCritical ? false : childScore.hasCritical();
+				if(xEndsCritical || !childHasCritical) {
+					double heuristic = heuristicFunction.getHeuristic(child, childScore, X.pathLen+1);
+					if(heuristic>threshold) {
+						if(heuristic<search.nextThreshold) search.nextThreshold = heuristic;
+					} else {
+						next.add(new ListElement(X, transition, child.getFingerprintHigh(), child.getFingerprintLow(), heuristic));
+					}
+				} else search.skipCriticalPathCount++;
+			}
+		}
+		if(next.isEmpty()) return null;
+		Collections.sort(next);
+		return new Frame(X, analysisX, next.toArray(new ListElement[next.size()]));
+	}
+
+	/**
+	 * Checks if the configuration is already along the path ending at the provided element,
+	 * comparing by fingerprint.
+	 */
+	private static boolean isOnPath(ListElement path, ClusterConfiguration clusterConfiguration) {
+		long fingerprintHigh = clusterConfiguration.getFingerprintHigh();
+		long fingerprintLow = clusterConfiguration.getFingerprintLow();
+		for(ListElement listElement = path; listElement!=null; listElement = listElement.previous) {
+			if(listElement.fingerprintHigh==fingerprintHigh && listElement.fingerprintLow==fingerprintLow) return true;
+		}
+		return false;
+	}
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -23,7 +23,7 @@
 package com.aoindustries.aoserv.cluster.optimize;
 
 import com.aoindustries.aoserv.cluster.ClusterConfiguration;
-import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
 
 /**
  * This simply returns g if the cluster is optimal or g+1 if it is optimal.
@@ -34,8 +34,12 @@ public class LeastInformedHeuristicFunction implements HeuristicFunction {
 
 	@Override
 	public double getHeuristic(ClusterConfiguration clusterConfiguration, int g) {
-		AnalyzedClusterConfiguration analysis = new AnalyzedClusterConfiguration(clusterConfiguration);
+		return getHeuristic(clusterConfiguration, null, g);
+	}
 
-		return analysis.isOptimal() ? g : (g+1);
+	@Override
+	public double getHeuristic(ClusterConfiguration clusterConfiguration, ClusterScore clusterScore, int g) {
+		ClusterScore score = clusterScore==null ? clusterConfiguration.getClusterScore(false) : clusterScore;
+		return score.isOptimal() ? g : (g+1);
 	}
 }
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -39,12 +39,35 @@ public class ListElement implements Comparable<ListElement> {
 	final int pathLen;
 
 	/**
-	 * The configuration after the transition.
+	 * The configuration after the transition or <code>null</code> when not materialized.
+	 * A configuration that is not materialized is rebuilt on demand by replaying the
+	 * transitions from the nearest materialized element.  The first element in the list
+	 * is always materialized.
+	 *
+	 * @see  #getClusterConfiguration()
 	 */
 	final ClusterConfiguration clusterConfiguration;
 
+	/**
+	 * The fingerprint of the configuration, available whether materialized or not.
+	 *
+	 * @see  ClusterConfiguration#getFingerprintHigh()
+	 * @see  ClusterConfiguration#getFingerprintLow()
+	 */
+	final long fingerprintHigh;
+	final long fingerprintLow;
+
 	final double heuristic;
 
+	/**
+	 * The position of this element within the heap of an {@link OpenList}
+	 * or <code>-1</code> when not on an open list.
+	 */
+	int openIndex = -1;
+
+	/**
+	 * Creates a materialized element.
+	 */
 	ListElement(
 		ListElement previous,
 		Transition transition,
@@ -56,6 +79,30 @@ public class ListElement implements Comparable<ListElement> {
 		this.pathLen = previous==null ? 0 : (previous.pathLen+1);
 		assert clusterConfiguration!=null : "clusterConfiguration is null";
 		this.clusterConfiguration = clusterConfiguration;
+		this.fingerprintHigh = clusterConfiguration.getFingerprintHigh();
+		this.fingerprintLow = clusterConfiguration.getFingerprintLow();
+		this.heuristic = heuristic;
+	}
+
+	/**
+	 * Creates an element that is not materialized, storing only the transition
+	 * from the previous element and the fingerprint of the resulting configuration.
+	 */
+	ListElement(
+		ListElement previous,
+		Transition transition,
+		long fingerprintHigh,
+		long fingerprintLow,
+		double heuristic
+	) {
+		assert previous!=null : "previous is null";
+		assert transition!=null : "transition is null";
+		this.previous = previous;
+		this.transition = transition;
+		this.pathLen = previous.pathLen+1;
+		this.clusterConfiguration = null;
+		this.fingerprintHigh = fingerprintHigh;
+		this.fingerprintLow = fingerprintLow;
 		this.heuristic = heuristic;
 	}
 
@@ -86,8 +133,41 @@ public class ListElement implements Comparable<ListElement> {
 		return pathLen;
 	}
 
+	/**
+	 * Checks if the configuration is stored in this element instead of being rebuilt on demand.
+	 */
+	public boolean isMaterialized() {
+		return clusterConfiguration!=null;
+	}
+
+	/**
+	 * Gets the configuration after the transition.  When not materialized, this
+	 * is rebuilt on each call by replaying the transitions from the nearest
+	 * materialized element, so callers should hold onto the result while in use.
+	 */
 	public ClusterConfiguration getClusterConfiguration() {
-		return clusterConfiguration;
+		if(clusterConfiguration!=null) return clusterConfiguration;
+		// Find the nearest materialized element
+		ListElement materialized = previous;
+		while(materialized.clusterConfiguration==null) materialized = materialized.previous;
+		// Replay the transitions in order
+		Transition[] transitions = new Transition[pathLen - materialized.pathLen];
+		int i = transitions.length;
+		for(ListElement listElement = this; listElement!=materialized; listElement = listElement.previous) {
+			transitions[--i] = listElement.transition;
+		}
+		ClusterConfiguration rebuilt = materialized.clusterConfiguration;
+		for(Transition t : transitions) rebuilt = t.apply(rebuilt);
+		assert rebuilt.getFingerprintHigh()==fingerprintHigh && rebuilt.getFingerprintLow()==fingerprintLow : "rebuilt configuration has a different fingerprint";
+		return rebuilt;
+	}
+
+	public long getFingerprintHigh() {
+		return fingerprintHigh;
+	}
+
+	public long getFingerprintLow() {
+		return fingerprintLow;
 	}
 
 	public double getHeuristic() {
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,8 +22,10 @@
  */
 package com.aoindustries.aoserv.cluster.optimize;
 
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.Dom0;
 import com.aoindustries.aoserv.cluster.DomU;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
 
 /**
  * A swap between primary and secondary.
@@ -58,6 +60,17 @@ public class MigrateTransition extends Transition {
 		return oldSecondaryDom0;
 	}
 
+	@Override
+	ClusterConfiguration apply(ClusterConfiguration clusterConfiguration) {
+		return clusterConfiguration.liveMigrate(domU);
+	}
+
+	@Override
+	IncrementalAnalysis analyze(IncrementalAnalysis parentAnalysis, ClusterConfiguration clusterConfiguration) {
+		// The primary and secondary trade places
+		return new IncrementalAnalysis(parentAnalysis, clusterConfiguration, oldPrimaryDom0, oldSecondaryDom0);
+	}
+
 	@Override
 	public String toString() {
 		return "Migrate "+domU.getHostname()+" from "+oldPrimaryDom0.getHostname()+" to "+oldSecondaryDom0.getHostname();
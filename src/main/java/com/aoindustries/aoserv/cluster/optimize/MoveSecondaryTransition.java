@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,8 +22,11 @@
  */
 package com.aoindustries.aoserv.cluster.optimize;
 
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.Dom0;
 import com.aoindustries.aoserv.cluster.DomU;
+import com.aoindustries.aoserv.cluster.DomUConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
 
 /**
  * A swap between primary and secondary.
@@ -35,15 +38,24 @@ public class MoveSecondaryTransition extends Transition {
 	private final DomU domU;
 	private final Dom0 oldSecondaryDom0;
 	private final Dom0 newSecondaryDom0;
+	private final DomUConfiguration newDomUConfiguration;
 
+	/**
+	 * @param  newDomUConfiguration  the configuration of the DomU after the move, including the chosen
+	 *                               mapping onto the physical volumes of the new secondary
+	 */
 	MoveSecondaryTransition(
 		DomU domU,
 		Dom0 oldSecondaryDom0,
-		Dom0 newSecondaryDom0
+		Dom0 newSecondaryDom0,
+		DomUConfiguration newDomUConfiguration
 	) {
+		assert newDomUConfiguration.getDomU()==domU : "newDomUConfiguration is for a different DomU";
+		assert newDomUConfiguration.getSecondaryDom0()==newSecondaryDom0 : "newDomUConfiguration has a different secondary";
 		this.domU = domU;
 		this.oldSecondaryDom0 = oldSecondaryDom0;
 		this.newSecondaryDom0 = newSecondaryDom0;
+		this.newDomUConfiguration = newDomUConfiguration;
 	}
 
 	public DomU getDomU() {
@@ -58,6 +70,24 @@ public class MoveSecondaryTransition extends Transition {
 		return newSecondaryDom0;
 	}
 
+	/**
+	 * Gets the configuration of the DomU after the move.
+	 */
+	public DomUConfiguration getNewDomUConfiguration() {
+		return newDomUConfiguration;
+	}
+
+	@Override
+	ClusterConfiguration apply(ClusterConfiguration clusterConfiguration) {
+		return clusterConfiguration.replaceDomUConfiguration(newDomUConfiguration);
+	}
+
+	@Override
+	IncrementalAnalysis analyze(IncrementalAnalysis parentAnalysis, ClusterConfiguration clusterConfiguration) {
+		// The primary is unchanged, but its DomU configuration is replaced
+		return new IncrementalAnalysis(parentAnalysis, clusterConfiguration, newDomUConfiguration.getPrimaryDom0(), oldSecondaryDom0, newSecondaryDom0);
+	}
+
 	@Override
 	public String toString() {
 		return "Move "+domU.getHostname()+" secondary from "+oldSecondaryDom0.getHostname()+" to "+newSecondaryDom0.getHostname();
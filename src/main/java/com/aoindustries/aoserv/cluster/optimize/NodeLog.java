@@ -0,0 +1,209 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only log of every element generated by an external-memory search,
+ * stored in memory-mapped segment files.  Each element is a fixed-size record
+ * identified by its sequential id, holding the id of its previous element and
+ * only enough of its transition to replay it.
+ *
+ * Records contain:
+ * <ol>
+ *   <li>previous id (long, <code>-1</code> for the first element)</li>
+ *   <li>path length (int)</li>
+ *   <li>fingerprint high and low (long, long)</li>
+ *   <li>heuristic (double)</li>
+ *   <li>transition type (byte)</li>
+ *   <li>DomU index and Dom0 index, each of <code>indexWidth</code> bytes</li>
+ * </ol>
+ *
+ * As with <code>PhysicalVolumeConfigurationShort/Int/Long</code>, the indexes
+ * are stored in the smallest of 8-bit, 16-bit or 32-bit that fits the cluster.
+ * The physical volume mapping of a secondary move is not stored.  Instead, the
+ * move is replayed and the mapping with the matching fingerprint is selected.
+ *
+ * This is not thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+class NodeLog implements AutoCloseable {
+
+	static final byte
+		TYPE_NONE = 0,
+		TYPE_MIGRATE = 1,
+		TYPE_MOVE_SECONDARY = 2;
+
+	private static final int SEGMENT_BYTES = 1 << 26;
+
+	private static final int
+		PREVIOUS_OFFSET = 0,
+		PATH_LEN_OFFSET = PREVIOUS_OFFSET + Long.BYTES,
+		FINGERPRINT_HIGH_OFFSET = PATH_LEN_OFFSET + Integer.BYTES,
+		FINGERPRINT_LOW_OFFSET = FINGERPRINT_HIGH_OFFSET + Long.BYTES,
+		HEURISTIC_OFFSET = FINGERPRINT_LOW_OFFSET + Long.BYTES,
+		TYPE_OFFSET = HEURISTIC_OFFSET + Double.BYTES,
+		DOMU_OFFSET = TYPE_OFFSET + Byte.BYTES;
+
+	/**
+	 * Gets the number of bytes needed to store indexes up to the provided count.
+	 */
+	static int getIndexWidth(int count) {
+		if(count<=Byte.MAX_VALUE) return Byte.BYTES;
+		if(count<=Short.MAX_VALUE) return Short.BYTES;
+		return Integer.BYTES;
+	}
+
+	private final Path directory;
+	private final int indexWidth;
+	private final int dom0Offset;
+	private final int recordSize;
+	private final int segmentRecords;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private long size;
+
+	NodeLog(Path directory, int indexWidth) {
+		assert indexWidth==Byte.BYTES || indexWidth==Short.BYTES || indexWidth==Integer.BYTES : "Invalid indexWidth: "+indexWidth;
+		this.directory = directory;
+		this.indexWidth = indexWidth;
+		this.dom0Offset = DOMU_OFFSET + indexWidth;
+		this.recordSize = dom0Offset + indexWidth;
+		this.segmentRecords = SEGMENT_BYTES / recordSize;
+	}
+
+	/**
+	 * The number of elements in the log.
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Appends an element to the log.
+	 *
+	 * @return  the id of the new element
+	 */
+	long append(long previous, int pathLen, long fingerprintHigh, long fingerprintLow, double heuristic, byte type, int domUIndex, int dom0Index) {
+		long id = size;
+		int segment = (int)(id / segmentRecords);
+		if(segment==segments.size()) {
+			Path file = directory.resolve("nodes-"+segment+".bin");
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, (long)segmentRecords * recordSize));
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		MappedByteBuffer buffer = segments.get(segment);
+		int pos = (int)(id % segmentRecords) * recordSize;
+		buffer.putLong(pos + PREVIOUS_OFFSET, previous);
+		buffer.putInt(pos + PATH_LEN_OFFSET, pathLen);
+		buffer.putLong(pos + FINGERPRINT_HIGH_OFFSET, fingerprintHigh);
+		buffer.putLong(pos + FINGERPRINT_LOW_OFFSET, fingerprintLow);
+		buffer.putDouble(pos + HEURISTIC_OFFSET, heuristic);
+		buffer.put(pos + TYPE_OFFSET, type);
+		putIndex(buffer, pos + DOMU_OFFSET, domUIndex);
+		putIndex(buffer, pos + dom0Offset, dom0Index);
+		size++;
+		return id;
+	}
+
+	private void putIndex(MappedByteBuffer buffer, int pos, int index) {
+		switch(indexWidth) {
+			case Byte.BYTES : buffer.put(pos, (byte)index); break;
+			case Short.BYTES : buffer.putShort(pos, (short)index); break;
+			default : buffer.putInt(pos, index);
+		}
+	}
+
+	private int getIndex(MappedByteBuffer buffer, int pos) {
+		switch(indexWidth) {
+			case Byte.BYTES : return buffer.get(pos);
+			case Short.BYTES : return buffer.getShort(pos);
+			default : return buffer.getInt(pos);
+		}
+	}
+
+	private MappedByteBuffer getSegment(long id) {
+		assert id>=0 && id<size : "id out of range: "+id;
+		return segments.get((int)(id / segmentRecords));
+	}
+
+	private int getPosition(long id) {
+		return (int)(id % segmentRecords) * recordSize;
+	}
+
+	long getPrevious(long id) {
+		return getSegment(id).getLong(getPosition(id) + PREVIOUS_OFFSET);
+	}
+
+	int getPathLen(long id) {
+		return getSegment(id).getInt(getPosition(id) + PATH_LEN_OFFSET);
+	}
+
+	long getFingerprintHigh(long id) {
+		return getSegment(id).getLong(getPosition(id) + FINGERPRINT_HIGH_OFFSET);
+	}
+
+	long getFingerprintLow(long id) {
+		return getSegment(id).getLong(getPosition(id) + FINGERPRINT_LOW_OFFSET);
+	}
+
+	double getHeuristic(long id) {
+		return getSegment(id).getDouble(getPosition(id) + HEURISTIC_OFFSET);
+	}
+
+	byte getType(long id) {
+		return getSegment(id).get(getPosition(id) + TYPE_OFFSET);
+	}
+
+	int getDomUIndex(long id) {
+		return getIndex(getSegment(id), getPosition(id) + DOMU_OFFSET);
+	}
+
+	int getDom0Index(long id) {
+		return getIndex(getSegment(id), getPosition(id) + dom0Offset);
+	}
+
+	/**
+	 * Releases the segments and deletes their files.
+	 */
+	@Override
+	public void close() throws IOException {
+		int count = segments.size();
+		segments.clear();
+		for(int segment=0; segment<count; segment++) {
+			Files.deleteIfExists(directory.resolve("nodes-"+segment+".bin"));
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import java.util.Arrays;
+
+/**
+ * The open list of a best-first search.  This is a binary min-heap of
+ * <code>ListElement</code>, sorted by heuristic, combined with a lookup by
+ * configuration fingerprint.  The lookup is an open-addressing hash table of the
+ * elements themselves, so no configuration needs to be materialized and no
+ * per-entry objects are created.
+ *
+ * Each <code>ListElement</code> tracks its own position within the heap, so
+ * replacing or removing an arbitrary element runs in O(log n) instead of the
+ * O(n) of <code>java.util.PriorityQueue.remove(Object)</code>.
+ *
+ * This is not thread safe.
+ *
+ * @author  AO Industries, Inc.
+ */
+class OpenList {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private ListElement[] heap = new ListElement[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Linear probing by fingerprint, kept at most half full.
+	 */
+	private ListElement[] lookup = new ListElement[INITIAL_CAPACITY << 1];
+	private int lookupMask = (INITIAL_CAPACITY << 1) - 1;
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size==0;
+	}
+
+	/**
+	 * Gets the element for the provided fingerprint or <code>null</code> if not on the open list.
+	 */
+	ListElement get(long fingerprintHigh, long fingerprintLow) {
+		return lookup[findSlot(fingerprintHigh, fingerprintLow)];
+	}
+
+	/**
+	 * Adds an element that is not already on the open list.
+	 */
+	void add(ListElement listElement) {
+		assert listElement.openIndex==-1 : "listElement already on an open list";
+		assert get(listElement.fingerprintHigh, listElement.fingerprintLow)==null : "clusterConfiguration already on the open list";
+		if(((size + 1) << 1) > lookup.length) rebuildLookup(lookup.length << 1);
+		lookup[findSlot(listElement.fingerprintHigh, listElement.fingerprintLow)] = listElement;
+		if(size==heap.length) heap = Arrays.copyOf(heap, size << 1);
+		siftUp(size++, listElement);
+	}
+
+	/**
+	 * Removes and returns the element with the lowest heuristic.
+	 */
+	ListElement remove() {
+		assert size>0 : "open list is empty";
+		ListElement first = heap[0];
+		removeAt(0);
+		removeFromLookup(first);
+		return first;
+	}
+
+	/**
+	 * Replaces an element on the open list with another element for the same
+	 * configuration, such as when the configuration has been reached by a shorter
+	 * path.  The replacement takes the position of the existing element and is
+	 * moved up or down the heap as needed.
+	 */
+	void replace(ListElement existing, ListElement replacement) {
+		int heapIndex = existing.openIndex;
+		assert heapIndex>=0 && heap[heapIndex]==existing : "existing not on the open list";
+		assert replacement.openIndex==-1 : "replacement already on an open list";
+		assert existing.fingerprintHigh==replacement.fingerprintHigh && existing.fingerprintLow==replacement.fingerprintLow : "replacement is for a different configuration";
+		existing.openIndex = -1;
+		int slot = findSlot(existing.fingerprintHigh, existing.fingerprintLow);
+		assert lookup[slot]==existing : "existing not in the lookup";
+		lookup[slot] = replacement;
+		if(heapIndex>0 && replacement.compareTo(heap[(heapIndex - 1) >>> 1])<0) siftUp(heapIndex, replacement);
+		else siftDown(heapIndex, replacement);
+	}
+
+	/**
+	 * Removes all elements with a path length greater than or equal to the provided
+	 * length.  The heap and lookup are rebuilt once in O(n) instead of removing one element at a time.
+	 */
+	void removePathLenAtLeast(int pathLen) {
+		int newSize = 0;
+		for(int i=0; i<size; i++) {
+			ListElement listElement = heap[i];
+			if(listElement.pathLen>=pathLen) {
+				listElement.openIndex = -1;
+			} else {
+				listElement.openIndex = newSize;
+				heap[newSize++] = listElement;
+			}
+		}
+		Arrays.fill(heap, newSize, size, null);
+		size = newSize;
+		// Heapify
+		for(int i=(size >>> 1) - 1; i>=0; i--) {
+			siftDown(i, heap[i]);
+		}
+		rebuildLookup(lookup.length);
+	}
+
+	/**
+	 * Finds the slot containing the provided fingerprint or the empty slot where it would be added.
+	 */
+	private int findSlot(long fingerprintHigh, long fingerprintLow) {
+		int slot = (int)(fingerprintHigh ^ (fingerprintHigh >>> 32)) & lookupMask;
+		while(true) {
+			ListElement listElement = lookup[slot];
+			if(
+				listElement==null
+				|| (listElement.fingerprintHigh==fingerprintHigh && listElement.fingerprintLow==fingerprintLow)
+			) return slot;
+			slot = (slot + 1) & lookupMask;
+		}
+	}
+
+	/**
+	 * Removes an element from the lookup.  The elements following it are shifted
+	 * back as needed, so no deleted markers are left behind.
+	 */
+	private void removeFromLookup(ListElement listElement) {
+		int slot = findSlot(listElement.fingerprintHigh, listElement.fingerprintLow);
+		assert lookup[slot]==listElement : "listElement not in the lookup";
+		int next = slot;
+		while(true) {
+			next = (next + 1) & lookupMask;
+			ListElement e = lookup[next];
+			if(e==null) break;
+			int home = (int)(e.fingerprintHigh ^ (e.fingerprintHigh >>> 32)) & lookupMask;
+			// Move back when the home of the element is not cyclically within (slot, next]
+			if(slot<=next ? (home<=slot || home>next) : (home<=slot && home>next)) {
+				lookup[slot] = e;
+				slot = next;
+			}
+		}
+		lookup[slot] = null;
+	}
+
+	/**
+	 * Rebuilds the lookup from the heap with the provided capacity.
+	 */
+	private void rebuildLookup(int capacity) {
+		lookup = new ListElement[capacity];
+		lookupMask = capacity - 1;
+		for(int i=0; i<size; i++) {
+			ListElement listElement = heap[i];
+			lookup[findSlot(listElement.fingerprintHigh, listElement.fingerprintLow)] = listElement;
+		}
+	}
+
+	private void removeAt(int index) {
+		heap[index].openIndex = -1;
+		int last = --size;
+		if(index==last) {
+			heap[last] = null;
+		} else {
+			ListElement moved = heap[last];
+			heap[last] = null;
+			siftDown(index, moved);
+			if(heap[index]==moved) siftUp(index, moved);
+		}
+	}
+
+	private void siftUp(int index, ListElement listElement) {
+		while(index>0) {
+			int parent = (index - 1) >>> 1;
+			ListElement e = heap[parent];
+			if(listElement.compareTo(e)>=0) break;
+			heap[index] = e;
+			e.openIndex = index;
+			index = parent;
+		}
+		heap[index] = listElement;
+		listElement.openIndex = index;
+	}
+
+	private void siftDown(int index, ListElement listElement) {
+		int half = size >>> 1;
+		while(index<half) {
+			int child = (index << 1) + 1;
+			ListElement c = heap[child];
+			int right = child + 1;
+			if(right<size && c.compareTo(heap[right])>0) c = heap[child = right];
+			if(listElement.compareTo(c)<=0) break;
+			heap[index] = c;
+			c.openIndex = index;
+			index = child;
+		}
+		heap[index] = listElement;
+		listElement.openIndex = index;
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.MoveSecondaryCache;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
+import com.aoindustries.aoserv.cluster.analyze.Dom0ScoreCache;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Optimizes the cluster using a hash-distributed best-first search (HDA*) across
+ * multiple threads.
+ * </p>
+ * <p>
+ * Each worker thread owns the configurations whose fingerprint hashes to it,
+ * and keeps its own open and closed lists for those configurations.  When a worker
+ * expands a configuration, each child is sent to its owning worker through a
+ * lock-free queue, where it is checked against the open and closed lists as in
+ * {@link ClusterOptimizer}.  Each worker also has its own caches of Dom0 scores and
+ * secondary moves.  There is no shared state other than the queues, the count of
+ * outstanding work, the count of configurations expanded, and the shortest path found.
+ * </p>
+ * <p>
+ * Since each worker expands its own best configuration instead of the global best,
+ * the order of expansion is only approximately best-first, and the first path found
+ * may differ from that of {@link ClusterOptimizer}.
+ * </p>
+ * <p>
+ * The search ends once no configuration remains on any open list or in any queue,
+ * which is tracked by a count incremented for each child sent and decremented once
+ * a child has been either discarded or expanded.
+ * </p>
+ * <p>
+ * An optimizer is immutable.  All setters return a new instance of an optimizer.
+ * </p>
+ *
+ * @see  ClusterOptimizer
+ *
+ * @author  AO Industries, Inc.
+ */
+public class ParallelClusterOptimizer {
+
+	/**
+	 * The time an idle worker waits before checking its queues again.
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final ClusterConfiguration clusterConfiguration;
+	private final HeuristicFunction heuristicFunction;
+	private final boolean allowPathThroughCritical;
+	private final boolean randomizeChildren;
+	private final int maxPathLen;
+	private final int threads;
+
+	public ParallelClusterOptimizer(ClusterConfiguration clusterConfiguration, HeuristicFunction heuristicFunction, boolean allowPathThroughCritical, boolean randomizeChildren) {
+		this(clusterConfiguration, heuristicFunction, allowPathThroughCritical, randomizeChildren, -1, Runtime.getRuntime().availableProcessors());
+	}
+
+	private ParallelClusterOptimizer(
+		ClusterConfiguration clusterConfiguration,
+		HeuristicFunction heuristicFunction,
+		boolean allowPathThroughCritical,
+		boolean randomizeChildren,
+		int maxPathLen,
+		int threads
+	) {
+		this.clusterConfiguration = clusterConfiguration;
+		this.heuristicFunction = heuristicFunction;
+		this.allowPathThroughCritical = allowPathThroughCritical;
+		this.randomizeChildren = randomizeChildren;
+		this.maxPathLen = maxPathLen;
+		this.threads = threads;
+	}
+
+	/**
+	 * Limits the number of transitions in any path.  No configuration is expanded
+	 * once its path has reached this length.
+	 *
+	 * @param  maxPathLen  the maximum path length or <code>-1</code> for no limit
+	 *
+	 * @return  a new optimizer with the limit applied
+	 */
+	public ParallelClusterOptimizer withMaxPathLen(int maxPathLen) {
+		if(maxPathLen<-1) throw new IllegalArgumentException("maxPathLen should be -1 or >=0: "+maxPathLen);
+		return new ParallelClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			threads
+		);
+	}
+
+	/**
+	 * Sets the number of worker threads, which defaults to the number of available processors.
+	 *
+	 * @return  a new optimizer with the number of threads applied
+	 */
+	public ParallelClusterOptimizer withThreads(int threads) {
+		if(threads<1) throw new IllegalArgumentException("threads should be >=1: "+threads);
+		return new ParallelClusterOptimizer(
+			clusterConfiguration,
+			heuristicFunction,
+			allowPathThroughCritical,
+			randomizeChildren,
+			maxPathLen,
+			threads
+		);
+	}
+
+	public int getMaxPathLen() {
+		return maxPathLen;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Optimizes the cluster and returns the path to the first optimal configuration found or <code>null</code> if no
+	 * optimal configuration was found.
+	 */
+	public ListElement getOptimizedClusterConfiguration() {
+		return getOptimizedClusterConfiguration(null);
+	}
+
+	/**
+	 * Optimizes the cluster and returns the best path (possibly limited by an OptimizedResultHandler)
+	 * or <code>null</code> if no optimal configuration was found.
+	 *
+	 * The handler is called by one worker thread at a time, and only for paths shorter
+	 * than any previously handled.
+	 *
+	 * @param  handler  if null, returns the first path found, not necessarily the shortest
+	 */
+	public ListElement getOptimizedClusterConfiguration(OptimizedClusterConfigurationHandler handler) {
+		Search search = new Search(handler);
+		ListElement start = new ListElement(
+			null,
+			null,
+			clusterConfiguration,
+			heuristicFunction.getHeuristic(clusterConfiguration, 0)
+		);
+		search.send(start);
+		List<Thread> workerThreads = new ArrayList<>(threads);
+		for(int i=0; i<threads; i++) {
+			Thread thread = new Thread(search.workers[i], ParallelClusterOptimizer.class.getName()+".worker-"+i);
+			thread.setDaemon(true);
+			workerThreads.add(thread);
+		}
+		for(Thread thread : workerThreads) thread.start();
+		boolean interrupted = false;
+		for(Thread thread : workerThreads) {
+			while(true) {
+				try {
+					thread.join();
+					break;
+				} catch(InterruptedException e) {
+					// Stop the workers and wait for them to finish
+					interrupted = true;
+					search.done = true;
+				}
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+		Throwable failure = search.failure;
+		if(failure!=null) {
+			if(failure instanceof Error) throw (Error)failure;
+			throw (RuntimeException)failure;
+		}
+		return search.shortestPath;
+	}
+
+	/**
+	 * The state shared by all workers in one call to {@link #getOptimizedClusterConfiguration(com.aoindustries.aoserv.cluster.optimize.OptimizedClusterConfigurationHandler)}.
+	 */
+	private class Search {
+
+		private final OptimizedClusterConfigurationHandler handler;
+		private final Worker[] workers;
+
+		/**
+		 * The number of children sent but not yet discarded or expanded.
+		 * The search is complete when this reaches zero.
+		 */
+		private final AtomicLong outstanding = new AtomicLong();
+
+		private final AtomicLong loopCounter = new AtomicLong();
+
+		/**
+		 * Updated while holding shortestPathLock.
+		 */
+		private volatile ListElement shortestPath;
+		private final Object shortestPathLock = new Object();
+
+		/**
+		 * Set once the handler has asked to stop or a worker has failed.
+		 */
+		private volatile boolean done;
+
+		private volatile Throwable failure;
+
+		private Search(OptimizedClusterConfigurationHandler handler) {
+			this.handler = handler;
+			this.workers = new Worker[threads];
+			for(int i=0; i<threads; i++) workers[i] = new Worker(this, i);
+		}
+
+		/**
+		 * Gets the length of the shortest path found or <code>Integer.MAX_VALUE</code> when none found.
+		 */
+		private int getShortestPathLen() {
+			ListElement path = shortestPath;
+			return path==null ? Integer.MAX_VALUE : path.pathLen;
+		}
+
+		/**
+		 * Sends an element to the worker that owns its configuration.
+		 */
+		private void send(ListElement listElement) {
+			outstanding.incrementAndGet();
+			int owner = (int)Long.remainderUnsigned(listElement.fingerprintLow, workers.length);
+			workers[owner].inbox.add(listElement);
+		}
+
+		/**
+		 * Records an optimal configuration when it is shorter than any previously found.
+		 */
+		private void found(ListElement path) {
+			synchronized(shortestPathLock) {
+				if(path.pathLen<getShortestPathLen()) {
+					shortestPath = path;
+					if(
+						handler==null
+						|| !handler.handleOptimizedClusterConfiguration(path, loopCounter.get())
+					) done = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * One worker thread, owning a partition of the configurations.
+	 */
+	private class Worker implements Runnable {
+
+		private final Search search;
+		private final int id;
+
+		/**
+		 * Many producers, only this worker consumes.
+		 */
+		private final ConcurrentLinkedQueue<ListElement> inbox = new ConcurrentLinkedQueue<>();
+
+		private final OpenList openList = new OpenList();
+		private final ClosedList closedList = new ClosedList(false);
+
+		/**
+		 * Only used by this worker, so lookups never wait on other workers.
+		 */
+		private final Dom0ScoreCache dom0ScoreCache = new Dom0ScoreCache(ClusterOptimizer.DOM0_SCORE_CACHE_SIZE);
+		private final MoveSecondaryCache moveSecondaryCache = new MoveSecondaryCache(ClusterOptimizer.MOVE_SECONDARY_CACHE_SIZE);
+
+		// Reused inside loop below
+		private final List<ClusterConfiguration> children = new ArrayList<>();
+		private final List<Transition> childTransitions = new ArrayList<>();
+		private final AlertLevel analysisAlertLevel = ClusterOptimizer.getAnalysisAlertLevel(heuristicFunction);
+
+		private int trimmedPathLen = Integer.MAX_VALUE;
+
+		private long existingOpenCount;
+		private long existingClosedCount;
+		private long openReplaceCount;
+		private long skipCriticalPathCount;
+		private long lastDisplayTime = System.currentTimeMillis();
+
+		private Worker(Search search, int id) {
+			this.search = search;
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(!search.done) {
+					boolean received = receive();
+					trim();
+					if(!openList.isEmpty()) {
+						expand(openList.remove());
+					} else if(!received) {
+						if(search.outstanding.get()==0) break;
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+				}
+			} catch(RuntimeException | Error t) {
+				search.failure = t;
+				search.done = true;
+			}
+		}
+
+		/**
+		 * Adds all received children to the open list, unless already reached by a path no longer.
+		 *
+		 * @return  <code>true</code> when any child was received
+		 */
+		private boolean receive() {
+			boolean received = false;
+			ListElement child;
+			while((child = inbox.poll())!=null) {
+				received = true;
+				if(child.pathLen>=search.getShortestPathLen()) {
+					search.outstanding.decrementAndGet();
+					continue;
+				}
+				ListElement existingOpen = openList.get(child.fingerprintHigh, child.fingerprintLow);
+				if(existingOpen!=null) {
+					existingOpenCount++;
+					// if the child was reached by a shorter path then give the state of open the shorter path
+					if(child.pathLen<existingOpen.pathLen) {
+						openList.replace(existingOpen, child);
+						openReplaceCount++;
+					}
+					search.outstanding.decrementAndGet();
+				} else {
+					int existingClosedPathLen = closedList.get(child.fingerprintHigh, child.fingerprintLow);
+					if(existingClosedPathLen!=-1) {
+						existingClosedCount++;
+						// If the child was reached by a shorter path then
+						if(child.pathLen<existingClosedPathLen) {
+							// remove the state from closed
+							closedList.remove(child.fingerprintHigh, child.fingerprintLow);
+							// add the child to open
+							openList.add(child);
+						} else {
+							search.outstanding.decrementAndGet();
+						}
+					} else {
+						// the child is not on open or closed
+						openList.add(child);
+					}
+				}
+			}
+			return received;
+		}
+
+		/**
+		 * Trims anything out of open/closed that has transitions.length>=the shortest path found.
+		 */
+		private void trim() {
+			int shortestPathLen = search.getShortestPathLen();
+			if(shortestPathLen<trimmedPathLen) {
+				int sizeBefore = openList.size();
+				openList.removePathLenAtLeast(shortestPathLen);
+				search.outstanding.addAndGet(openList.size() - sizeBefore);
+				closedList.removePathLenAtLeast(shortestPathLen);
+				trimmedPathLen = shortestPathLen;
+			}
+		}
+
+		@SuppressWarnings("UseOfSystemOutOrSystemErr")
+		private void expand(ListElement X) {
+			try {
+				search.loopCounter.incrementAndGet();
+				if(id==0) {
+					long currentTime = System.currentTimeMillis();
+					long timeSince = currentTime - lastDisplayTime;
+					if(timeSince<0 || timeSince>=60000) {
+						System.out.println(
+							"        worker:"+id
+							+ " open:"+openList.size()
+							+ " closed:"+closedList.size()
+							+ " outstanding:"+search.outstanding.get()
+							+ " expanded:"+search.loopCounter.get()
+							+ " transitions:"+X.pathLen
+							+ " heuristic:"+X.heuristic
+							+ " existingOpen:"+existingOpenCount
+							+ " existingClosed:"+existingClosedCount
+							+ " openReplace:"+openReplaceCount
+							+ " skipCriticalPath:"+skipCriticalPathCount
+							+ " dom0ScoreHitRate:"+dom0ScoreCache.getHitRate()
+							+ " moveSecondaryHitRate:"+moveSecondaryCache.getHitRate()
+						);
+						lastDisplayTime = currentTime;
+					}
+				}
+				// put X on closed
+				closedList.put(X.fingerprintHigh, X.fingerprintLow, X.pathLen);
+				// Is this the goal?
+				ClusterConfiguration xConfiguration = X.getClusterConfiguration();
+				// Not kept, since X remains referenced by the path of each child
+				IncrementalAnalysis analysisX = new IncrementalAnalysis(xConfiguration, analysisAlertLevel, dom0ScoreCache);
+				ClusterScore scoreX = analysisX.getClusterScore();
+				if(scoreX.isOptimal()) {
+					search.found(X);
+				} else if(
+					// generate children of X if depth limit not reached
+					// max depth is determined by any path already found
+					(X.pathLen+1)<search.getShortestPathLen()
+					&& (maxPathLen==-1 || X.pathLen<maxPathLen)
+				) {
+					ClusterOptimizer.generateChildren(xConfiguration, children, childTransitions, moveSecondaryCache, randomizeChildren);
+					boolean xEndsCritical = allowPathThroughCritical ? true : scoreX.hasCritical();
+					for(int i=0, size=children.size(); i<size; i++) {
+						ClusterConfiguration child = children.get(i);
+						// Not kept since most children stay on an open list
+						ClusterScore childScore = childTransitions.get(i).analyze(analysisX, child).getClusterScore();
+						// Don't keep any path that has a transition from not having any critical to have at least one critical
+						boolean childHasCritical = allowPathThroughCritical ? false : childScore.hasCritical();
+						if(xEndsCritical || !childHasCritical) {
+							search.send(
+								new ListElement(
+									X,
+									childTransitions.get(i),
+									child,
+									heuristicFunction.getHeuristic(child, childScore, X.pathLen+1)
+								)
+							);
+						} else skipCriticalPathCount++;
+					}
+				}
+			} finally {
+				// Children have been counted before X is no longer counted
+				search.outstanding.decrementAndGet();
+			}
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,39 +22,28 @@
  */
 package com.aoindustries.aoserv.cluster.optimize;
 
-import com.aoindustries.aoserv.cluster.ClusterConfiguration;
 import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
-import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
-import com.aoindustries.aoserv.cluster.analyze.Result;
-import com.aoindustries.aoserv.cluster.analyze.ResultHandler;
 
 /**
  * Simply counts the non-optimal nodes, adds <code>g</code> to prefer shorter paths.
  *
- * This is not thread safe.
- * 
  * @author  AO Industries, Inc.
  */
-public class SimpleHeuristicFunction implements HeuristicFunction, ResultHandler<Object> {
+public class SimpleHeuristicFunction extends SumHeuristicFunction {
 
-	private int count;
+	public SimpleHeuristicFunction() {
+		super(AlertLevel.LOW);
+	}
 
 	@Override
-	public double getHeuristic(ClusterConfiguration clusterConfiguration, int g) {
-		AnalyzedClusterConfiguration analysis = new AnalyzedClusterConfiguration(clusterConfiguration);
-
-		count = g;
-
-		// Add each result
-		analysis.getAllResults(this, AlertLevel.LOW);
-
-		return count;
+	protected double getPathCost(int g) {
+		// Include g to prefer shorter paths
+		return g;
 	}
 
 	@Override
-	public boolean handleResult(Result<?> result) {
-		assert result.getAlertLevel().compareTo(AlertLevel.NONE)>0 : "Should only get non-optimal results, got "+result.getAlertLevel();
-		count++;
-		return true;
+	protected double getCost(AlertLevel alertLevel, int count, double deviationSum) {
+		assert alertLevel.compareTo(AlertLevel.NONE)>0 : "Should only get non-optimal results, got "+alertLevel;
+		return count;
 	}
 }
@@ -0,0 +1,100 @@
+/*
+ * aoserv-cluster - Cluster optimizer for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-cluster.
+ *
+ * aoserv-cluster is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-cluster is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-cluster.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.cluster.optimize;
+
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.AlertLevel;
+import com.aoindustries.aoserv.cluster.analyze.AnalyzedClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.ClusterScore;
+
+/**
+ * Adds up a cost for the results of the analyzed cluster at each alert level at or
+ * above a minimum, starting from a cost for the path already taken.
+ *
+ * The results are read from the score provided by the search, which is found
+ * incrementally at the {@link #getMinimumAlertLevel() minimum alert level} of this
+ * heuristic.  Otherwise they are read from the {@link ClusterConfiguration#getClusterScore() score}
+ * of the configuration, or from a new score when results of AlertLevel NONE are
+ * included.  A score only has the number of results and the sum of their deviations
+ * at each alert level, so the cost of each result must be linear in its deviation.
+ *
+ * Nothing is accumulated between calls, so implementations that are themselves
+ * stateless are thread safe and may be shared between searches.
+ *
+ * @author  AO Industries, Inc.
+ */
+public abstract class SumHeuristicFunction implements HeuristicFunction {
+
+	private static final AlertLevel[] alertLevels = AlertLevel.values();
+
+	private final AlertLevel minimumAlertLevel;
+
+	/**
+	 * @param  minimumAlertLevel  the lowest alert level of results to add
+	 */
+	protected SumHeuristicFunction(AlertLevel minimumAlertLevel) {
+		this.minimumAlertLevel = minimumAlertLevel;
+	}
+
+	@Override
+	public AlertLevel getMinimumAlertLevel() {
+		return minimumAlertLevel;
+	}
+
+	@Override
+	public double getHeuristic(ClusterConfiguration clusterConfiguration, int g) {
+		return getHeuristic(clusterConfiguration, null, g);
+	}
+
+	@Override
+	public double getHeuristic(ClusterConfiguration clusterConfiguration, ClusterScore clusterScore, int g) {
+		ClusterScore score = clusterScore==null ? clusterConfiguration.getClusterScore(false) : clusterScore;
+		if(minimumAlertLevel.compareTo(score.getMinimumAlertLevel())<0) {
+			score = new ClusterScore(new AnalyzedClusterConfiguration(clusterConfiguration), minimumAlertLevel);
+		}
+
+		double total = getPathCost(g);
+
+		// Add each alert level that has any results
+		for(int i=minimumAlertLevel.ordinal(); i<alertLevels.length; i++) {
+			AlertLevel alertLevel = alertLevels[i];
+			int count = score.getCount(alertLevel);
+			if(count!=0) total += getCost(alertLevel, count, score.getDeviationSum(alertLevel));
+		}
+
+		return total;
+	}
+
+	/**
+	 * Gets the starting cost for a path of <code>g</code> moves.
+	 */
+	protected abstract double getPathCost(int g);
+
+	/**
+	 * Gets the total cost of all results at one alert level.
+	 *
+	 * @param  count         the number of results, at least one
+	 * @param  deviationSum  the sum of the deviations of the results
+	 */
+	protected abstract double getCost(AlertLevel alertLevel, int count, double deviationSum);
+}
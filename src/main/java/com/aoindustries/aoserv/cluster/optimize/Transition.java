@@ -1,6 +1,6 @@
 /*
  * aoserv-cluster - Cluster optimizer for the AOServ Platform.
- * Copyright (C) 2008-2011, 2020  AO Industries, Inc.
+ * Copyright (C) 2008-2011, 2020, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -22,6 +22,9 @@
  */
 package com.aoindustries.aoserv.cluster.optimize;
 
+import com.aoindustries.aoserv.cluster.ClusterConfiguration;
+import com.aoindustries.aoserv.cluster.analyze.IncrementalAnalysis;
+
 /**
  * A transition is one of the possible conversions of clusterConfiguration state.
  * Other transitions could include:
@@ -39,4 +42,19 @@ public abstract class Transition {
 
 	Transition() {
 	}
+
+	/**
+	 * Applies this transition to the configuration it was generated from, or any
+	 * equal configuration, to rebuild the configuration after the transition.
+	 */
+	abstract ClusterConfiguration apply(ClusterConfiguration clusterConfiguration);
+
+	/**
+	 * Analyzes the configuration after this transition, re-running the checks of only
+	 * the Dom0s changed by this transition.
+	 *
+	 * @param  parentAnalysis        the analysis of the configuration this transition was generated from
+	 * @param  clusterConfiguration  the configuration after this transition
+	 */
+	abstract IncrementalAnalysis analyze(IncrementalAnalysis parentAnalysis, ClusterConfiguration clusterConfiguration);
 }